@@ -2,6 +2,7 @@ package com.janex;
 
 import com.github.javafaker.Faker;
 import com.janex.customer.Customer;
+import com.janex.customer.CustomerIdAllocator;
 import com.janex.customer.CustomerRepository;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -25,13 +26,14 @@ public class Main {
     }
 
     @Bean
-    CommandLineRunner commandLineRunner(CustomerRepository customerRepository) {
+    CommandLineRunner commandLineRunner(CustomerRepository customerRepository, CustomerIdAllocator customerIdAllocator) {
         return args -> {
             Random random = new Random();
             var faker = new Faker();
             String firstName = faker.name().firstName();
             String lastName = faker.name().lastName();
             Customer customer = new Customer(
+                    customerIdAllocator.nextId(),
                     firstName + " " + lastName,
                     firstName.toLowerCase() + "." + lastName.toLowerCase() + "@example.com",
                     random.nextInt(16, 99)
@@ -0,0 +1,94 @@
+package com.janex.customer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Gradient concurrency limit, as in Netflix concurrency-limits: a long term average of the latency stands for
+// "healthy", a short term one for "now". The limit grows while now is close to healthy and shrinks in proportion
+// once requests start queueing (hikari, postgres) and the short average rises.
+final class AdaptiveConcurrencyLimit {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5; // Latency may grow by half before the limit comes down
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double BACKOFF_RATIO = 0.9;
+
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+
+    // dropped: the request failed in a way that points at overload (timeout, 5xx), the limit backs off right away
+    void release(long rttNanos, boolean dropped) {
+        int concurrency = inFlight.getAndDecrement();
+        onSample(rttNanos, concurrency, dropped);
+    }
+
+
+    private synchronized void onSample(long rttNanos, int concurrency, boolean dropped) {
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF_RATIO);
+            limit = (int) estimatedLimit;
+            return;
+        }
+
+        shortRtt = shortRtt == 0 ? rttNanos : shortRtt + (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt = longRtt == 0 ? rttNanos : longRtt + (rttNanos - longRtt) / LONG_WINDOW;
+        // After a long slow period the healthy average has crept up, let it come back down quickly once latency recovers
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        // Far below the limit says nothing about whether a higher one would still be fine
+        if (concurrency < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+
+
+    int limit() {
+        return limit;
+    }
+
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,109 @@
+package com.janex.customer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Thread safe Bloom filter of strings: no false negatives, false positives with roughly the configured probability.
+// Bits are set with CAS, readers never block writers.
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.words = new AtomicLongArray(Math.toIntExact((bitCount + 63) / 64));
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+
+    // Classic sizing: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hash functions
+    static BloomFilter create(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions < 1) {
+            expectedInsertions = 1;
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1");
+        }
+
+        long bitCount = Math.max(64, (long) Math.ceil(
+                -expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2))
+        ));
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        return new BloomFilter(bitCount, hashCount);
+    }
+
+
+    // Returns false when all bits were already set, such a value (most likely a repeated one) is not counted again
+    boolean put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            long mask = 1L << bit;
+            long previous = words.getAndAccumulate((int) (bit >>> 6), mask, (current, m) -> current | m);
+            changed |= (previous & mask) == 0;
+        }
+        if (changed) {
+            insertions.incrementAndGet();
+        }
+        return changed;
+    }
+
+
+    boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    long insertions() {
+        return insertions.get();
+    }
+
+
+    // (1 - e^(-kn/m))^k for the number of values put so far
+    double expectedFalsePositiveProbability() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.get() / bitCount), hashCount);
+    }
+
+
+    long bitCount() {
+        return bitCount;
+    }
+
+
+    int hashCount() {
+        return hashCount;
+    }
+
+
+    // FNV-1a over the UTF-8 bytes, finished with a SplitMix64 round so that similar emails spread over the whole range
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,14 @@
+package com.janex.customer;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Runs the annotated controller method inside the bulkhead of the given workload, see CustomerBulkheadInterceptor
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    CustomerWorkload value();
+}
@@ -0,0 +1,159 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Read-through cache of single customers in front of another dao.
+// Only lookups by id are cached, every write goes to the delegate first and then drops the ids it touched,
+// so a reader never sees a customer older than the last write made through this dao.
+// Writes that bypass it (CSV import, other instances) are dropped by CustomerChangeListener once they commit,
+// expiry only bounds the staleness when such a notification is lost.
+// In front of replicas the cache is only filled from the primary, a replica may not have replayed the last write yet,
+// and reads that carry a read-your-writes token skip it (see CustomerConsistency).
+public class CachingCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final Cache<Long, Customer> cache;
+    private final boolean fillFromPrimary;
+
+
+    public CachingCustomerDao(CustomerDao delegate, Cache<Long, Customer> cache) {
+        this(delegate, cache, false);
+    }
+
+
+    public CachingCustomerDao(CustomerDao delegate, Cache<Long, Customer> cache, boolean fillFromPrimary) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.fillFromPrimary = fillFromPrimary;
+    }
+
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        return delegate.selectCustomersPage(pageRequest);
+    }
+
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        delegate.forEachCustomer(consumer);
+    }
+
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (CustomerConsistency.requiresFreshReads()) {
+            return delegate.selectCustomerById(id);
+        }
+        // Missing customers are not cached, the loader returning null leaves no entry behind.
+        return Optional.ofNullable(cache.get(id, key -> fill(() -> delegate.selectCustomerById(key).orElse(null))));
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (CustomerConsistency.requiresFreshReads()) {
+            return delegate.selectCustomersByIds(ids);
+        }
+        // The missing ones are loaded in one batch but not cached: unlike the per key load of cache.get(),
+        // putting a batch is not atomic with invalidate, a write in between would leave its old customer cached
+        Map<Long, Customer> cached = cache.getAllPresent(ids);
+        List<Long> missing = ids.stream()
+                .filter(id -> !cached.containsKey(id))
+                .distinct()
+                .toList();
+        List<Customer> customers = new ArrayList<>(cached.values());
+        if (!missing.isEmpty()) {
+            customers.addAll(fill(() -> delegate.selectCustomersByIds(missing)));
+        }
+        return customers;
+    }
+
+
+    private <T> T fill(Supplier<T> load) {
+        return fillFromPrimary ? CustomerConsistency.onPrimary(load) : load.get();
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        Optional<Customer> inserted = delegate.insertCustomer(customer);
+        inserted.ifPresent(c -> cache.invalidate(c.getId()));
+        return inserted;
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        List<Customer> inserted = delegate.insertCustomers(customers);
+        cache.invalidateAll(inserted.stream().map(Customer::getId).toList());
+        return inserted;
+    }
+
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        if (CustomerConsistency.requiresFreshReads()) {
+            return delegate.existsCustomerWithId(id);
+        }
+        return cache.getIfPresent(id) != null || delegate.existsCustomerWithId(id);
+    }
+
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        try {
+            return delegate.deleteCustomersByIds(ids);
+        } finally {
+            cache.invalidateAll(ids);
+        }
+    }
+
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        // Invalidate even when the update failed, the stored row may have moved on in the meantime
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            cache.invalidate(update.getId());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.janex.customer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal RFC 4180 support for customer export and import
+final class Csv {
+
+    private Csv() {
+    }
+
+
+    static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+
+    // Reads one record at a time, quoted values may contain separators, doubled quotes and line breaks
+    static final class RecordReader {
+
+        private final Reader reader;
+        private int next = -2;
+
+
+        RecordReader(Reader reader) {
+            this.reader = reader;
+        }
+
+
+        // Returns null once the input is exhausted
+        List<String> read() throws IOException {
+            int c = peek();
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> values = new ArrayList<>(3);
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+
+            while (true) {
+                c = take();
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted value");
+                    }
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            value.append((char) take());
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r' && peek() == '\n') {
+                        take();
+                    }
+                    values.add(value.toString());
+                    return values;
+                } else {
+                    value.append((char) c);
+                }
+            }
+        }
+
+
+        private int peek() throws IOException {
+            if (next == -2) {
+                next = reader.read();
+            }
+            return next;
+        }
+
+
+        private int take() throws IOException {
+            int c = peek();
+            next = -2;
+            return c;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.janex.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.util.Objects;
@@ -16,17 +17,8 @@ import java.util.Objects;
 )
 public class Customer {
 
+    // Assigned by the DAOs from CustomerIdAllocator before the insert, so Hibernate can batch inserts
     @Id
-    @SequenceGenerator(
-            name = "customer_id_seq",
-            sequenceName = "customer_id_seq",
-            initialValue = 1,
-            allocationSize = 1
-    )
-    @GeneratedValue(
-            strategy = GenerationType.SEQUENCE,
-            generator = "customer_id_seq"
-    )
     private Long id;
 
     @Column(
@@ -44,6 +36,14 @@ public class Customer {
     )
     private Integer age;
 
+    // Bumped on every update, used for optimistic locking and sent to clients as ETag instead of in the body
+    @Version
+    @Column(
+            nullable = false
+    )
+    @JsonIgnore
+    private Long version;
+
     public Customer() {}
 
     public Customer(Long id, String name, String email, Integer age) {
@@ -91,6 +91,15 @@ public class Customer {
         this.age = age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    // version is concurrency metadata, two customers with the same data are equal whatever their version
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -99,9 +108,13 @@ public class Customer {
         return Objects.equals(id, customer.id) && Objects.equals(name, customer.name) && Objects.equals(email, customer.email) && Objects.equals(age, customer.age);
     }
 
+    // Same value as Objects.hash(id, name, email, age) without its varargs array
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, email, age);
+        int result = 31 + Objects.hashCode(id);
+        result = 31 * result + Objects.hashCode(name);
+        result = 31 * result + Objects.hashCode(email);
+        return 31 * result + Objects.hashCode(age);
     }
 
     @Override
@@ -111,6 +124,7 @@ public class Customer {
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
                 ", age=" + age +
+                ", version=" + version +
                 '}';
     }
 
@@ -0,0 +1,103 @@
+package com.janex.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Load shedding in front of CustomerController: bulkheads per workload first, so requests waiting
+// for their bulkhead do not count against the adaptive concurrency limit, then the limit itself.
+@Configuration
+@Profile("!reactive")
+public class CustomerApiConfig implements WebMvcConfigurer {
+
+    private final CustomerBulkheadInterceptor bulkheadInterceptor; // Null unless customer.bulkhead.enabled
+    private final CustomerConcurrencyLimitInterceptor concurrencyLimitInterceptor; // Null unless customer.concurrency-limit.enabled
+
+
+    public CustomerApiConfig(Environment environment,
+                             @Value("${customer.bulkhead.enabled:true}") boolean bulkheads,
+                             @Value("${customer.concurrency-limit.enabled:true}") boolean concurrencyLimit,
+                             @Value("${customer.concurrency-limit.retry-after:1s}") Duration retryAfter,
+                             MeterRegistry meterRegistry) {
+        this.bulkheadInterceptor = bulkheads
+                ? bulkheadInterceptor(environment, retryAfter, meterRegistry)
+                : null;
+        this.concurrencyLimitInterceptor = concurrencyLimit
+                ? concurrencyLimitInterceptor(environment, retryAfter, meterRegistry)
+                : null;
+    }
+
+
+    private static CustomerBulkheadInterceptor bulkheadInterceptor(Environment environment,
+                                                                   Duration retryAfter,
+                                                                   MeterRegistry meterRegistry) {
+        Map<CustomerWorkload, SemaphoreBulkhead> bulkheads = new EnumMap<>(CustomerWorkload.class);
+        Map<CustomerWorkload, Counter> rejected = new EnumMap<>(CustomerWorkload.class);
+        for (CustomerWorkload workload : CustomerWorkload.values()) {
+            String prefix = "customer.bulkhead." + workload.property() + ".";
+            SemaphoreBulkhead bulkhead = new SemaphoreBulkhead(
+                    environment.getRequiredProperty(prefix + "max-concurrent", Integer.class),
+                    environment.getRequiredProperty(prefix + "max-queued", Integer.class),
+                    environment.getRequiredProperty(prefix + "max-wait", Duration.class)
+            );
+            bulkheads.put(workload, bulkhead);
+
+            Gauge.builder("customer.api.bulkhead.active", bulkhead, SemaphoreBulkhead::active)
+                    .tag("workload", workload.property())
+                    .register(meterRegistry);
+            Gauge.builder("customer.api.bulkhead.queued", bulkhead, SemaphoreBulkhead::queued)
+                    .tag("workload", workload.property())
+                    .register(meterRegistry);
+            rejected.put(workload, Counter.builder("customer.api.bulkhead.rejected")
+                    .tag("workload", workload.property())
+                    .register(meterRegistry));
+        }
+        return new CustomerBulkheadInterceptor(bulkheads, rejected, retryAfter);
+    }
+
+
+    private static CustomerConcurrencyLimitInterceptor concurrencyLimitInterceptor(Environment environment,
+                                                                                   Duration retryAfter,
+                                                                                   MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+                environment.getProperty("customer.concurrency-limit.initial-limit", Integer.class, 20),
+                environment.getProperty("customer.concurrency-limit.min-limit", Integer.class, 4),
+                environment.getProperty("customer.concurrency-limit.max-limit", Integer.class, 200)
+        );
+
+        Gauge.builder("customer.api.concurrency.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .register(meterRegistry);
+        Gauge.builder("customer.api.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("customer.api.concurrency.rejected")
+                .register(meterRegistry);
+
+        return new CustomerConcurrencyLimitInterceptor(limit, retryAfter, rejected);
+    }
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (bulkheadInterceptor != null) {
+            registry.addInterceptor(bulkheadInterceptor)
+                    .addPathPatterns("/api/v1/customers", "/api/v1/customers/**");
+        }
+        // Export, bulk registration and import stream for as long as the client keeps sending or reading,
+        // their duration says nothing about the health of the database (the scan bulkhead bounds them instead)
+        if (concurrencyLimitInterceptor != null) {
+            registry.addInterceptor(concurrencyLimitInterceptor)
+                    .addPathPatterns("/api/v1/customers", "/api/v1/customers/**")
+                    .excludePathPatterns("/api/v1/customers/export", "/api/v1/customers/bulk", "/api/v1/customers/import");
+        }
+    }
+}
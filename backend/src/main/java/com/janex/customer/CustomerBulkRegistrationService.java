@@ -0,0 +1,91 @@
+package com.janex.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Registers an NDJSON stream of customers of any length, reading and inserting it in chunks of MAX_BULK_SIZE.
+@Service
+public class CustomerBulkRegistrationService {
+
+    private final CustomerService customerService;
+    private final ObjectReader requestReader;
+    private final ObjectWriter resultWriter;
+
+
+    public CustomerBulkRegistrationService(CustomerService customerService, ObjectMapper objectMapper) {
+        this.customerService = customerService;
+        this.requestReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+        this.resultWriter = objectMapper.writerFor(CustomerRegistrationResult.class);
+    }
+
+
+    public void registerCustomers(InputStream requests, OutputStream results) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(requests, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(results, StandardCharsets.UTF_8));
+
+        List<CustomerRegistrationRequest> chunk = new ArrayList<>(CustomerService.MAX_BULK_SIZE);
+        BitSet malformed = new BitSet(CustomerService.MAX_BULK_SIZE);
+        int offset = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            try {
+                chunk.add(requestReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                malformed.set(chunk.size());
+                chunk.add(null);
+            }
+
+            if (chunk.size() == CustomerService.MAX_BULK_SIZE) {
+                registerChunk(chunk, malformed, offset, writer);
+                offset += chunk.size();
+                chunk.clear();
+                malformed.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            registerChunk(chunk, malformed, offset, writer);
+        }
+        writer.flush();
+    }
+
+
+    private void registerChunk(List<CustomerRegistrationRequest> chunk,
+                               BitSet malformed,
+                               int offset,
+                               Writer writer) throws IOException {
+        List<CustomerRegistrationResult> results = customerService.addCustomers(chunk);
+
+        for (CustomerRegistrationResult result : results) {
+            CustomerRegistrationResult lineResult = malformed.get(result.index())
+                    ? CustomerRegistrationResult.rejected(result.index(), HttpStatus.BAD_REQUEST, "Malformed customer!")
+                    : result;
+
+            writer.write(resultWriter.writeValueAsString(lineResult.withIndexOffset(offset)));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+}
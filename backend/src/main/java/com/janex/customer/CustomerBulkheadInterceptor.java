@@ -0,0 +1,63 @@
+package com.janex.customer;
+
+import com.janex.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Map;
+
+// A request that does not get in is answered with 503 and Retry-After, methods without the annotation pass freely.
+public class CustomerBulkheadInterceptor implements HandlerInterceptor {
+
+    private static final String ENTERED = CustomerBulkheadInterceptor.class.getName() + ".entered";
+
+
+    private final Map<CustomerWorkload, SemaphoreBulkhead> bulkheads;
+    private final Map<CustomerWorkload, Counter> rejected;
+    private final Duration retryAfter;
+
+
+    CustomerBulkheadInterceptor(Map<CustomerWorkload, SemaphoreBulkhead> bulkheads,
+                                Map<CustomerWorkload, Counter> rejected,
+                                Duration retryAfter) {
+        this.bulkheads = bulkheads;
+        this.rejected = rejected;
+        this.retryAfter = retryAfter;
+    }
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Bulkhead annotation = handlerMethod.getMethodAnnotation(Bulkhead.class);
+        if (annotation == null) {
+            return true;
+        }
+
+        CustomerWorkload workload = annotation.value();
+        if (!bulkheads.get(workload).tryEnter()) {
+            rejected.get(workload).increment();
+            throw new ServiceUnavailableException(
+                    "Too many %s requests, try again later!".formatted(workload.property()),
+                    retryAfter
+            );
+        }
+        request.setAttribute(ENTERED, workload);
+        return true;
+    }
+
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ENTERED) instanceof CustomerWorkload workload) {
+            request.removeAttribute(ENTERED);
+            bulkheads.get(workload).leave();
+        }
+    }
+}
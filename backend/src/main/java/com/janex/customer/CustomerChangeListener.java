@@ -0,0 +1,194 @@
+package com.janex.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// The messages come from the statement triggers of V5__Notify_Customer_Changes.sql and are delivered on commit.
+// Listening needs its own connection for the whole lifetime of the application, so it does not come from the pool.
+// With customer.dao=sharded the customers and their triggers live in the shards, there is one listener per shard.
+@Component
+public class CustomerChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerChangeListener.class);
+
+    static final String CHANNEL = "customer_changes";
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectProvider<Cache<Long, Customer>> customerCache;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final List<String> shardUrls; // Empty unless customer.dao=sharded
+
+    private volatile boolean running;
+    private final List<Thread> threads = new ArrayList<>();
+
+
+    public CustomerChangeListener(DataSourceProperties dataSourceProperties,
+                                  ObjectProvider<Cache<Long, Customer>> customerCache,
+                                  CustomerEmailFilter customerEmailFilter,
+                                  ObjectMapper objectMapper,
+                                  boolean enabled) {
+        this(dataSourceProperties, customerCache, customerEmailFilter, objectMapper, enabled, "jdbc", new String[0]);
+    }
+
+
+    @Autowired
+    public CustomerChangeListener(DataSourceProperties dataSourceProperties,
+                                  @Qualifier("customerCache") ObjectProvider<Cache<Long, Customer>> customerCache,
+                                  CustomerEmailFilter customerEmailFilter,
+                                  ObjectMapper objectMapper,
+                                  @Value("${customer.change-listener.enabled:false}") boolean enabled,
+                                  @Value("${customer.dao:jdbc}") String backend,
+                                  @Value("${customer.shards.urls:}") String[] shardUrls) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.customerCache = customerCache;
+        this.customerEmailFilter = customerEmailFilter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.shardUrls = "sharded".equals(backend) ? List.of(shardUrls) : List.of();
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        running = true;
+        List<String> urls = shardUrls.isEmpty() ? List.of(dataSourceProperties.determineUrl()) : shardUrls;
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get(i).trim();
+            Thread thread = new Thread(() -> listen(url),
+                    urls.size() == 1 ? "customer-change-listener" : "customer-change-listener-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(POLL_TIMEOUT_MILLIS * 2L);
+        }
+        threads.clear();
+    }
+
+
+    private void listen(String url) {
+        long reconnectDelay = 1000;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    url,
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword()
+            )) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Anything could have changed while we were not listening
+                reset();
+                reconnectDelay = 1000;
+                LOGGER.info("Listening for customer changes on channel {} of {}", CHANNEL, url);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                LOGGER.warn("Lost customer change listener connection, reconnecting in {} ms", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+
+    void apply(String payload) {
+        CustomerChange change;
+        try {
+            change = objectMapper.readValue(payload, CustomerChange.class);
+        } catch (IOException e) {
+            LOGGER.warn("Unreadable customer change [{}], resetting", payload, e);
+            reset();
+            return;
+        }
+
+        if (change.isReset()) {
+            reset();
+            return;
+        }
+
+        Cache<Long, Customer> cache = customerCache.getIfAvailable();
+        // New ids can not be cached, misses are never stored
+        if (cache != null && change.ids() != null && !"INSERT".equals(change.op())) {
+            cache.invalidateAll(change.ids());
+        }
+        if (change.emails() != null) {
+            change.emails().forEach(customerEmailFilter::add);
+        }
+        customerEmailFilter.remove(change.stale());
+    }
+
+
+    private void reset() {
+        Cache<Long, Customer> cache = customerCache.getIfAvailable();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        customerEmailFilter.scheduleRebuild();
+    }
+
+
+    record CustomerChange(String op, List<Long> ids, List<String> emails, long stale) {
+
+        boolean isReset() {
+            return "RESET".equals(op);
+        }
+    }
+}
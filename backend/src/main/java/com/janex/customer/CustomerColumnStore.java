@@ -0,0 +1,368 @@
+package com.janex.customer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+// Customers are stored column by column, a customer lives in a slot: the same index into every column.
+// Name and email are refs into a Utf8Arena.
+// Two open addressing tables (linear probing, slot + 1 per entry, 0 = empty) index the slots by id and by email,
+// one CustomerSortIndex per sort field keeps them in page order.
+// Not thread safe, CustomerColumnarDataAccessService guards it with a read/write lock.
+final class CustomerColumnStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long FREE = 0; // Id of a slot that holds no customer
+
+
+    private long[] ids;
+    private int[] ages;
+    private long[] versions;
+    private long[] nameRefs;
+    private long[] emailRefs;
+    private int[] emailHashes;
+
+    private int slotLimit; // Slots at or above it were never used
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+
+    private int[] idTable;
+    private int[] emailTable;
+
+    private Utf8Arena arena = new Utf8Arena();
+    private long garbageBytes;
+
+    private final CustomerSortIndex byId = new CustomerSortIndex((a, b) -> Long.compare(ids[a], ids[b]));
+    private final CustomerSortIndex byName = new CustomerSortIndex((a, b) -> thenBySlotId(arena.compare(nameRefs[a], nameRefs[b]), a, b));
+    private final CustomerSortIndex byEmail = new CustomerSortIndex((a, b) -> thenBySlotId(arena.compare(emailRefs[a], emailRefs[b]), a, b));
+    private final CustomerSortIndex byAge = new CustomerSortIndex((a, b) -> thenBySlotId(Integer.compare(ages[a], ages[b]), a, b));
+
+
+    CustomerColumnStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+
+    CustomerColumnStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        ids = new long[capacity];
+        ages = new int[capacity];
+        versions = new long[capacity];
+        nameRefs = new long[capacity];
+        emailRefs = new long[capacity];
+        emailHashes = new int[capacity];
+        idTable = new int[tableSizeFor(capacity)];
+        emailTable = new int[tableSizeFor(capacity)];
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    int slotLimit() {
+        return slotLimit;
+    }
+
+
+    boolean isLive(int slot) {
+        return ids[slot] != FREE;
+    }
+
+
+    long idAt(int slot) {
+        return ids[slot];
+    }
+
+
+    int slotOf(long id) {
+        int mask = idTable.length - 1;
+        for (int i = home(Long.hashCode(id), mask); ; i = (i + 1) & mask) {
+            int entry = idTable[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (ids[entry - 1] == id) {
+                return entry - 1;
+            }
+        }
+    }
+
+
+    int slotOfEmail(String email) {
+        byte[] utf8 = email.getBytes(StandardCharsets.UTF_8);
+        int hash = email.hashCode();
+        int mask = emailTable.length - 1;
+        for (int i = home(hash, mask); ; i = (i + 1) & mask) {
+            int entry = emailTable[i];
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (emailHashes[slot] == hash && arena.equals(emailRefs[slot], utf8)) {
+                return slot;
+            }
+        }
+    }
+
+
+    // Callers check that neither the id nor the email is taken yet
+    int insert(long id, String name, String email, int age, long version) {
+        if (id == FREE) {
+            throw new IllegalArgumentException("Customer id must not be " + FREE);
+        }
+
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot();
+        ids[slot] = id;
+        ages[slot] = age;
+        versions[slot] = version;
+        nameRefs[slot] = arena.append(name);
+        emailRefs[slot] = arena.append(email);
+        emailHashes[slot] = email.hashCode();
+        size++;
+
+        if (size * 2 > idTable.length) {
+            rebuildIndexes(idTable.length * 2);
+        } else {
+            addToTable(idTable, slot, Long.hashCode(id));
+            addToTable(emailTable, slot, emailHashes[slot]);
+        }
+        byId.add(slot);
+        byName.add(slot);
+        byEmail.add(slot);
+        byAge.add(slot);
+        return slot;
+    }
+
+
+    // Callers check that a changed email is not taken by another customer
+    void update(int slot, String name, String email, int age, long version) {
+        if (!name.equals(arena.read(nameRefs[slot]))) {
+            byName.remove(slot);
+            garbageBytes += arena.sizeOf(nameRefs[slot]);
+            nameRefs[slot] = arena.append(name);
+            byName.add(slot);
+        }
+        if (!arena.equals(emailRefs[slot], email.getBytes(StandardCharsets.UTF_8))) {
+            removeFromTable(emailTable, slot, s -> emailHashes[s]);
+            byEmail.remove(slot);
+            garbageBytes += arena.sizeOf(emailRefs[slot]);
+            emailRefs[slot] = arena.append(email);
+            emailHashes[slot] = email.hashCode();
+            addToTable(emailTable, slot, emailHashes[slot]);
+            byEmail.add(slot);
+        }
+        if (ages[slot] != age) {
+            byAge.remove(slot);
+            ages[slot] = age;
+            byAge.add(slot);
+        }
+        versions[slot] = version;
+        compactIfWasteful();
+    }
+
+
+    void remove(int slot) {
+        byId.remove(slot);
+        byName.remove(slot);
+        byEmail.remove(slot);
+        byAge.remove(slot);
+        removeFromTable(idTable, slot, s -> Long.hashCode(ids[s]));
+        removeFromTable(emailTable, slot, s -> emailHashes[s]);
+        garbageBytes += arena.sizeOf(nameRefs[slot]) + arena.sizeOf(emailRefs[slot]);
+        ids[slot] = FREE;
+        size--;
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        compactIfWasteful();
+    }
+
+
+    int[] slotsOf(CustomerPageRequest pageRequest) {
+        boolean ascending = pageRequest.direction().isAscending();
+        IntPredicate split;
+        if (pageRequest.isFirstPage()) {
+            split = slot -> ascending;
+        } else {
+            IntUnaryOperator toCursor = comparisonToCursor(pageRequest.sortField(), pageRequest.after());
+            split = ascending
+                    ? slot -> toCursor.applyAsInt(slot) > 0
+                    : slot -> toCursor.applyAsInt(slot) >= 0;
+        }
+
+        int[] slots = new int[Math.min(pageRequest.limit(), size)];
+        int[] count = new int[1];
+        if (slots.length > 0) {
+            sortIndex(pageRequest.sortField()).walk(ascending, split, slot -> {
+                slots[count[0]++] = slot;
+                return count[0] < slots.length;
+            });
+        }
+        return count[0] == slots.length ? slots : Arrays.copyOf(slots, count[0]);
+    }
+
+
+    int[] slotsById() {
+        int[] slots = new int[size];
+        int[] count = new int[1];
+        byId.walk(true, slot -> true, slot -> {
+            slots[count[0]++] = slot;
+            return true;
+        });
+        return slots;
+    }
+
+
+    private IntUnaryOperator comparisonToCursor(CustomerSortField sortField, CustomerPageCursor after) {
+        long lastId = after.lastId();
+        return switch (sortField) {
+            case ID -> slot -> Long.compare(ids[slot], lastId);
+            case NAME -> {
+                byte[] lastName = after.lastValue().getBytes(StandardCharsets.UTF_8);
+                yield slot -> thenById(arena.compare(nameRefs[slot], lastName), ids[slot], lastId);
+            }
+            case EMAIL -> {
+                byte[] lastEmail = after.lastValue().getBytes(StandardCharsets.UTF_8);
+                yield slot -> thenById(arena.compare(emailRefs[slot], lastEmail), ids[slot], lastId);
+            }
+            case AGE -> {
+                int lastAge = (Integer) sortField.parseValue(after.lastValue());
+                yield slot -> thenById(Integer.compare(ages[slot], lastAge), ids[slot], lastId);
+            }
+        };
+    }
+
+
+    private CustomerSortIndex sortIndex(CustomerSortField sortField) {
+        return switch (sortField) {
+            case ID -> byId;
+            case NAME -> byName;
+            case EMAIL -> byEmail;
+            case AGE -> byAge;
+        };
+    }
+
+
+    private int thenBySlotId(int comparison, int slot, int otherSlot) {
+        return comparison != 0 ? comparison : Long.compare(ids[slot], ids[otherSlot]);
+    }
+
+
+    private static int thenById(int comparison, long id, long otherId) {
+        return comparison != 0 ? comparison : Long.compare(id, otherId);
+    }
+
+
+    Customer materialize(int slot) {
+        Customer customer = new Customer(
+                ids[slot],
+                arena.read(nameRefs[slot]),
+                arena.read(emailRefs[slot]),
+                ages[slot]
+        );
+        customer.setVersion(versions[slot]);
+        return customer;
+    }
+
+
+    long heapBytes() {
+        long columns = (long) ids.length * (Long.BYTES * 4 + Integer.BYTES * 2);
+        long tables = (long) (idTable.length + emailTable.length + freeSlots.length) * Integer.BYTES;
+        long sortIndexes = byId.heapBytes() + byName.heapBytes() + byEmail.heapBytes() + byAge.heapBytes();
+        return columns + tables + sortIndexes + arena.bytesAllocated();
+    }
+
+
+    private int nextSlot() {
+        if (slotLimit == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            nameRefs = Arrays.copyOf(nameRefs, capacity);
+            emailRefs = Arrays.copyOf(emailRefs, capacity);
+            emailHashes = Arrays.copyOf(emailHashes, capacity);
+        }
+        return slotLimit++;
+    }
+
+
+    private void rebuildIndexes(int tableSize) {
+        idTable = new int[tableSize];
+        emailTable = new int[tableSize];
+        for (int slot = 0; slot < slotLimit; slot++) {
+            if (isLive(slot)) {
+                addToTable(idTable, slot, Long.hashCode(ids[slot]));
+                addToTable(emailTable, slot, emailHashes[slot]);
+            }
+        }
+    }
+
+
+    // Once more than half of the arena is left over from updates and deletes, copy the live strings to a fresh one
+    private void compactIfWasteful() {
+        if (garbageBytes < Utf8Arena.CHUNK_SIZE || garbageBytes * 2 < arena.bytesUsed()) {
+            return;
+        }
+
+        Utf8Arena compacted = new Utf8Arena();
+        for (int slot = 0; slot < slotLimit; slot++) {
+            if (isLive(slot)) {
+                nameRefs[slot] = compacted.append(arena.read(nameRefs[slot]));
+                emailRefs[slot] = compacted.append(arena.read(emailRefs[slot]));
+            }
+        }
+        arena = compacted;
+        garbageBytes = 0;
+    }
+
+
+    private static void addToTable(int[] table, int slot, int hash) {
+        int mask = table.length - 1;
+        int i = home(hash, mask);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+
+    // Backward shift deletion: entries after the hole move up unless that would put them before their home,
+    // so lookups can keep stopping at the first empty entry and no tombstones are needed
+    private static void removeFromTable(int[] table, int slot, IntUnaryOperator hashOf) {
+        int mask = table.length - 1;
+        int hole = home(hashOf.applyAsInt(slot), mask);
+        while (table[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+
+        for (int i = (hole + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = home(hashOf.applyAsInt(table[i] - 1), mask);
+            boolean staysPut = hole <= i
+                    ? hole < home && home <= i
+                    : hole < home || home <= i;
+            if (!staysPut) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+
+    private static int home(int hash, int mask) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) * 2;
+    }
+}
@@ -0,0 +1,246 @@
+package com.janex.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// In memory customer dao, see CustomerColumnStore for the layout. Reads share a lock, writes take it exclusively.
+@Repository("columnar")
+public class CustomerColumnarDataAccessService implements CustomerDao {
+
+    // Customers handed to forEachCustomer per read lock, so a slow consumer does not hold up writers
+    private static final int FOR_EACH_BATCH_SIZE = 1000;
+
+
+    private final CustomerColumnStore store = new CustomerColumnStore();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CustomerIdAllocator customerIdAllocator;
+
+
+    public CustomerColumnarDataAccessService(CustomerIdAllocator customerIdAllocator) {
+        this.customerIdAllocator = customerIdAllocator;
+    }
+
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return read(() -> materialize(store.slotsById()));
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        return read(() -> materialize(store.slotsOf(pageRequest)));
+    }
+
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        CustomerPageRequest batchRequest = new CustomerPageRequest(
+                CustomerSortField.ID, Sort.Direction.ASC, null, FOR_EACH_BATCH_SIZE
+        );
+        List<Customer> batch;
+        do {
+            CustomerPageRequest request = batchRequest;
+            batch = read(() -> materialize(store.slotsOf(request)));
+            batch.forEach(consumer);
+            if (!batch.isEmpty()) {
+                batchRequest = new CustomerPageRequest(
+                        CustomerSortField.ID, Sort.Direction.ASC,
+                        CustomerPageCursor.after(CustomerSortField.ID, Sort.Direction.ASC, batch.get(batch.size() - 1)),
+                        FOR_EACH_BATCH_SIZE
+                );
+            }
+        } while (batch.size() == FOR_EACH_BATCH_SIZE);
+    }
+
+
+    private List<Customer> materialize(int[] slots) {
+        List<Customer> customers = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            customers.add(store.materialize(slot));
+        }
+        return customers;
+    }
+
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return read(() -> {
+            int slot = store.slotOf(id);
+            return slot < 0 ? Optional.empty() : Optional.of(store.materialize(slot));
+        });
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return read(() -> {
+            List<Customer> customers = new ArrayList<>(ids.size());
+            for (Long id : new HashSet<>(ids)) {
+                int slot = store.slotOf(id);
+                if (slot >= 0) {
+                    customers.add(store.materialize(slot));
+                }
+            }
+            return customers;
+        });
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        long id = customer.getId() != null ? customer.getId() : customerIdAllocator.nextId();
+        return write(() -> {
+            if (store.slotOfEmail(customer.getEmail()) >= 0 || store.slotOf(id) >= 0) {
+                return Optional.empty();
+            }
+            return Optional.of(store.materialize(
+                    store.insert(id, customer.getName(), customer.getEmail(), customer.getAge(), 0)
+            ));
+        });
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        long[] allocated = customerIdAllocator.nextIds((int) customers.stream().filter(c -> c.getId() == null).count());
+        return write(() -> {
+            List<Customer> inserted = new ArrayList<>(customers.size());
+            int next = 0;
+            for (Customer customer : customers) {
+                long id = customer.getId() != null ? customer.getId() : allocated[next++];
+                // Also skips repeated emails and ids within the batch, the first one wins
+                if (store.slotOfEmail(customer.getEmail()) >= 0 || store.slotOf(id) >= 0) {
+                    continue;
+                }
+                inserted.add(store.materialize(
+                        store.insert(id, customer.getName(), customer.getEmail(), customer.getAge(), 0)
+                ));
+            }
+            return inserted;
+        });
+    }
+
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return read(() -> store.slotOfEmail(email) >= 0);
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return read(() -> {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                if (store.slotOfEmail(email) >= 0) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        });
+    }
+
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return read(() -> store.slotOf(id) >= 0);
+    }
+
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        return write(() -> {
+            int slot = store.slotOf(id);
+            if (slot < 0) {
+                return false;
+            }
+            store.remove(slot);
+            return true;
+        });
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return write(() -> {
+            List<Long> deleted = new ArrayList<>();
+            for (Long id : new HashSet<>(ids)) {
+                int slot = store.slotOf(id);
+                if (slot >= 0) {
+                    store.remove(slot);
+                    deleted.add(id);
+                }
+            }
+            return deleted;
+        });
+    }
+
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        return write(() -> {
+            int slot = store.slotOf(update.getId());
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            Customer current = store.materialize(slot);
+            if (update.getVersion() != null && !update.getVersion().equals(current.getVersion())) {
+                return Optional.empty();
+            }
+
+            Customer updated = new Customer(
+                    current.getId(),
+                    update.getName() != null ? update.getName() : current.getName(),
+                    update.getEmail() != null ? update.getEmail() : current.getEmail(),
+                    update.getAge() != null ? update.getAge() : current.getAge()
+            );
+            if (updated.equals(current)) {
+                return Optional.empty();
+            }
+            if (!updated.getEmail().equals(current.getEmail()) && store.slotOfEmail(updated.getEmail()) >= 0) {
+                throw new DuplicateKeyException("Email [%s] already taken".formatted(updated.getEmail()));
+            }
+
+            store.update(slot, updated.getName(), updated.getEmail(), updated.getAge(), current.getVersion() + 1);
+            return Optional.of(store.materialize(slot));
+        });
+    }
+
+
+    long heapBytes() {
+        return read(store::heapBytes);
+    }
+
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
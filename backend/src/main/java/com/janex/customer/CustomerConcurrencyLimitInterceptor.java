@@ -0,0 +1,51 @@
+package com.janex.customer;
+
+import com.janex.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+// Lets a request through to the customer endpoints only while fewer than AdaptiveConcurrencyLimit allows
+// are in flight, the rest is answered with 503 and Retry-After (see ApiExceptionHandler) before it touches the database
+public class CustomerConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    private static final String STARTED = CustomerConcurrencyLimitInterceptor.class.getName() + ".started";
+
+
+    private final AdaptiveConcurrencyLimit limit;
+    private final Duration retryAfter;
+    private final Counter rejected;
+
+
+    CustomerConcurrencyLimitInterceptor(AdaptiveConcurrencyLimit limit, Duration retryAfter, Counter rejected) {
+        this.limit = limit;
+        this.retryAfter = retryAfter;
+        this.rejected = rejected;
+    }
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!limit.tryAcquire()) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many concurrent requests, try again later!", retryAfter);
+        }
+        request.setAttribute(STARTED, System.nanoTime());
+        return true;
+    }
+
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object started = request.getAttribute(STARTED);
+        if (started == null) {
+            return;
+        }
+        // Client errors are answered as fast as anything else, only server errors hint at overload
+        boolean dropped = ex != null || response.getStatus() >= 500;
+        limit.release(System.nanoTime() - (long) started, dropped);
+    }
+}
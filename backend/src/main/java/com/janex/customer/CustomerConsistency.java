@@ -0,0 +1,100 @@
+package com.janex.customer;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Read-your-writes token of the current request: the WAL position (LSN) of the last write the client saw.
+// Reads only go to a replica that has replayed at least that far, writes hand the new position to onWrite
+// (CustomerConsistencyInterceptor puts it into the Customer-LSN response header).
+// Only requests that opted in have one. Reads that need fresh data skip the cache and coalesced lookups,
+// which may hold what another reader got from a lagging replica.
+final class CustomerConsistency {
+
+    private static final ThreadLocal<CustomerConsistency> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+
+    private final Consumer<String> onWrite;
+    private long minLsn;
+
+
+    private CustomerConsistency(long minLsn, Consumer<String> onWrite) {
+        this.minLsn = minLsn;
+        this.onWrite = onWrite;
+    }
+
+
+    static void open(long minLsn, Consumer<String> onWrite) {
+        CURRENT.set(new CustomerConsistency(minLsn, onWrite));
+    }
+
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+
+    // 0 when the client did not send a token
+    static long minLsn() {
+        CustomerConsistency current = CURRENT.get();
+        return current == null ? 0 : current.minLsn;
+    }
+
+
+    // Whether anyone wants to hear about writes
+    static boolean tracksWrites() {
+        return CURRENT.get() != null;
+    }
+
+
+    // Reads made by action go to the primary, whatever the replicas have replayed
+    static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+
+
+    static boolean primaryOnly() {
+        return PRIMARY_ONLY.get() != null;
+    }
+
+
+    static boolean requiresFreshReads() {
+        return primaryOnly() || minLsn() != 0;
+    }
+
+
+    // Later reads of the same request have to see the write as well
+    static void wrote(long lsn) {
+        CustomerConsistency current = CURRENT.get();
+        if (current != null) {
+            if (Long.compareUnsigned(lsn, current.minLsn) > 0) {
+                current.minLsn = lsn;
+            }
+            current.onWrite.accept(formatLsn(current.minLsn));
+        }
+    }
+
+
+    // Postgres prints an LSN as two hex numbers, the upper and lower 32 bits: 16/B374D848
+    static long parseLsn(String lsn) {
+        int slash = lsn == null ? -1 : lsn.indexOf('/');
+        if (slash < 1 || slash == lsn.length() - 1) {
+            throw new IllegalArgumentException("Invalid LSN [%s]".formatted(lsn));
+        }
+        return Long.parseUnsignedLong(lsn.substring(0, slash), 16) << 32
+                | Long.parseUnsignedLong(lsn.substring(slash + 1), 16);
+    }
+
+
+    static String formatLsn(long lsn) {
+        return Long.toHexString(lsn >>> 32).toUpperCase() + "/" + Long.toHexString(lsn & 0xFFFFFFFFL).toUpperCase();
+    }
+}
@@ -0,0 +1,44 @@
+package com.janex.customer;
+
+import com.janex.exception.RequestValidationException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Read-your-writes across requests, for clients that opt in by sending a Customer-LSN header (0/0 to start with):
+// their writes answer with the header, sending it back on later requests only reads from replicas that have
+// replayed those writes (or from the primary).
+// Requests without the header read from any replica within customer.replicas.max-lag.
+public class CustomerConsistencyInterceptor implements HandlerInterceptor {
+
+    static final String HEADER = "Customer-LSN";
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String token = request.getHeader(HEADER);
+        if (token == null) {
+            return true;
+        }
+        long minLsn = 0;
+        if (!token.isBlank()) {
+            try {
+                minLsn = CustomerConsistency.parseLsn(token.trim());
+            } catch (IllegalArgumentException e) {
+                throw new RequestValidationException("Invalid %s header [%s]!".formatted(HEADER, token));
+            }
+        }
+        CustomerConsistency.open(minLsn, lsn -> {
+            if (!response.isCommitted()) {
+                response.setHeader(HEADER, lsn);
+            }
+        });
+        return true;
+    }
+
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        CustomerConsistency.close();
+    }
+}
@@ -1,52 +1,180 @@
 package com.janex.customer;
 
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
 @RequestMapping("api/v1/customers")
+@Profile("!reactive")
 public class CustomerController {
 
 
     private final CustomerService customerService;
+    private final CustomerExportService customerExportService;
+    private final CustomerBulkRegistrationService customerBulkRegistrationService;
+    private final CustomerCsvImporter customerCsvImporter;
 
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              CustomerExportService customerExportService,
+                              CustomerBulkRegistrationService customerBulkRegistrationService,
+                              CustomerCsvImporter customerCsvImporter) {
         this.customerService = customerService;
+        this.customerExportService = customerExportService;
+        this.customerBulkRegistrationService = customerBulkRegistrationService;
+        this.customerCsvImporter = customerCsvImporter;
     }
 
 
+    // checkNotModified answers If-None-Match with 304 before anything is serialized
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    @Bulkhead(CustomerWorkload.SCAN)
+    public ResponseEntity<CustomerPage> getCustomers(
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "direction", required = false) String direction,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            WebRequest webRequest
+    ) {
+        CustomerPage page = customerService.getCustomersPage(sort, direction, cursor, size);
+        String eTag = CustomerETag.of(page);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(page);
+    }
+
+
+    // Written straight to the response while rows are read, so it is not bound by the async request timeout
+    @GetMapping("export")
+    @Bulkhead(CustomerWorkload.SCAN)
+    public void exportCustomers(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletResponse response
+    ) throws IOException {
+        CustomerExportFormat exportFormat = CustomerExportFormat.fromParameter(format);
+
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(
+                HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment()
+                        .filename("customers." + exportFormat.fileExtension())
+                        .build()
+                        .toString()
+        );
+
+        customerExportService.exportCustomers(exportFormat, response.getOutputStream());
     }
 
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(@PathVariable("customerId") Long customerId) {
-        return customerService.getCustomer(customerId);
+    @Bulkhead(CustomerWorkload.POINT_READ)
+    public ResponseEntity<Customer> getCustomer(@PathVariable("customerId") Long customerId, WebRequest webRequest) {
+        Customer customer = customerService.getCustomer(customerId);
+        String eTag = CustomerETag.of(customer);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(customer);
+    }
+
+
+    // Ids without a customer come back as NOT_FOUND items
+    @GetMapping(params = "ids")
+    @Bulkhead(CustomerWorkload.POINT_READ)
+    public List<CustomerLookupResult> getCustomersByIds(@RequestParam("ids") List<Long> customerIds) {
+        return customerService.getCustomersByIds(customerIds);
     }
 
 
     @PostMapping
-    public void registerCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
-        customerService.addCustomer(customerRegistrationRequest);
+    @Bulkhead(CustomerWorkload.WRITE)
+    public ResponseEntity<Customer> registerCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = customerService.addCustomer(customerRegistrationRequest);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{customerId}")
+                .buildAndExpand(customer.getId())
+                .toUri();
+        return ResponseEntity.created(location)
+                .eTag(CustomerETag.of(customer))
+                .body(customer);
+    }
+
+
+    @PostMapping(value = "bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Bulkhead(CustomerWorkload.WRITE)
+    public List<CustomerRegistrationResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> customerRegistrationRequests
+    ) {
+        return customerService.addCustomers(customerRegistrationRequests);
+    }
+
+
+    @PostMapping(value = "bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Bulkhead(CustomerWorkload.SCAN)
+    public void registerCustomers(InputStream customerRegistrationRequests, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        customerBulkRegistrationService.registerCustomers(customerRegistrationRequests, response.getOutputStream());
+    }
+
+
+    // CSV file with name,email,age columns, the header line is optional
+    @PostMapping(value = "import", consumes = "text/csv")
+    @Bulkhead(CustomerWorkload.SCAN)
+    public CustomerImportReport importCustomers(InputStream csv) {
+        return customerCsvImporter.importCustomers(csv);
     }
 
 
     @DeleteMapping("{customerId}")
+    @Bulkhead(CustomerWorkload.WRITE)
     public void deleteCustomerById(@PathVariable("customerId") Long customerId) {
         customerService.deleteCustomerById(customerId);
     }
 
 
+    @DeleteMapping(params = "ids")
+    @Bulkhead(CustomerWorkload.WRITE)
+    public List<Long> deleteCustomersByIds(@RequestParam("ids") List<Long> customerIds) {
+        return customerService.deleteCustomersByIds(customerIds);
+    }
+
+
     @PutMapping("{customerId}")
-    public void updateCustomerById(
+    @Bulkhead(CustomerWorkload.WRITE)
+    public ResponseEntity<Customer> updateCustomerById(
             @PathVariable("customerId") Long customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody CustomerUpdateRequest customerUpdateRequest
     ) {
-        customerService.updateCustomer(customerId, customerUpdateRequest);
+        Customer updated = customerService.updateCustomer(
+                customerId,
+                customerUpdateRequest,
+                CustomerETag.expectedVersion(ifMatch)
+        );
+        return ResponseEntity.ok()
+                .eTag(CustomerETag.of(updated))
+                .body(updated);
     }
 
 }
@@ -0,0 +1,347 @@
+package com.janex.customer;
+
+import com.janex.exception.RequestValidationException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Loads large CSV files (name,email,age) with COPY FROM STDIN into a temporary staging table,
+// then merges the rows that are not duplicates into customer in one statement.
+// Daos that do not keep customers in spring.datasource (in memory, sharded) get the rows through insertCustomers
+// in chunks instead. That is not one transaction, and an email repeated in a later chunk is reported as taken.
+@Component
+public class CustomerCsvImporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerCsvImporter.class);
+
+    static final int MAX_REPORTED_REJECTIONS = 1000;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL = 100_000;
+    private static final String HEADER = "name,email,age";
+    static final int DAO_CHUNK_SIZE = 1000;
+
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final CustomerDao customerDao; // Null when importing into spring.datasource with COPY
+
+
+    public CustomerCsvImporter(JdbcTemplate jdbcTemplate, CustomerEmailFilter customerEmailFilter) {
+        this(jdbcTemplate, customerEmailFilter, "jdbc", null);
+    }
+
+
+    @Autowired
+    public CustomerCsvImporter(JdbcTemplate jdbcTemplate,
+                               CustomerEmailFilter customerEmailFilter,
+                               @Value("${customer.dao:jdbc}") String backend,
+                               @Qualifier("customerDao") CustomerDao customerDao) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerEmailFilter = customerEmailFilter;
+        this.customerDao = "jdbc".equals(backend) || "jpa".equals(backend) ? null : customerDao;
+    }
+
+
+    public CustomerImportReport importCustomers(InputStream csv) {
+        if (customerDao != null) {
+            return importThroughDao(csv);
+        }
+
+        // Staging table, COPY and merge must all happen on the same connection within one transaction
+        return jdbcTemplate.execute((ConnectionCallback<CustomerImportReport>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+
+            try {
+                CustomerImportReport report = importCustomers(connection, csv);
+                if (autoCommit) {
+                    connection.commit();
+                }
+                return report;
+            } catch (SQLException | RuntimeException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+
+    private CustomerImportReport importCustomers(Connection connection, InputStream csv) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TEMP TABLE customer_import (
+                        line_number BIGINT NOT NULL,
+                        name TEXT NOT NULL,
+                        email TEXT NOT NULL,
+                        age INT NOT NULL,
+                        rejection TEXT
+                    ) ON COMMIT DROP
+                    """);
+        }
+
+        List<CustomerImportReport.Rejection> rejections = new ArrayList<>();
+        long rowsRead = copyIntoStaging(connection, csv, rejections);
+
+        try (Statement statement = connection.createStatement()) {
+            // Temporary tables are never analyzed automatically, without statistics the joins below get bad plans
+            statement.execute("ANALYZE customer_import");
+
+            statement.executeUpdate("""
+                    UPDATE customer_import i
+                    SET rejection = 'Duplicate email in file!'
+                    FROM (
+                        SELECT line_number, row_number() OVER (PARTITION BY email ORDER BY line_number) AS occurrence
+                        FROM customer_import
+                    ) d
+                    WHERE d.line_number = i.line_number
+                    AND d.occurrence > 1
+                    """);
+        }
+
+        long rowsImported;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("""
+                     WITH inserted AS (
+                         INSERT INTO customer(name, email, age)
+                         SELECT name, email, age
+                         FROM customer_import
+                         WHERE rejection IS NULL
+                         ORDER BY line_number
+                         ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                         RETURNING email
+                     ), taken AS (
+                         UPDATE customer_import i
+                         SET rejection = 'Email already taken!'
+                         WHERE i.rejection IS NULL
+                         AND NOT EXISTS (SELECT 1 FROM inserted WHERE inserted.email = i.email)
+                     )
+                     SELECT count(*) FROM inserted
+                     """)) {
+            // Emails are unique among the rows left, so every row the insert skipped belongs to a taken email,
+            // also one registered while the import was running
+            resultSet.next();
+            rowsImported = resultSet.getLong(1);
+        }
+
+        if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT line_number, rejection
+                    FROM customer_import
+                    WHERE rejection IS NOT NULL
+                    ORDER BY line_number
+                    LIMIT ?
+                    """)) {
+                statement.setInt(1, MAX_REPORTED_REJECTIONS - rejections.size());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        rejections.add(new CustomerImportReport.Rejection(
+                                resultSet.getLong("line_number"),
+                                resultSet.getString("rejection")
+                        ));
+                    }
+                }
+            }
+            rejections.sort(Comparator.comparingLong(CustomerImportReport.Rejection::lineNumber));
+        }
+
+        LOGGER.info("Customer import finished, read {} rows, imported {}", rowsRead, rowsImported);
+
+        return new CustomerImportReport(rowsRead, rowsImported, rowsRead - rowsImported, List.copyOf(rejections));
+    }
+
+
+    private long copyIntoStaging(Connection connection,
+                                 InputStream csv,
+                                 List<CustomerImportReport.Rejection> rejections) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class)
+                .getCopyAPI()
+                .copyIn("COPY customer_import (line_number, name, email, age) FROM STDIN WITH (FORMAT csv)");
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+
+        try {
+            long rowsRead = readRows(csv, rejections, (lineNumber, name, email, age) -> {
+                // Rows rejected later or a rolled back import only leave false positives behind
+                customerEmailFilter.add(email);
+
+                buffer.append(lineNumber).append(',')
+                        .append(Csv.escape(name)).append(',')
+                        .append(Csv.escape(email)).append(',')
+                        .append(age).append('\n');
+
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
+                }
+            });
+
+            writeToCopy(copyIn, buffer);
+            copyIn.endCopy();
+            return rowsRead;
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+
+    private CustomerImportReport importThroughDao(InputStream csv) {
+        List<CustomerImportReport.Rejection> rejections = new ArrayList<>();
+        List<Customer> chunk = new ArrayList<>(DAO_CHUNK_SIZE);
+        List<Long> chunkLineNumbers = new ArrayList<>(DAO_CHUNK_SIZE);
+        long[] rowsImported = {0};
+
+        long rowsRead = readRows(csv, rejections, (lineNumber, name, email, age) -> {
+            chunk.add(new Customer(name, email, age));
+            chunkLineNumbers.add(lineNumber);
+            if (chunk.size() == DAO_CHUNK_SIZE) {
+                rowsImported[0] += insertChunk(chunk, chunkLineNumbers, rejections);
+            }
+        });
+        rowsImported[0] += insertChunk(chunk, chunkLineNumbers, rejections);
+        rejections.sort(Comparator.comparingLong(CustomerImportReport.Rejection::lineNumber));
+
+        LOGGER.info("Customer import finished, read {} rows, imported {}", rowsRead, rowsImported[0]);
+
+        return new CustomerImportReport(rowsRead, rowsImported[0], rowsRead - rowsImported[0], List.copyOf(rejections));
+    }
+
+
+    private long insertChunk(List<Customer> chunk,
+                             List<Long> lineNumbers,
+                             List<CustomerImportReport.Rejection> rejections) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> inserted = new HashSet<>();
+        customerDao.insertCustomers(chunk).forEach(customer -> inserted.add(customer.getEmail()));
+        // The dao keeps the first of repeated emails, like the staging table does
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            String email = chunk.get(i).getEmail();
+            String rejection = !seen.add(email) ? "Duplicate email in file!"
+                    : inserted.contains(email) ? null
+                    : "Email already taken!";
+            if (rejection != null && rejections.size() < MAX_REPORTED_REJECTIONS) {
+                rejections.add(new CustomerImportReport.Rejection(lineNumbers.get(i), rejection));
+            }
+        }
+
+        chunk.clear();
+        lineNumbers.clear();
+        return inserted.size();
+    }
+
+
+    private <E extends Exception> long readRows(InputStream csv,
+                                                List<CustomerImportReport.Rejection> rejections,
+                                                RowConsumer<E> rowConsumer) throws E {
+        Csv.RecordReader reader = new Csv.RecordReader(
+                new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))
+        );
+        long lineNumber = 0;
+        long rowsRead = 0;
+        boolean headerChecked = false;
+
+        try {
+            List<String> values;
+            while ((values = reader.read()) != null) {
+                lineNumber++;
+                if (values.size() == 1 && values.get(0).isBlank()) {
+                    continue;
+                }
+                if (!headerChecked) {
+                    headerChecked = true;
+                    if (HEADER.equalsIgnoreCase(String.join(",", values).replace(" ", ""))) {
+                        continue;
+                    }
+                }
+
+                rowsRead++;
+                String rejection = validate(values);
+                if (rejection != null) {
+                    if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                        rejections.add(new CustomerImportReport.Rejection(lineNumber, rejection));
+                    }
+                    continue;
+                }
+
+                rowConsumer.accept(lineNumber,
+                        values.get(0).trim(),
+                        values.get(1).trim(),
+                        Integer.parseInt(values.get(2).trim()));
+
+                if (rowsRead % PROGRESS_INTERVAL == 0) {
+                    LOGGER.info("Customer import in progress, read {} rows", rowsRead);
+                }
+            }
+            return rowsRead;
+        } catch (IOException e) {
+            throw new RequestValidationException("Could not read CSV at line %s: %s".formatted(lineNumber, e.getMessage()));
+        }
+    }
+
+
+    private interface RowConsumer<E extends Exception> {
+        void accept(long lineNumber, String name, String email, int age) throws E;
+    }
+
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+
+    private static String validate(List<String> values) {
+        if (values.size() != 3) {
+            return "Expected 3 columns (name,email,age) but found %s!".formatted(values.size());
+        }
+        if (values.get(0).isBlank()) {
+            return "Name is missing!";
+        }
+        if (values.get(1).isBlank()) {
+            return "Email is missing!";
+        }
+        try {
+            if (Integer.parseInt(values.get(2).trim()) < 0) {
+                return "Age is negative!";
+            }
+        } catch (NumberFormatException e) {
+            return "Age is not a number!";
+        }
+        return null;
+    }
+}
@@ -1,7 +1,10 @@
 package com.janex.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
 
@@ -9,21 +12,49 @@ public interface CustomerDao {
     List<Customer> selectAllCustomers();
 
 
+    List<Customer> selectCustomersPage(CustomerPageRequest pageRequest);
+
+
+    // Hands customers over one by one (ordered by id) without holding the whole table in memory
+    void forEachCustomer(Consumer<Customer> consumer);
+
+
     Optional<Customer> selectCustomerById(Long id);
 
 
-    void insertCustomer(Customer customer);
+    // Customers with the given ids in no particular order, ids without a customer are simply missing
+    List<Customer> selectCustomersByIds(Collection<Long> ids);
+
+
+    // Returns the stored customer with its generated id, or empty when the email is already taken
+    Optional<Customer> insertCustomer(Customer customer);
+
+
+    // Inserts all customers in one go, customers whose email is already taken are skipped.
+    // Returns the inserted customers with their generated ids.
+    List<Customer> insertCustomers(List<Customer> customers);
 
 
     boolean existsCustomerWithEmail(String email);
 
 
+    Set<String> selectExistingEmails(Collection<String> emails);
+
+
     boolean existsCustomerWithId(Long id);
 
 
-    void deleteCustomerById(Long id);
+    // Returns false when there was no customer with the given id
+    boolean deleteCustomerById(Long id);
+
+
+    // Returns ids of the customers that were actually deleted
+    List<Long> deleteCustomersByIds(Collection<Long> ids);
 
 
-    void updateCustomer(Customer customer);
+    // Applies the non null name, email and age of the given customer to the stored one with the same id,
+    // only when at least one of them differs and, if a version is given, the stored version matches.
+    // Returns the updated customer, or empty when nothing was updated.
+    Optional<Customer> updateCustomer(Customer update);
 
 }
@@ -0,0 +1,65 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CustomerDaoConfig {
+
+    @Bean("customerCache")
+    @ConditionalOnProperty(name = "customer.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public Cache<Long, Customer> customerCache(@Value("${customer.cache.maximum-size:10000}") long maximumSize,
+                                               @Value("${customer.cache.expire-after-write:5m}") Duration expireAfterWrite,
+                                               MeterRegistry meterRegistry) {
+        Cache<Long, Customer> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+
+        // cache.gets (hit/miss), cache.evictions, cache.size... tagged cache=customers on /actuator/metrics
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customers");
+        return cache;
+    }
+
+
+    // Dao used by CustomerService: the dao named by customer.dao, wrapped in the decorators configured below
+    @Bean("customerDao")
+    public CustomerDao customerDao(@Value("${customer.dao:jdbc}") String backend,
+                                   @Value("${customer.single-flight.enabled:true}") boolean singleFlight,
+                                   BeanFactory beanFactory,
+                                   ObjectProvider<CustomerReplicaRouter> customerReplicaRouter,
+                                   CustomerEmailFilter customerEmailFilter,
+                                   @Qualifier("customerCache") ObjectProvider<Cache<Long, Customer>> customerCache,
+                                   MeterRegistry meterRegistry) {
+        CustomerDao customerDao = beanFactory.getBean(backend, CustomerDao.class);
+        CustomerReplicaRouter router = customerReplicaRouter.getIfAvailable();
+        boolean replicated = router != null && ("jdbc".equals(backend) || "jpa".equals(backend));
+        if (replicated) {
+            customerDao = new ReplicaRoutingCustomerDao(customerDao, router);
+        }
+        if ("jdbc".equals(backend)) {
+            customerDao = new EmailFilteringCustomerDao(customerDao, customerEmailFilter);
+        }
+        if (singleFlight && ("jdbc".equals(backend) || "jpa".equals(backend) || "sharded".equals(backend))) {
+            customerDao = new SingleFlightCustomerDao(customerDao, meterRegistry);
+        }
+
+        Cache<Long, Customer> cache = customerCache.getIfAvailable();
+        if (cache == null) {
+            return customerDao;
+        }
+        return new CachingCustomerDao(customerDao, cache, replicated);
+    }
+}
@@ -0,0 +1,26 @@
+package com.janex.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+// Extra hikari pools next to the one of spring.datasource (replicas, shards): another url,
+// the same credentials and spring.datasource.hikari.* settings
+final class CustomerDataSources {
+
+    private CustomerDataSources() {
+    }
+
+
+    static HikariDataSource pool(DataSourceProperties properties, String url, String poolName, Environment environment) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url.trim())
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(poolName);
+        return pool;
+    }
+}
@@ -0,0 +1,66 @@
+package com.janex.customer;
+
+import com.janex.exception.PreconditionFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Strong ETags of customers, derived from their version column
+public final class CustomerETag {
+
+    private CustomerETag() {
+    }
+
+
+    public static String of(Customer customer) {
+        // Customers kept in memory by the list dao start without a version
+        long version = customer.getVersion() == null ? 0L : customer.getVersion();
+        return "\"" + version + "\"";
+    }
+
+
+    // Every change of a customer bumps its version, so ids and versions of the page (and the cursor to the next one)
+    // identify its content without hashing the serialized JSON
+    public static String of(CustomerPage page) {
+        MessageDigest digest = sha256();
+        for (Customer customer : page.customers()) {
+            long version = customer.getVersion() == null ? 0L : customer.getVersion();
+            digest.update((customer.getId() + ":" + version + ",").getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update(String.valueOf(page.nextCursor()).getBytes(StandardCharsets.UTF_8));
+
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    // Version expected by an If-Match header, null when the header is absent or matches any version ("*")
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String etag = ifMatch.trim();
+        // If-Match uses strong comparison, a weak ETag can never match
+        if (etag.length() < 3 || !etag.startsWith("\"") || !etag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match [%s] does not match current customer version!".formatted(ifMatch));
+        }
+
+        try {
+            return Long.valueOf(etag.substring(1, etag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match [%s] does not match current customer version!".formatted(ifMatch));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.janex.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+// Email -> shard lookup of CustomerShardedDataAccessService, the table customer_email_shard.
+// An email is claimed here before its customer is written to a shard, so the primary key on email keeps emails
+// unique across shards. The entries are themselves spread over the shard databases by hash of the email.
+final class CustomerEmailDirectory {
+
+    private final List<JdbcTemplate> partitions;
+
+
+    CustomerEmailDirectory(List<JdbcTemplate> partitions) {
+        this.partitions = List.copyOf(partitions);
+    }
+
+
+    // String.hashCode is specified, so every node finds an email in the same place
+    int partitionOf(String email) {
+        return Math.floorMod(email.hashCode() * 0x9E3779B9, partitions.size());
+    }
+
+
+    // Token of the new claim, empty when the email is claimed already
+    Optional<UUID> claim(String email, int shard) {
+        var sql = """
+                INSERT INTO customer_email_shard(email, shard)
+                VALUES (?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING token
+                """;
+
+        return partitions.get(partitionOf(email)).queryForList(sql, UUID.class, email, shard)
+                .stream()
+                .findFirst();
+    }
+
+
+    // Tokens of the emails that were free and are claimed now
+    Map<String, UUID> claimAll(Map<String, Integer> shardsByEmail) {
+        var sql = """
+                INSERT INTO customer_email_shard(email, shard)
+                SELECT email, shard
+                FROM unnest(?::text[], ?::int[]) AS claim(email, shard)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING email, token
+                """;
+
+        Map<String, UUID> claimed = new HashMap<>();
+        byPartition(shardsByEmail.keySet()).forEach((partition, emails) -> partitions.get(partition).query(
+                sql,
+                resultSet -> {
+                    claimed.put(resultSet.getString("email"), resultSet.getObject("token", UUID.class));
+                },
+                emails.toArray(String[]::new),
+                emails.stream().map(shardsByEmail::get).toArray(Integer[]::new)
+        ));
+        return claimed;
+    }
+
+
+    Optional<Claim> claimOf(String email) {
+        var sql = """
+                SELECT shard, token
+                FROM customer_email_shard
+                WHERE email = ?
+                """;
+
+        return partitions.get(partitionOf(email)).query(
+                sql,
+                (resultSet, rowNum) -> new Claim(resultSet.getInt("shard"), resultSet.getObject("token", UUID.class)),
+                email
+        ).stream().findFirst();
+    }
+
+
+    Map<String, Claim> claimsOf(Collection<String> emails) {
+        var sql = """
+                SELECT email, shard, token
+                FROM customer_email_shard
+                WHERE email = ANY(?)
+                """;
+
+        Map<String, Claim> claims = new HashMap<>();
+        byPartition(emails).forEach((partition, batch) -> partitions.get(partition).query(
+                sql,
+                resultSet -> {
+                    claims.put(
+                            resultSet.getString("email"),
+                            new Claim(resultSet.getInt("shard"), resultSet.getObject("token", UUID.class))
+                    );
+                },
+                (Object) batch.toArray(String[]::new)
+        ));
+        return claims;
+    }
+
+
+    // Takes over a claim that is older than minAge, for a write that never reached its shard.
+    // Of several callers only the first gets it, the claim is fresh again afterwards and has a new token.
+    Optional<UUID> takeOver(String email, Claim stale, int shard, Duration minAge) {
+        var sql = """
+                UPDATE customer_email_shard
+                SET shard = ?, claimed_at = now(), token = gen_random_uuid()
+                WHERE email = ?
+                AND token = ?
+                AND claimed_at < now() - make_interval(secs => ?)
+                RETURNING token
+                """;
+
+        return partitions.get(partitionOf(email))
+                .queryForList(sql, UUID.class, shard, email, stale.token(), minAge.toMillis() / 1000.0)
+                .stream()
+                .findFirst();
+    }
+
+
+    // Only drops the claim while it still has the given token, a claim taken over in the meantime stays
+    void release(String email, UUID token) {
+        var sql = """
+                DELETE FROM customer_email_shard
+                WHERE email = ?
+                AND token = ?
+                """;
+
+        partitions.get(partitionOf(email)).update(sql, email, token);
+    }
+
+
+    void releaseAll(Map<String, UUID> tokensByEmail) {
+        var sql = """
+                DELETE FROM customer_email_shard
+                WHERE (email, token) IN (SELECT * FROM unnest(?::text[], ?::uuid[]))
+                """;
+
+        byPartition(tokensByEmail.keySet()).forEach((partition, emails) -> partitions.get(partition).update(
+                sql,
+                emails.toArray(String[]::new),
+                emails.stream().map(email -> tokensByEmail.get(email).toString()).toArray(String[]::new)
+        ));
+    }
+
+
+    private Map<Integer, List<String>> byPartition(Collection<String> emails) {
+        Map<Integer, List<String>> byPartition = new HashMap<>();
+        for (String email : emails) {
+            byPartition.computeIfAbsent(partitionOf(email), partition -> new ArrayList<>()).add(email);
+        }
+        return byPartition;
+    }
+
+
+    record Claim(int shard, UUID token) {
+    }
+}
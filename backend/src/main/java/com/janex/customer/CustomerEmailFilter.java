@@ -0,0 +1,219 @@
+package com.janex.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bloom filter of all customer emails. Emails are only ever added: deleted and changed emails stay in the filter
+// as false positives until the next rebuild, at startup, after a RESET notification and when too much of it is stale.
+// A false negative is still caught by the unique constraint, the filter is only a pre-check.
+// Built from the customer table of spring.datasource, so it is switched off unless customer.dao=jdbc.
+// Off by default: every build reads all emails, which only pays off with frequent large bulk registrations.
+@Component
+public class CustomerEmailFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerEmailFilter.class);
+
+    // Rebuild once this share of the emails in the filter no longer belongs to a customer
+    private static final double MAX_STALE_RATIO = 0.2;
+
+
+    private final CustomerDao customerDao;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-email-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    // null until the first build finished, every email is a possible hit until then
+    private volatile BloomFilter filter;
+    // Filter being built, emails added meanwhile go to both so none is lost by the swap
+    private volatile BloomFilter building;
+    private final AtomicLong staleEmails = new AtomicLong();
+
+    private final Counter definitelyAbsent;
+    private final Counter possiblyPresent;
+    private final Counter falsePositives;
+    private final Counter rebuilds;
+    private final Timer rebuildTimer;
+
+
+    @Autowired
+    public CustomerEmailFilter(@Qualifier("jdbc") CustomerDao customerDao,
+                               @Value("${customer.dao:jdbc}") String backend,
+                               @Value("${customer.email-filter.enabled:false}") boolean enabled,
+                               @Value("${customer.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${customer.email-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                               MeterRegistry meterRegistry) {
+        this(customerDao, enabled && "jdbc".equals(backend), expectedInsertions, falsePositiveProbability, meterRegistry);
+    }
+
+
+    public CustomerEmailFilter(CustomerDao customerDao,
+                               boolean enabled,
+                               long expectedInsertions,
+                               double falsePositiveProbability,
+                               MeterRegistry meterRegistry) {
+        this.customerDao = customerDao;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+
+        this.definitelyAbsent = Counter.builder("customer.email.filter.checks")
+                .tag("result", "absent")
+                .register(meterRegistry);
+        this.possiblyPresent = Counter.builder("customer.email.filter.checks")
+                .tag("result", "possibly_present")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("customer.email.filter.false.positives")
+                .description("Possible hits that postgres did not confirm")
+                .register(meterRegistry);
+        this.rebuilds = Counter.builder("customer.email.filter.rebuilds")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("customer.email.filter.rebuild.duration")
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.expected.false.positive.probability", this,
+                        f -> f.filter == null ? 1.0 : f.filter.expectedFalsePositiveProbability())
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.emails", this, f -> f.filter == null ? 0 : f.filter.insertions())
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.stale.emails", staleEmails, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+
+    // False means the email is definitely not registered, true means postgres has to be asked
+    public boolean mightExist(String email) {
+        BloomFilter current = filter;
+        if (!enabled || current == null) {
+            return true;
+        }
+
+        if (current.mightContain(email)) {
+            possiblyPresent.increment();
+            return true;
+        }
+        definitelyAbsent.increment();
+        return false;
+    }
+
+
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+
+    public void add(String email) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(email);
+        }
+
+        if (current != null && current.insertions() > current.bitCount() / current.hashCount() * 0.7) {
+            scheduleRebuild();
+        }
+    }
+
+
+    public void remove(long count) {
+        if (count <= 0) {
+            return;
+        }
+
+        BloomFilter current = filter;
+        long stale = staleEmails.addAndGet(count);
+        if (current != null && stale > current.insertions() * MAX_STALE_RATIO) {
+            scheduleRebuild();
+        }
+    }
+
+
+    public void scheduleRebuild() {
+        if (!enabled || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Customer email filter rebuild failed, keeping the previous filter", e);
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor already shut down
+            rebuildScheduled.set(false);
+        }
+    }
+
+
+    void rebuild() {
+        long start = System.nanoTime();
+
+        BloomFilter current = filter;
+        long size = current == null ? expectedInsertions : Math.max(expectedInsertions, 2 * current.insertions());
+        BloomFilter next = BloomFilter.create(size, falsePositiveProbability);
+        building = next;
+
+        long staleBefore = staleEmails.get();
+        try {
+            customerDao.forEachCustomer(customer -> next.put(customer.getEmail()));
+            // Swap before building is cleared, an email added in between still lands in the new filter
+            filter = next;
+        } finally {
+            building = null;
+        }
+        // Removals that happened during the scan may or may not be in the new filter, count them as stale
+        staleEmails.addAndGet(-staleBefore);
+
+        rebuilds.increment();
+        rebuildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        LOGGER.info("Customer email filter rebuilt with {} emails, {} bits, {} hash functions, expected false positive probability {}",
+                next.insertions(), next.bitCount(), next.hashCount(), next.expectedFalsePositiveProbability());
+    }
+
+
+    boolean isReady() {
+        return filter != null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.janex.customer;
+
+import com.janex.exception.RequestValidationException;
+
+public enum CustomerExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+
+    private final String contentType;
+    private final String fileExtension;
+
+
+    CustomerExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+
+    public String contentType() {
+        return contentType;
+    }
+
+
+    public String fileExtension() {
+        return fileExtension;
+    }
+
+
+    public static CustomerExportFormat fromParameter(String parameter) {
+        for (CustomerExportFormat format : values()) {
+            if (format.fileExtension.equalsIgnoreCase(parameter)) {
+                return format;
+            }
+        }
+        throw new RequestValidationException("Unsupported export format [%s]!".formatted(parameter));
+    }
+}
@@ -0,0 +1,82 @@
+package com.janex.customer;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Writes the whole customer table as rows arrive from the database, never holding it in memory
+@Service
+public class CustomerExportService {
+
+    private static final String CSV_HEADER = "id,name,email,age";
+
+
+    private final CustomerDao customerDao;
+
+
+    public CustomerExportService(@Qualifier("customerDao") CustomerDao customerDao) {
+        this.customerDao = customerDao;
+    }
+
+
+    public void exportCustomers(CustomerExportFormat format, OutputStream outputStream) throws IOException {
+        if (format == CustomerExportFormat.NDJSON) {
+            exportJsonLines(outputStream);
+            return;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        // Let the client know straight away that the export started
+        writer.flush();
+
+        try {
+            customerDao.forEachCustomer(customer -> {
+                try {
+                    writeCsvLine(writer, customer);
+                } catch (IOException e) {
+                    // Client went away, stop reading from the database
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+    }
+
+
+    private void exportJsonLines(OutputStream outputStream) throws IOException {
+        CustomerJsonWriter writer = new CustomerJsonWriter(outputStream);
+        try {
+            // Client went away: the writer throws UncheckedIOException, which stops reading from the database
+            customerDao.forEachCustomer(writer::writeLine);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+    }
+
+
+    private static void writeCsvLine(Writer writer, Customer customer) throws IOException {
+        writer.write(String.valueOf(customer.getId()));
+        writer.write(',');
+        writer.write(Csv.escape(customer.getName()));
+        writer.write(',');
+        writer.write(Csv.escape(customer.getEmail()));
+        writer.write(',');
+        writer.write(String.valueOf(customer.getAge()));
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,101 @@
+package com.janex.customer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hands out customer ids from blocks leased from customer_id_seq, so an insert does not need its own nextval round trip.
+// The sequence stays the single source of ids: the BIGSERIAL default (used by the CSV import) draws from it as well,
+// so ids never collide, they are only not strictly increasing across JVMs.
+@Component
+public class CustomerIdAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+    private final AtomicReference<Block> current = new AtomicReference<>(Block.EMPTY);
+    private final Lock refillLock = new ReentrantLock();
+
+
+    @Autowired
+    public CustomerIdAllocator(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, DEFAULT_BLOCK_SIZE);
+    }
+
+
+    public CustomerIdAllocator(JdbcTemplate jdbcTemplate, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be greater than zero");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = blockSize;
+    }
+
+
+    public long nextId() {
+        while (true) {
+            Block block = current.get();
+            int index = block.next.getAndIncrement();
+            if (index < block.ids.length) {
+                return block.ids[index];
+            }
+            refill(block);
+        }
+    }
+
+
+    public long[] nextIds(int count) {
+        if (count <= 0) {
+            return new long[0];
+        }
+        if (count == 1) {
+            return new long[]{nextId()};
+        }
+        return lease(count);
+    }
+
+
+    // A lock instead of synchronized: the lease is a database round trip, which would pin a virtual thread's carrier
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            // Another thread may have refilled while we were waiting for the lock
+            if (current.get() == exhausted) {
+                current.set(new Block(lease(blockSize)));
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+
+    private long[] lease(int count) {
+        var sql = """
+                SELECT nextval('customer_id_seq')
+                FROM generate_series(1, ?)
+                """;
+
+        return jdbcTemplate.queryForList(sql, Long.class, count)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+
+    private record Block(long[] ids, AtomicInteger next) {
+
+        private static final Block EMPTY = new Block(new long[0]);
+
+
+        private Block(long[] ids) {
+            this(ids, new AtomicInteger());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.janex.customer;
+
+import java.util.List;
+
+// rejections only lists the first CustomerCsvImporter.MAX_REPORTED_REJECTIONS rejected rows, rowsRejected counts all of them
+public record CustomerImportReport(
+        long rowsRead,
+        long rowsImported,
+        long rowsRejected,
+        List<Rejection> rejections
+) {
+
+    public record Rejection(
+            long lineNumber,
+            String reason
+    ) {
+    }
+}
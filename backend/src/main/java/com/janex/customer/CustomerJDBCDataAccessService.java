@@ -1,38 +1,187 @@
 package com.janex.customer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao {
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final CustomerIdAllocator customerIdAllocator;
+    private final CustomerLookupBatcher lookupBatcher; // Null unless customer.jdbc.batch-lookups.enabled
+    private final String collation; // Of name and email when paging, null for the database default
+
+
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                         CustomerRowMapper customerRowMapper,
+                                         CustomerIdAllocator customerIdAllocator) {
+        this(jdbcTemplate, customerRowMapper, customerIdAllocator, null);
+    }
+
+
+    CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                  CustomerRowMapper customerRowMapper,
+                                  CustomerIdAllocator customerIdAllocator,
+                                  String collation) {
+        this(jdbcTemplate, customerRowMapper, customerIdAllocator, false, 1, 1, collation);
+    }
 
 
-    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+    @Autowired
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                         CustomerRowMapper customerRowMapper,
+                                         CustomerIdAllocator customerIdAllocator,
+                                         @Value("${customer.jdbc.batch-lookups.enabled:false}") boolean batchLookups,
+                                         @Value("${customer.jdbc.batch-lookups.max-batch-size:100}") int maxBatchSize,
+                                         @Value("${customer.jdbc.batch-lookups.max-concurrent-batches:4}") int maxConcurrentBatches) {
+        this(jdbcTemplate, customerRowMapper, customerIdAllocator, batchLookups, maxBatchSize, maxConcurrentBatches, null);
+    }
+
+
+    private CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                          CustomerRowMapper customerRowMapper,
+                                          CustomerIdAllocator customerIdAllocator,
+                                          boolean batchLookups,
+                                          int maxBatchSize,
+                                          int maxConcurrentBatches,
+                                          String collation) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.customerIdAllocator = customerIdAllocator;
+        this.lookupBatcher = batchLookups
+                ? new CustomerLookupBatcher(this::selectCustomersByIds, maxBatchSize, maxConcurrentBatches)
+                : null;
+        this.collation = collation;
     }
 
 
     @Override
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 """;
 
         return jdbcTemplate.query(sql, customerRowMapper);
     }
 
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        // Column names come from CustomerSortField, never from the client, so it is safe to put them into the query
+        String column = collation != null && pageRequest.sortField().isText()
+                ? "%s COLLATE \"%s\"".formatted(pageRequest.sortField().column(), collation)
+                : pageRequest.sortField().column();
+        String order = pageRequest.direction().isAscending() ? "ASC" : "DESC";
+
+        if (pageRequest.isFirstPage()) {
+            var sql = """
+                    SELECT id, name, email, age, version
+                    FROM customer
+                    ORDER BY %1$s %2$s, id %2$s
+                    LIMIT ?
+                    """.formatted(column, order);
+
+            return jdbcTemplate.query(sql, customerRowMapper, pageRequest.limit());
+        }
+
+        CustomerPageCursor after = pageRequest.after();
+        String comparison = pageRequest.direction().isAscending() ? ">" : "<";
+
+        if (pageRequest.sortField() == CustomerSortField.ID) {
+            var sql = """
+                    SELECT id, name, email, age, version
+                    FROM customer
+                    WHERE id %1$s ?
+                    ORDER BY id %2$s
+                    LIMIT ?
+                    """.formatted(comparison, order);
+
+            return jdbcTemplate.query(sql, customerRowMapper, after.lastId(), pageRequest.limit());
+        }
+
+        // Row value comparison lets postgres walk the (column, id) index straight from the cursor position
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE (%1$s, id) %2$s (?, ?)
+                ORDER BY %1$s %3$s, id %3$s
+                LIMIT ?
+                """.formatted(column, comparison, order);
+
+        return jdbcTemplate.query(
+                sql,
+                customerRowMapper,
+                pageRequest.sortField().parseValue(after.lastValue()),
+                after.lastId(),
+                pageRequest.limit()
+        );
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+
+        // Postgres driver only uses a server side cursor (and honours the fetch size) inside a transaction,
+        // in auto-commit mode it would read the whole result into memory before returning the first row
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+            )) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    int rowNum = 0;
+                    while (resultSet.next()) {
+                        consumer.accept(customerRowMapper.mapRow(resultSet, rowNum++));
+                    }
+                }
+                return null;
+            } finally {
+                if (autoCommit) {
+                    // Nothing was written, rollback just ends the cursor transaction
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
+        if (lookupBatcher != null && !CustomerConsistency.requiresFreshReads()) {
+            return lookupBatcher.load(id);
+        }
+
         var sql = """
-                SELECT id, name, email, age
+                SELECT id, name, email, age, version
                 FROM customer
                 WHERE id = ?
                 """;
@@ -42,15 +191,80 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
                 .findFirst();
     }
 
+    // Locks the customer until the surrounding transaction ends
+    Optional<Customer> selectCustomerForUpdate(Long id) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = ?
+                FOR UPDATE
+                """;
+
+        return jdbcTemplate.query(sql, customerRowMapper, id)
+                .stream()
+                .findFirst();
+    }
+
     @Override
-    public void insertCustomer(Customer customer) {
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
         var sql = """
-                INSERT INTO customer(name, email, age)
-                VALUES (?, ?, ?)
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = ANY(?)
                 """;
 
-        int result = jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge());
-        System.out.println("jdbcTemplate.update = " + result);
+        return jdbcTemplate.query(sql, customerRowMapper, (Object) ids.toArray(Long[]::new));
+    }
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer(id, name, email, age)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id, name, email, age, version
+                """;
+
+        Long id = customer.getId() != null ? customer.getId() : customerIdAllocator.nextId();
+        return jdbcTemplate.query(sql, customerRowMapper, id, customer.getName(), customer.getEmail(), customer.getAge())
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return List.of();
+        }
+
+        var sql = """
+                INSERT INTO customer(id, name, email, age)
+                SELECT id, name, email, age
+                FROM unnest(?::bigint[], ?::text[], ?::text[], ?::int[]) AS batch(id, name, email, age)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id, name, email, age, version
+                """;
+
+        // Customers that already have an id keep it (CustomerShardedDataAccessService picks the shard by id)
+        long[] allocated = customerIdAllocator.nextIds((int) customers.stream().filter(c -> c.getId() == null).count());
+        Long[] ids = new Long[customers.size()];
+        int next = 0;
+        for (int i = 0; i < ids.length; i++) {
+            Long id = customers.get(i).getId();
+            ids[i] = id != null ? id : allocated[next++];
+        }
+        return jdbcTemplate.query(
+                sql,
+                customerRowMapper,
+                ids,
+                customers.stream().map(Customer::getName).toArray(String[]::new),
+                customers.stream().map(Customer::getEmail).toArray(String[]::new),
+                customers.stream().map(Customer::getAge).toArray(Integer[]::new)
+        );
     }
 
     @Override
@@ -65,6 +279,21 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
         return count != null && count > 0;
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(?)
+                """;
+
+        return new HashSet<>(jdbcTemplate.queryForList(sql, String.class, (Object) emails.toArray(String[]::new)));
+    }
+
     @Override
     public boolean existsCustomerWithId(Long id) {
         var sql = """
@@ -78,46 +307,91 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
     }
 
     @Override
-    public void deleteCustomerById(Long id) {
+    public boolean deleteCustomerById(Long id) {
         var sql = """
                 DELETE FROM customer
                 WHERE id = ?
                 """;
 
-        jdbcTemplate.update(sql, id);
+        return jdbcTemplate.update(sql, id) > 0;
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        if (customer.getName() != null) {
-            var sql = """
-                UPDATE customer
-                SET name = ?
-                WHERE id = ?
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        var sql = """
+                DELETE FROM customer
+                WHERE id = ANY(?)
+                RETURNING id
                 """;
 
-            jdbcTemplate.update(sql, customer.getName(), customer.getId());
-        }
+        return jdbcTemplate.queryForList(sql, Long.class, (Object) ids.toArray(Long[]::new));
+    }
 
-        if (customer.getEmail() != null) {
-            var sql = """
-                UPDATE customer
-                SET email = ?
-                WHERE id = ?
+    // Emails of the deleted customers by id
+    Map<Long, String> deleteCustomersReturningEmails(Collection<Long> ids) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = ANY(?)
+                RETURNING id, email
                 """;
 
-            jdbcTemplate.update(sql, customer.getEmail(), customer.getId());
+        Map<Long, String> deleted = new HashMap<>();
+        jdbcTemplate.query(
+                sql,
+                resultSet -> {
+                    deleted.put(resultSet.getLong("id"), resultSet.getString("email"));
+                },
+                (Object) ids.toArray(Long[]::new)
+        );
+        return deleted;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            changes.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            changes.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            changes.put("age", update.getAge());
         }
 
-        if (customer.getAge() != null) {
-            var sql = """
-                UPDATE customer
-                SET age = ?
-                WHERE id = ?
-                """;
+        if (changes.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Object> args = new ArrayList<>(changes.values());
+        args.add(update.getId());
 
-            jdbcTemplate.update(sql, customer.getAge(), customer.getId());
+        String versionCondition = "";
+        if (update.getVersion() != null) {
+            versionCondition = "AND version = ?";
+            args.add(update.getVersion());
         }
+        args.addAll(changes.values());
 
+        var sql = """
+                UPDATE customer
+                SET %s, version = version + 1
+                WHERE id = ?
+                %s
+                AND (%s)
+                RETURNING id, name, email, age, version
+                """.formatted(
+                changes.keySet().stream().map(column -> column + " = ?").collect(Collectors.joining(", ")),
+                versionCondition,
+                changes.keySet().stream().map(column -> column + " IS DISTINCT FROM ?").collect(Collectors.joining(" OR "))
+        );
+
+        return jdbcTemplate.query(sql, customerRowMapper, args.toArray())
+                .stream()
+                .findFirst();
     }
 }
@@ -1,18 +1,28 @@
 package com.janex.customer;
 
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao {
 
+    private static final int STREAM_PAGE_SIZE = 1000;
+
     private final CustomerRepository customerRepository;
+    private final CustomerIdAllocator customerIdAllocator;
 
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository, CustomerIdAllocator customerIdAllocator) {
         this.customerRepository = customerRepository;
+        this.customerIdAllocator = customerIdAllocator;
     }
 
 
@@ -22,6 +32,88 @@ public class CustomerJPADataAccessService implements CustomerDao {
     }
 
 
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        String property = pageRequest.sortField().column();
+        Sort sort = pageRequest.sortField() == CustomerSortField.ID
+                ? Sort.by(pageRequest.direction(), property)
+                : Sort.by(pageRequest.direction(), property, "id");
+
+        return customerRepository.findBy(
+                keysetAfter(pageRequest),
+                query -> query.sortBy(sort).limit(pageRequest.limit()).all()
+        );
+    }
+
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        // Walk the table page by page, every page runs in its own short transaction,
+        // so the persistence context never holds more than one page of entities
+        CustomerPageCursor after = null;
+        List<Customer> page;
+        do {
+            page = selectCustomersPage(new CustomerPageRequest(
+                    CustomerSortField.ID, Sort.Direction.ASC, after, STREAM_PAGE_SIZE
+            ));
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                after = CustomerPageCursor.after(CustomerSortField.ID, Sort.Direction.ASC, page.get(page.size() - 1));
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+
+    private static boolean applyChanges(Customer customer, Customer update) {
+        boolean changed = false;
+        if (update.getName() != null && !update.getName().equals(customer.getName())) {
+            customer.setName(update.getName());
+            changed = true;
+        }
+        if (update.getEmail() != null && !update.getEmail().equals(customer.getEmail())) {
+            customer.setEmail(update.getEmail());
+            changed = true;
+        }
+        if (update.getAge() != null && !update.getAge().equals(customer.getAge())) {
+            customer.setAge(update.getAge());
+            changed = true;
+        }
+        return changed;
+    }
+
+
+    // (property > lastValue) OR (property = lastValue AND id > lastId), flipped for descending order
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Specification<Customer> keysetAfter(CustomerPageRequest pageRequest) {
+        if (pageRequest.isFirstPage()) {
+            return Specification.where(null);
+        }
+
+        CustomerPageCursor after = pageRequest.after();
+        boolean ascending = pageRequest.direction().isAscending();
+
+        return (root, query, cb) -> {
+            if (pageRequest.sortField() == CustomerSortField.ID) {
+                return ascending
+                        ? cb.greaterThan(root.get("id"), after.lastId())
+                        : cb.lessThan(root.get("id"), after.lastId());
+            }
+
+            Comparable value = pageRequest.sortField().parseValue(after.lastValue());
+            var property = root.<Comparable>get(pageRequest.sortField().column());
+            var id = root.<Long>get("id");
+
+            return cb.or(
+                    ascending ? cb.greaterThan(property, value) : cb.lessThan(property, value),
+                    cb.and(
+                            cb.equal(property, value),
+                            ascending ? cb.greaterThan(id, after.lastId()) : cb.lessThan(id, after.lastId())
+                    )
+            );
+        };
+    }
+
+
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
         return customerRepository.findById(id);
@@ -29,8 +121,37 @@ public class CustomerJPADataAccessService implements CustomerDao {
 
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        Long id = customer.getId() != null ? customer.getId() : customerIdAllocator.nextId();
+        return customerRepository.insertIfEmailAbsent(id, customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return List.of();
+        }
+
+        long[] allocated = customerIdAllocator.nextIds((int) customers.stream().filter(c -> c.getId() == null).count());
+        Long[] ids = new Long[customers.size()];
+        int next = 0;
+        for (int i = 0; i < ids.length; i++) {
+            Long id = customers.get(i).getId();
+            ids[i] = id != null ? id : allocated[next++];
+        }
+        return customerRepository.insertAllIfEmailAbsent(
+                ids,
+                customers.stream().map(Customer::getName).toArray(String[]::new),
+                customers.stream().map(Customer::getEmail).toArray(String[]::new),
+                customers.stream().map(Customer::getAge).toArray(Integer[]::new)
+        );
     }
 
 
@@ -40,6 +161,15 @@ public class CustomerJPADataAccessService implements CustomerDao {
     }
 
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return customerRepository.findExistingEmails(emails);
+    }
+
+
     @Override
     public boolean existsCustomerWithId(Long id) {
         return customerRepository.existsCustomerById(id);
@@ -47,13 +177,29 @@ public class CustomerJPADataAccessService implements CustomerDao {
 
 
     @Override
-    public void deleteCustomerById(Long id) {
-        customerRepository.deleteById(id);
+    public boolean deleteCustomerById(Long id) {
+        // deleteById would load the entity first and silently ignore a missing one
+        return customerRepository.deleteCustomerById(id) > 0;
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return customerRepository.deleteCustomersByIds(ids);
     }
 
 
+    // JPQL has no UPDATE ... RETURNING, so the customer is loaded and changed inside one transaction.
+    // Hibernate adds the version check to the flushed UPDATE, a concurrent change fails with an optimistic locking exception.
     @Override
-    public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+    @Transactional
+    public Optional<Customer> updateCustomer(Customer update) {
+        return customerRepository.findById(update.getId())
+                .filter(customer -> update.getVersion() == null || update.getVersion().equals(customer.getVersion()))
+                .filter(customer -> applyChanges(customer, update))
+                .map(customerRepository::saveAndFlush);
     }
 }
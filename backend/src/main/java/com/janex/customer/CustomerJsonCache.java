@@ -0,0 +1,48 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.Objects;
+
+// Serialized JSON of customers by id.
+// An entry is only used while the customer still has the version and values it was serialized from,
+// a changed customer simply misses and replaces it, nothing has to be evicted on writes.
+public class CustomerJsonCache {
+
+    private final Cache<Long, Entry> cache;
+
+
+    public CustomerJsonCache(Cache<Long, Entry> cache) {
+        this.cache = cache;
+    }
+
+
+    // The returned bytes are shared, never change them
+    byte[] json(Customer customer) {
+        // Customers of the list dao may have no version, they are serialized every time
+        if (customer.getId() == null || customer.getVersion() == null) {
+            return CustomerJsonWriter.toJson(customer);
+        }
+
+        Entry entry = cache.getIfPresent(customer.getId());
+        if (entry != null && entry.matches(customer)) {
+            return entry.json();
+        }
+        byte[] json = CustomerJsonWriter.toJson(customer);
+        cache.put(customer.getId(), new Entry(customer.getVersion(), customer.getName(), customer.getEmail(), customer.getAge(), json));
+        return json;
+    }
+
+
+    // Comparing the values as well costs little (usually the very same Strings) and keeps an id
+    // that was deleted and inserted again from serving the old customer
+    public record Entry(long version, String name, String email, Integer age, byte[] json) {
+
+        private boolean matches(Customer customer) {
+            return version == customer.getVersion()
+                    && Objects.equals(name, customer.getName())
+                    && Objects.equals(email, customer.getEmail())
+                    && Objects.equals(age, customer.getAge());
+        }
+    }
+}
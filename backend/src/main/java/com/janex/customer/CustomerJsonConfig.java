@@ -0,0 +1,46 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+// Customer responses of the servlet stack are written by CustomerJsonHttpMessageConverter,
+// optionally from a cache of serialized customers (customer.json-cache.enabled)
+@Configuration
+@Profile("!reactive")
+public class CustomerJsonConfig implements WebMvcConfigurer {
+
+    private final CustomerJsonCache customerJsonCache; // Null unless customer.json-cache.enabled
+
+
+    public CustomerJsonConfig(@Value("${customer.json-cache.enabled:false}") boolean enabled,
+                              @Value("${customer.json-cache.maximum-size:10000}") long maximumSize,
+                              MeterRegistry meterRegistry) {
+        this.customerJsonCache = enabled ? customerJsonCache(maximumSize, meterRegistry) : null;
+    }
+
+
+    private static CustomerJsonCache customerJsonCache(long maximumSize, MeterRegistry meterRegistry) {
+        Cache<Long, CustomerJsonCache.Entry> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customer-json");
+        return new CustomerJsonCache(cache);
+    }
+
+
+    // In front of Jackson, which stays in place for everything else
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new CustomerJsonHttpMessageConverter(customerJsonCache));
+    }
+}
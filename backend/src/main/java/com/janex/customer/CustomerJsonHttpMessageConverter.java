@@ -0,0 +1,61 @@
+package com.janex.customer;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+// Writes Customer and CustomerPage responses with CustomerJsonWriter instead of Jackson, straight to the response.
+// Registered in front of the Jackson converter (see CustomerJsonConfig), everything else and all request bodies
+// are still handled by Jackson.
+public class CustomerJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private final Function<Customer, byte[]> json;
+
+
+    // Without a cache every customer is serialized on each response
+    public CustomerJsonHttpMessageConverter(CustomerJsonCache cache) {
+        super(MediaType.APPLICATION_JSON);
+        this.json = cache != null ? cache::json : CustomerJsonWriter::toJson;
+    }
+
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == Customer.class || clazz == CustomerPage.class;
+    }
+
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Customers are read by Jackson", inputMessage);
+    }
+
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+        if (object instanceof Customer customer) {
+            outputMessage.getBody().write(json.apply(customer));
+            return;
+        }
+
+        CustomerJsonWriter writer = new CustomerJsonWriter(outputMessage.getBody());
+        try {
+            writer.writePage((CustomerPage) object, json);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+}
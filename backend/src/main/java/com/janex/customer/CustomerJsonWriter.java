@@ -0,0 +1,233 @@
+package com.janex.customer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+// JSON of customers and customer pages without Jackson, encoded straight into one reused buffer.
+// The output is byte for byte what Jackson writes for them to a stream (Customer#version stays out, see @JsonIgnore).
+// Not thread safe, one writer per response.
+final class CustomerJsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] ID = bytes("{\"id\":");
+    private static final byte[] NAME = bytes(",\"name\":");
+    private static final byte[] EMAIL = bytes(",\"email\":");
+    private static final byte[] AGE = bytes(",\"age\":");
+    private static final byte[] CUSTOMERS = bytes("{\"customers\":[");
+    private static final byte[] NEXT_CURSOR = bytes("],\"nextCursor\":");
+
+
+    private final OutputStream out; // Null when writing into the buffer only
+    private byte[] buffer;
+    private int size;
+
+
+    CustomerJsonWriter(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+
+    private CustomerJsonWriter(int capacity) {
+        this.out = null;
+        this.buffer = new byte[capacity];
+    }
+
+
+    static byte[] toJson(Customer customer) {
+        CustomerJsonWriter writer = new CustomerJsonWriter(64 + 2 * (length(customer.getName()) + length(customer.getEmail())));
+        writer.writeCustomer(customer);
+        return Arrays.copyOf(writer.buffer, writer.size);
+    }
+
+
+    void writeCustomer(Customer customer) {
+        writeRaw(ID);
+        writeNumber(customer.getId());
+        writeRaw(NAME);
+        writeString(customer.getName());
+        writeRaw(EMAIL);
+        writeString(customer.getEmail());
+        writeRaw(AGE);
+        writeNumber(customer.getAge());
+        writeByte('}');
+    }
+
+
+    // Customers come as finished JSON from json, e.g. CustomerJsonCache::json
+    void writePage(CustomerPage page, Function<Customer, byte[]> json) {
+        writeRaw(CUSTOMERS);
+        boolean first = true;
+        for (Customer customer : page.customers()) {
+            if (!first) {
+                writeByte(',');
+            }
+            writeRaw(json.apply(customer));
+            first = false;
+        }
+        writeRaw(NEXT_CURSOR);
+        writeString(page.nextCursor());
+        writeByte('}');
+    }
+
+
+    void writeLine(Customer customer) {
+        writeCustomer(customer);
+        writeByte('\n');
+    }
+
+
+    void writeRaw(byte[] bytes) {
+        ensure(bytes.length);
+        if (bytes.length > buffer.length - size) {
+            write(bytes, bytes.length);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+
+    void flush() throws IOException {
+        if (size > 0) {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+        out.flush();
+    }
+
+
+    private void writeNumber(Number number) {
+        if (number == null) {
+            writeRaw(NULL);
+            return;
+        }
+        long value = number.longValue();
+        if (value == Long.MIN_VALUE) {
+            writeRaw(bytes(Long.toString(value)));
+            return;
+        }
+
+        ensure(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+
+    // Escapes like Jackson: quote, backslash, control characters and surrogates, everything else is written as UTF-8
+    private void writeString(String value) {
+        if (value == null) {
+            writeRaw(NULL);
+            return;
+        }
+
+        writeByte('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(6);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buffer[size++] = (byte) c;
+                } else {
+                    writeEscaped(c);
+                }
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Jackson's UTF-8 output escapes both halves of characters beyond the BMP (and lone ones)
+                writeHexEscape(c);
+            } else {
+                buffer[size++] = (byte) (0xE0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        writeByte('"');
+    }
+
+
+    private void writeEscaped(char c) {
+        buffer[size++] = '\\';
+        switch (c) {
+            case '"' -> buffer[size++] = '"';
+            case '\\' -> buffer[size++] = '\\';
+            case '\b' -> buffer[size++] = 'b';
+            case '\t' -> buffer[size++] = 't';
+            case '\n' -> buffer[size++] = 'n';
+            case '\f' -> buffer[size++] = 'f';
+            case '\r' -> buffer[size++] = 'r';
+            default -> {
+                size--;
+                writeHexEscape(c);
+            }
+        }
+    }
+
+
+    private void writeHexEscape(char c) {
+        buffer[size++] = '\\';
+        buffer[size++] = 'u';
+        buffer[size++] = HEX[c >> 12];
+        buffer[size++] = HEX[c >> 8 & 0xF];
+        buffer[size++] = HEX[c >> 4 & 0xF];
+        buffer[size++] = HEX[c & 0xF];
+    }
+
+
+    private void writeByte(char c) {
+        ensure(1);
+        buffer[size++] = (byte) c;
+    }
+
+
+    // Makes room by writing the buffer out, or by growing it when there is no stream
+    private void ensure(int bytes) {
+        if (bytes <= buffer.length - size) {
+            return;
+        }
+        if (out == null) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            return;
+        }
+        write(buffer, size);
+        size = 0;
+    }
+
+
+    // Writes raise UncheckedIOException, so the writer fits into lambdas like forEachCustomer consumers
+    private void write(byte[] bytes, int length) {
+        try {
+            out.write(bytes, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+
+    private static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.US_ASCII);
+    }
+}
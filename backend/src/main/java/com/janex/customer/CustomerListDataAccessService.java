@@ -1,80 +1,552 @@
 package com.janex.customer;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
+// Customers are kept by id in a sorted map, a second map is the unique email index: an email is reserved there
+// first (putIfAbsent) and only then stored, so two concurrent writers can never end up with the same email.
+// Pages by name, email or age walk a sorted set of (value, id) per field. An entry only counts while the stored
+// customer of its id still has its value: a new value is added before the customer is replaced, the old one
+// removed after, so a reader sees every customer exactly once.
+// Reads never lock. Writes of one id are serialized on one of a few striped locks,
+// so the customer and its email index entry always change together. Stored customers are replaced, never modified.
+// Locks are ReentrantLocks, not synchronized: writers hold them across log appends, which would pin virtual threads.
+//
+// With customer.list.data-directory set the store survives restarts: each change goes to a CustomerLog
+// (under the id's lock, so the log has the same order per id as memory) and the write returns once it is synced.
+// Writers hold the read side of the rotation lock from append to apply, a snapshot rotates the log under the write
+// side: every change logged to a segment the snapshot replaces is then already in the maps it writes out.
+// Startup reads the latest CustomerSnapshot and replays the log written after it.
+// Persisted, ids come from the highest id handed out instead of the database sequence. Every id is in a log record
+// before it is visible, the snapshot keeps the highest id, so ids of deleted customers are not handed out again.
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDao {
 
-    private final static List<Customer> customers;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerListDataAccessService.class);
 
+    private static final int LOCK_STRIPES = 64; // Power of two
+    private static final String SNAPSHOT_FILE = "customers.snapshot";
+    private static final long NOT_STORED = -1;
 
-    static {
-        customers = new ArrayList<>();
-        Customer alex = new Customer(
-                1L,
-                "Alex",
-                "alex@gmail.com",
-                21
-        );
-        customers.add(alex);
+    private final ConcurrentSkipListMap<Long, Customer> customersById = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final Map<CustomerSortField, ConcurrentSkipListSet<Customer>> sortIndexes = new EnumMap<>(CustomerSortField.class);
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final Lock snapshotLock = new ReentrantLock();
+    private final CustomerIdAllocator customerIdAllocator;
+    private final AtomicLong lastId = new AtomicLong(); // Highest id handed out or stored, only used when persisted
 
-        Customer jamila = new Customer(
-                2L,
-                "jamila",
-                "jamila@gmail.com",
-                19
-        );
-        customers.add(jamila);
+    // All null when the store is not persisted
+    private final CustomerLog log;
+    private final Path snapshotPath;
+    private final ScheduledExecutorService snapshotExecutor;
+    private final boolean fsync;
+
+
+    public CustomerListDataAccessService(CustomerIdAllocator customerIdAllocator) {
+        this(customerIdAllocator, (Path) null, Duration.ZERO, true);
+    }
+
+
+    @Autowired
+    public CustomerListDataAccessService(CustomerIdAllocator customerIdAllocator,
+                                         @Value("${customer.list.data-directory:}") String dataDirectory,
+                                         @Value("${customer.list.snapshot-interval:5m}") Duration snapshotInterval,
+                                         @Value("${customer.list.fsync:true}") boolean fsync) {
+        this(customerIdAllocator, dataDirectory.isBlank() ? null : Path.of(dataDirectory), snapshotInterval, fsync);
+    }
+
+
+    CustomerListDataAccessService(CustomerIdAllocator customerIdAllocator,
+                                  Path dataDirectory,
+                                  Duration snapshotInterval,
+                                  boolean fsync) {
+        this.customerIdAllocator = customerIdAllocator;
+        this.fsync = fsync;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        for (CustomerSortField sortField : CustomerSortField.values()) {
+            if (sortField != CustomerSortField.ID) {
+                sortIndexes.put(sortField, new ConcurrentSkipListSet<>(sortField.comparator()));
+            }
+        }
+
+        if (dataDirectory == null) {
+            log = null;
+            snapshotPath = null;
+            snapshotExecutor = null;
+            return;
+        }
+
+        log = new CustomerLog(dataDirectory, fsync);
+        snapshotPath = dataDirectory.resolve(SNAPSHOT_FILE);
+        recover();
+
+        if (snapshotInterval.isZero() || snapshotInterval.isNegative()) {
+            snapshotExecutor = null;
+            return;
+        }
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-list-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Customer snapshot failed, the log keeps growing until the next one", e);
+            }
+        }, snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    private void recover() {
+        long start = System.nanoTime();
+        try {
+            CustomerSnapshot.Header header = CustomerSnapshot.read(snapshotPath, this::replayPut);
+            lastId.accumulateAndGet(header.lastId(), Math::max);
+            log.recover(Math.max(header.firstSegment(), 0), this::replayPut, this::replayDelete);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover customers from " + snapshotPath.getParent(), e);
+        }
+        LOGGER.info("Recovered {} customers in {} ms",
+                customersById.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+
+    // Replayed records can be older than what the snapshot already holds (it is taken while writes go on),
+    // every record carries the whole customer, so applying it again still ends in the logged state
+    private void replayPut(Customer customer) {
+        lastId.accumulateAndGet(customer.getId(), Math::max);
+        Customer previous = customersById.get(customer.getId());
+        addSortKeys(previous, customer);
+        customersById.put(customer.getId(), customer);
+        removeSortKeys(previous, customer);
+        if (previous != null && !previous.getEmail().equals(customer.getEmail())) {
+            idsByEmail.remove(previous.getEmail(), previous.getId());
+        }
+        idsByEmail.put(customer.getEmail(), customer.getId());
+    }
+
+
+    private void replayDelete(long id) {
+        lastId.accumulateAndGet(id, Math::max);
+        Customer removed = customersById.remove(id);
+        if (removed != null) {
+            removeSortKeys(removed, null);
+            idsByEmail.remove(removed.getEmail(), id);
+        }
+    }
+
+
+    // Starts a new log segment, writes all customers and drops the segments the snapshot now covers.
+    // Changes made while the customers are written end up in the new segment and are replayed on top.
+    void snapshot() {
+        if (log == null) {
+            return;
+        }
+
+        snapshotLock.lock();
+        try {
+            if (!log.hasChangesSinceRotation() && Files.exists(snapshotPath)) {
+                return;
+            }
+            writeSnapshot();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+
+    private void writeSnapshot() {
+        long start = System.nanoTime();
+        try {
+            long firstSegment;
+            long highestId;
+            rotationLock.writeLock().lock();
+            try {
+                firstSegment = log.rotate();
+                highestId = lastId.get();
+            } finally {
+                rotationLock.writeLock().unlock();
+            }
+            CustomerSnapshot.write(snapshotPath, firstSegment, highestId, customersById.values(), fsync);
+            log.deleteSegmentsBefore(firstSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write customer snapshot " + snapshotPath, e);
+        }
+        LOGGER.info("Wrote snapshot of {} customers in {} ms",
+                customersById.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (log == null) {
+            return;
+        }
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+        }
+        snapshot();
+        log.close();
     }
 
 
     @Override
     public List<Customer> selectAllCustomers() {
+        return new ArrayList<>(customersById.values());
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        boolean ascending = pageRequest.direction().isAscending();
+
+        if (pageRequest.sortField() == CustomerSortField.ID) {
+            NavigableMap<Long, Customer> page = ascending ? customersById : customersById.descendingMap();
+            if (!pageRequest.isFirstPage()) {
+                page = page.tailMap(pageRequest.after().lastId(), false);
+            }
+            return page.values().stream()
+                    .limit(pageRequest.limit())
+                    .toList();
+        }
+
+        ConcurrentSkipListSet<Customer> index = sortIndexes.get(pageRequest.sortField());
+        NavigableSet<Customer> page = ascending ? index : index.descendingSet();
+        if (!pageRequest.isFirstPage()) {
+            page = page.tailSet(cursorCustomer(pageRequest), false);
+        }
+        List<Customer> customers = new ArrayList<>(pageRequest.limit());
+        for (Customer entry : page) {
+            Customer customer = customersById.get(entry.getId());
+            if (customer != null && index.comparator().compare(customer, entry) == 0) {
+                customers.add(customer);
+                if (customers.size() == pageRequest.limit()) {
+                    break;
+                }
+            }
+        }
         return customers;
     }
 
 
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        customersById.values().forEach(consumer);
+    }
+
+
+    private static Customer cursorCustomer(CustomerPageRequest pageRequest) {
+        CustomerPageCursor after = pageRequest.after();
+        Customer cursorCustomer = new Customer(after.lastId(), null, null, null);
+        switch (pageRequest.sortField()) {
+            case NAME -> cursorCustomer.setName(after.lastValue());
+            case EMAIL -> cursorCustomer.setEmail(after.lastValue());
+            case AGE -> cursorCustomer.setAge(Integer.valueOf(after.lastValue()));
+            case ID -> { }
+        }
+        return cursorCustomer;
+    }
+
+
+    // Entries for the values of updated that current does not have, before updated is stored
+    private void addSortKeys(Customer current, Customer updated) {
+        sortIndexes.values().forEach(index -> {
+            if (current == null || index.comparator().compare(current, updated) != 0) {
+                index.add(updated);
+            }
+        });
+    }
+
+
+    // Drops the entries for the values of current that updated does not have, after updated is stored
+    private void removeSortKeys(Customer current, Customer updated) {
+        if (current == null) {
+            return;
+        }
+        sortIndexes.values().forEach(index -> {
+            if (updated == null || index.comparator().compare(current, updated) != 0) {
+                index.remove(current);
+            }
+        });
+    }
+
+
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
-        return customers.stream().
-                filter(customer -> customer.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id));
     }
 
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        List<Customer> customers = new ArrayList<>(ids.size());
+        for (Long id : new HashSet<>(ids)) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        if (customer.getId() == null) {
+            customer.setId(log == null ? customerIdAllocator.nextId() : lastId.incrementAndGet());
+        }
+        long position = store(customer);
+        if (position == NOT_STORED) {
+            return Optional.empty();
+        }
+        sync(position);
+        return Optional.of(customer);
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> newCustomers) {
+        long[] allocated = nextIds((int) newCustomers.stream().filter(c -> c.getId() == null).count());
+        List<Customer> inserted = new ArrayList<>(newCustomers.size());
+        long position = 0;
+        int next = 0;
+        for (Customer customer : newCustomers) {
+            if (customer.getId() == null) {
+                customer.setId(allocated[next++]);
+            }
+            // Also skips repeated emails within the batch, the first one wins
+            long stored = store(customer);
+            if (stored != NOT_STORED) {
+                inserted.add(customer);
+                position = Math.max(position, stored);
+            }
+        }
+        sync(position);
+        return inserted;
+    }
+
+
+    private long[] nextIds(int count) {
+        if (log == null) {
+            return customerIdAllocator.nextIds(count);
+        }
+        long first = lastId.getAndAdd(count) + 1;
+        return LongStream.range(first, first + count).toArray();
+    }
+
+
+    // Reserves the email, logs the customer and then publishes it.
+    // Returns the log position to sync, or NOT_STORED when the email (or id) is already taken.
+    private long store(Customer customer) {
+        Lock lock = lockFor(customer.getId());
+        rotationLock.readLock().lock();
+        lock.lock();
+        try {
+            if (idsByEmail.putIfAbsent(customer.getEmail(), customer.getId()) != null) {
+                return NOT_STORED;
+            }
+            if (customersById.containsKey(customer.getId())) {
+                idsByEmail.remove(customer.getEmail(), customer.getId());
+                return NOT_STORED;
+            }
+
+            // A given id must not be handed out later
+            lastId.accumulateAndGet(customer.getId(), Math::max);
+            long position;
+            try {
+                position = log == null ? 0 : log.appendPut(customer);
+            } catch (RuntimeException e) {
+                idsByEmail.remove(customer.getEmail(), customer.getId());
+                throw e;
+            }
+            addSortKeys(null, customer);
+            customersById.put(customer.getId(), customer);
+            return position;
+        } finally {
+            lock.unlock();
+            rotationLock.readLock().unlock();
+        }
     }
 
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream().anyMatch(customer -> customer.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        for (String email : emails) {
+            if (idsByEmail.containsKey(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
     }
 
 
     @Override
     public boolean existsCustomerWithId(Long id) {
-        return customers.stream().anyMatch(customer -> customer.getId().equals(id));
+        return customersById.containsKey(id);
     }
 
 
     @Override
-    public void deleteCustomerById(Long id) {
-        customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst()
-                .ifPresent(customers::remove);
+    public boolean deleteCustomerById(Long id) {
+        long position = delete(id);
+        if (position == NOT_STORED) {
+            return false;
+        }
+        sync(position);
+        return true;
     }
 
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customers.add(customer);
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        List<Long> deleted = new ArrayList<>();
+        long position = 0;
+        for (Long id : new HashSet<>(ids)) {
+            long stored = delete(id);
+            if (stored != NOT_STORED) {
+                deleted.add(id);
+                position = Math.max(position, stored);
+            }
+        }
+        sync(position);
+        return deleted;
+    }
+
+
+    // Returns the log position to sync, or NOT_STORED when there was no such customer
+    private long delete(Long id) {
+        Lock lock = lockFor(id);
+        rotationLock.readLock().lock();
+        lock.lock();
+        try {
+            Customer current = customersById.get(id);
+            if (current == null) {
+                return NOT_STORED;
+            }
+            long position = log == null ? 0 : log.appendDelete(id);
+            customersById.remove(id);
+            removeSortKeys(current, null);
+            idsByEmail.remove(current.getEmail(), id);
+            return position;
+        } finally {
+            lock.unlock();
+            rotationLock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        long position;
+        Customer updated;
+        Lock lock = lockFor(update.getId());
+        rotationLock.readLock().lock();
+        lock.lock();
+        try {
+            Customer current = customersById.get(update.getId());
+            if (current == null) {
+                return Optional.empty();
+            }
+            long currentVersion = current.getVersion() == null ? 0L : current.getVersion();
+            if (update.getVersion() != null && update.getVersion() != currentVersion) {
+                return Optional.empty();
+            }
+
+            updated = new Customer(
+                    current.getId(),
+                    update.getName() != null ? update.getName() : current.getName(),
+                    update.getEmail() != null ? update.getEmail() : current.getEmail(),
+                    update.getAge() != null ? update.getAge() : current.getAge()
+            );
+            if (updated.equals(current)) {
+                return Optional.empty();
+            }
+            updated.setVersion(currentVersion + 1);
+
+            boolean emailChanged = !updated.getEmail().equals(current.getEmail());
+            if (emailChanged && idsByEmail.putIfAbsent(updated.getEmail(), updated.getId()) != null) {
+                throw new DuplicateKeyException("Email [%s] already taken".formatted(updated.getEmail()));
+            }
+            try {
+                position = log == null ? 0 : log.appendPut(updated);
+            } catch (RuntimeException e) {
+                if (emailChanged) {
+                    idsByEmail.remove(updated.getEmail(), updated.getId());
+                }
+                throw e;
+            }
+            addSortKeys(current, updated);
+            customersById.put(updated.getId(), updated);
+            removeSortKeys(current, updated);
+            if (emailChanged) {
+                idsByEmail.remove(current.getEmail(), current.getId());
+            }
+        } finally {
+            lock.unlock();
+            rotationLock.readLock().unlock();
+        }
+        sync(position);
+        return Optional.of(updated);
+    }
+
+
+    // Outside of the id locks, so writers of other ids can queue up for the same fsync
+    private void sync(long position) {
+        if (log != null && position > 0) {
+            log.sync(position);
+        }
+    }
+
+
+    private Lock lockFor(Long id) {
+        return locks[Long.hashCode(id) & (locks.length - 1)];
     }
 }
@@ -0,0 +1,336 @@
+package com.janex.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Write-ahead log of the list dao: every change is appended here before it is applied in memory.
+// The log is split into numbered segment files, a snapshot replaces all segments before the one it was taken at.
+// A record is [payload length][CRC32 of payload][payload], the payload is PUT + the whole customer or DELETE + id,
+// so replaying a record twice or on top of a newer snapshot gives the same result.
+// Appends only write to the page cache, sync() makes them durable. Concurrent callers share one fsync (group commit).
+// Both locks are ReentrantLocks, writes and fsyncs under synchronized would pin virtual threads to their carriers.
+final class CustomerLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerLog.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final String SEGMENT_PREFIX = "customers-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int MAX_RECORD_SIZE = 1 << 24;
+
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Lock appendLock = new ReentrantLock();
+    private final Lock syncLock = new ReentrantLock();
+
+    // Guarded by appendLock
+    private FileChannel channel;
+    private long segment;
+    private long written; // Bytes appended since opening, across segments
+    private long writtenAtRotation;
+
+    // Guarded by syncLock
+    private long synced;
+
+
+    CustomerLog(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+
+    // Replays all segments from the given one on, then starts a new segment for appends.
+    // A record cut short by a crash can only be at the end of the last segment, the log is truncated in front of it.
+    void recover(long fromSegment, Consumer<Customer> put, LongConsumer delete) throws IOException {
+        appendLock.lock();
+        try {
+            recoverSegments(fromSegment, put, delete);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+
+    private void recoverSegments(long fromSegment, Consumer<Customer> put, LongConsumer delete) throws IOException {
+        Files.createDirectories(directory);
+
+        List<Long> segments = segments();
+        long last = fromSegment - 1;
+        for (int i = 0; i < segments.size(); i++) {
+            long number = segments.get(i);
+            if (number < fromSegment) {
+                continue;
+            }
+            boolean lastSegment = i == segments.size() - 1;
+            replay(segmentPath(number), lastSegment, put, delete);
+            last = number;
+        }
+
+        openSegment(Math.max(last + 1, fromSegment));
+    }
+
+
+    long appendPut(Customer customer) {
+        byte[] encoded = encodeCustomer(customer);
+        return append(ByteBuffer.allocate(1 + encoded.length).put(PUT).put(encoded).array());
+    }
+
+
+    long appendDelete(long id) {
+        return append(ByteBuffer.allocate(1 + Long.BYTES).put(DELETE).putLong(id).array());
+    }
+
+
+    // Returns the log position after the record, sync(position) waits until it is on disk
+    private long append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(2 * Integer.BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        appendLock.lock();
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            written += frame.limit();
+            return written;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to customer log", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+
+    void sync(long position) {
+        if (!fsync) {
+            return;
+        }
+
+        syncLock.lock();
+        try {
+            if (synced >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            appendLock.lock();
+            try {
+                target = written;
+                current = channel;
+            } finally {
+                appendLock.unlock();
+            }
+            current.force(false);
+            synced = target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync customer log", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+
+    // Starts a new segment and returns its number, records appended from now on go there
+    long rotate() throws IOException {
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            if (fsync) {
+                channel.force(false);
+                synced = written;
+            }
+            channel.close();
+            openSegment(segment + 1);
+            writtenAtRotation = written;
+            return segment;
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+
+    boolean hasChangesSinceRotation() {
+        appendLock.lock();
+        try {
+            return written > writtenAtRotation;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+
+    void deleteSegmentsBefore(long segment) throws IOException {
+        for (long number : segments()) {
+            if (number < segment) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                if (fsync) {
+                    channel.force(false);
+                }
+                channel.close();
+            }
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment = number;
+        if (fsync) {
+            syncDirectory(directory);
+        }
+    }
+
+
+    // Makes created, renamed and deleted files durable, fsync of a file does not cover its directory entry
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+
+    private void replay(Path path, boolean lastSegment, Consumer<Customer> put, LongConsumer delete) throws IOException {
+        long position = 0;
+        long records = 0;
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                int expectedCrc;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    expectedCrc = in.readInt();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                switch (record.get()) {
+                    case PUT -> put.accept(decodeCustomer(record));
+                    case DELETE -> delete.accept(record.getLong());
+                    default -> throw new IllegalStateException("Unknown record in " + path);
+                }
+                position += 2 * Integer.BYTES + payload.length;
+                records++;
+            }
+        }
+
+        long size = Files.size(path);
+        if (position < size) {
+            if (!lastSegment) {
+                throw new IllegalStateException("Customer log segment %s is corrupt at byte %d".formatted(path, position));
+            }
+            LOGGER.warn("Dropping {} bytes of an incomplete record at the end of {}", size - position, path);
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(position);
+            }
+        }
+        LOGGER.info("Replayed {} customer changes from {}", records, path);
+    }
+
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+
+    private Path segmentPath(long number) {
+        return directory.resolve(SEGMENT_PREFIX + "%020d".formatted(number) + SEGMENT_SUFFIX);
+    }
+
+
+    // id, version, age, name and email as length prefixed UTF-8, shared with CustomerSnapshot
+    static byte[] encodeCustomer(Customer customer) {
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 * Long.BYTES + 3 * Integer.BYTES + name.length + email.length)
+                .putLong(customer.getId())
+                .putLong(customer.getVersion() == null ? 0L : customer.getVersion())
+                .putInt(customer.getAge())
+                .putInt(name.length)
+                .put(name)
+                .putInt(email.length)
+                .put(email)
+                .array();
+    }
+
+
+    static Customer decodeCustomer(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        int age = buffer.getInt();
+        String name = readString(buffer);
+        String email = readString(buffer);
+
+        Customer customer = new Customer(id, name, email, age);
+        customer.setVersion(version);
+        return customer;
+    }
+
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
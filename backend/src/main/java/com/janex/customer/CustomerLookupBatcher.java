@@ -0,0 +1,126 @@
+package com.janex.customer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+// Turns concurrent lookups of single customers into few multi-id queries.
+// At most maxConcurrentBatches queries run at a time, a lookup that finds a free slot runs right away on its own,
+// so at low traffic nothing waits. Lookups that find all slots busy queue up and the next slot to free takes up to
+// maxBatchSize of them in one query.
+// Callers run the queries themselves: whoever frees a slot hands the next batch to the first caller in it.
+final class CustomerLookupBatcher {
+
+    private final Function<List<Long>, List<Customer>> loader;
+    private final int maxBatchSize;
+    private final int maxConcurrentBatches;
+
+    // Guarded by this
+    private final Queue<Lookup> queue = new ArrayDeque<>();
+    private int running;
+
+
+    CustomerLookupBatcher(Function<List<Long>, List<Customer>> loader, int maxBatchSize, int maxConcurrentBatches) {
+        if (maxBatchSize < 1 || maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("Batch size and concurrent batches must be greater than zero");
+        }
+        this.loader = loader;
+        this.maxBatchSize = maxBatchSize;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    Optional<Customer> load(Long id) {
+        Lookup lookup = new Lookup(id);
+        List<Lookup> batch = null;
+        synchronized (this) {
+            if (running < maxConcurrentBatches) {
+                running++;
+                batch = List.of(lookup);
+            } else {
+                queue.add(lookup);
+            }
+        }
+
+        // A queued lookup is completed with its customer, or with a batch it has to run itself
+        Object outcome = batch != null ? batch : await(lookup.outcome);
+        if (outcome instanceof Optional<?> customer) {
+            return (Optional<Customer>) customer;
+        }
+        return run((List<Lookup>) outcome, lookup);
+    }
+
+
+    private Optional<Customer> run(List<Lookup> batch, Lookup self) {
+        Map<Long, Customer> customers = new HashMap<>();
+        try {
+            for (Customer customer : loader.apply(batch.stream().map(Lookup::id).distinct().toList())) {
+                customers.put(customer.getId(), customer);
+            }
+        } catch (RuntimeException | Error e) {
+            for (Lookup lookup : batch) {
+                if (lookup != self) {
+                    lookup.outcome.completeExceptionally(e);
+                }
+            }
+            handOff();
+            throw e;
+        }
+
+        for (Lookup lookup : batch) {
+            if (lookup != self) {
+                lookup.outcome.complete(Optional.ofNullable(customers.get(lookup.id())));
+            }
+        }
+        handOff();
+        return Optional.ofNullable(customers.get(self.id()));
+    }
+
+
+    // Passes the slot on to the queued lookups, or frees it when there are none
+    private void handOff() {
+        List<Lookup> next;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                running--;
+                return;
+            }
+            next = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+            while (next.size() < maxBatchSize && !queue.isEmpty()) {
+                next.add(queue.poll());
+            }
+        }
+        next.get(0).outcome.complete(next);
+    }
+
+
+    private static Object await(CompletableFuture<Object> outcome) {
+        try {
+            return outcome.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+
+    private record Lookup(Long id, CompletableFuture<Object> outcome) {
+
+        Lookup(Long id) {
+            this(id, new CompletableFuture<>());
+        }
+    }
+}
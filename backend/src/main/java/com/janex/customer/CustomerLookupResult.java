@@ -0,0 +1,21 @@
+package com.janex.customer;
+
+import org.springframework.http.HttpStatus;
+
+// Outcome of one id of a multi-get, customer is null when there is no customer with that id
+public record CustomerLookupResult(
+        Long id,
+        HttpStatus status,
+        Customer customer,
+        String message
+) {
+
+    public static CustomerLookupResult found(Customer customer) {
+        return new CustomerLookupResult(customer.getId(), HttpStatus.OK, customer, null);
+    }
+
+
+    public static CustomerLookupResult notFound(Long id) {
+        return new CustomerLookupResult(id, HttpStatus.NOT_FOUND, null, "customer id [%s] not found!".formatted(id));
+    }
+}
@@ -0,0 +1,10 @@
+package com.janex.customer;
+
+import java.util.List;
+
+// nextCursor is null when there are no more customers to read
+public record CustomerPage(
+        List<Customer> customers,
+        String nextCursor
+) {
+}
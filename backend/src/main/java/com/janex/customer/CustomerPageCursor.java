@@ -0,0 +1,58 @@
+package com.janex.customer;
+
+import com.janex.exception.RequestValidationException;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position after the last customer of a page: sort column value + id of that customer.
+// Sort field and direction travel with the cursor, so a client only needs to send the token back to get the next page.
+public record CustomerPageCursor(
+        CustomerSortField sortField,
+        Sort.Direction direction,
+        String lastValue,
+        Long lastId
+) {
+
+    private static final String SEPARATOR = "|";
+
+
+    public static CustomerPageCursor after(CustomerSortField sortField, Sort.Direction direction, Customer customer) {
+        return new CustomerPageCursor(sortField, direction, sortField.valueOf(customer), customer.getId());
+    }
+
+
+    // Opaque token handed to clients: sortField|direction|lastId|lastValue, Base64 URL encoded
+    // lastValue goes last because it is the only part that can contain the separator
+    public String encode() {
+        String raw = String.join(SEPARATOR, sortField.name(), direction.name(), String.valueOf(lastId), lastValue);
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    public static CustomerPageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new RequestValidationException("Invalid cursor!");
+            }
+
+            CustomerSortField sortField = CustomerSortField.valueOf(parts[0]);
+            // Make sure the value can be bound to the sort column
+            sortField.parseValue(parts[3]);
+
+            return new CustomerPageCursor(
+                    sortField,
+                    Sort.Direction.valueOf(parts[1]),
+                    parts[3],
+                    Long.valueOf(parts[2])
+            );
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("Invalid cursor!");
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.janex.customer;
+
+import org.springframework.data.domain.Sort;
+
+// Keyset page query: customers ordered by (sortField, id), starting right after the cursor (or from the beginning when null)
+public record CustomerPageRequest(
+        CustomerSortField sortField,
+        Sort.Direction direction,
+        CustomerPageCursor after,
+        int limit
+) {
+
+    public boolean isFirstPage() {
+        return after == null;
+    }
+}
@@ -0,0 +1,203 @@
+package com.janex.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Same statements as CustomerJDBCDataAccessService, on a non-blocking R2DBC connection.
+// Ids come from the BIGSERIAL default, CustomerIdAllocator would block on JDBC to lease a block.
+@Repository
+@Profile("reactive")
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+
+
+    public CustomerR2dbcDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                ORDER BY id
+                """;
+
+        // With a fetch size the next chunk of rows is only read once the subscriber requested the previous one
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+
+    @Override
+    public Flux<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        // Column names come from CustomerSortField, never from the client, so it is safe to put them into the query
+        String column = pageRequest.sortField().column();
+        String order = pageRequest.direction().isAscending() ? "ASC" : "DESC";
+
+        if (pageRequest.isFirstPage()) {
+            var sql = """
+                    SELECT id, name, email, age, version
+                    FROM customer
+                    ORDER BY %1$s %2$s, id %2$s
+                    LIMIT :limit
+                    """.formatted(column, order);
+
+            return databaseClient.sql(sql)
+                    .bind("limit", pageRequest.limit())
+                    .map(CustomerR2dbcDataAccessService::mapRow)
+                    .all();
+        }
+
+        CustomerPageCursor after = pageRequest.after();
+        String comparison = pageRequest.direction().isAscending() ? ">" : "<";
+
+        if (pageRequest.sortField() == CustomerSortField.ID) {
+            var sql = """
+                    SELECT id, name, email, age, version
+                    FROM customer
+                    WHERE id %1$s :lastId
+                    ORDER BY id %2$s
+                    LIMIT :limit
+                    """.formatted(comparison, order);
+
+            return databaseClient.sql(sql)
+                    .bind("lastId", after.lastId())
+                    .bind("limit", pageRequest.limit())
+                    .map(CustomerR2dbcDataAccessService::mapRow)
+                    .all();
+        }
+
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE (%1$s, id) %2$s (:lastValue, :lastId)
+                ORDER BY %1$s %3$s, id %3$s
+                LIMIT :limit
+                """.formatted(column, comparison, order);
+
+        return databaseClient.sql(sql)
+                .bind("lastValue", pageRequest.sortField().parseValue(after.lastValue()))
+                .bind("lastId", after.lastId())
+                .bind("limit", pageRequest.limit())
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+
+    @Override
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+
+    @Override
+    public Mono<Customer> insertCustomer(Customer customer) {
+        // A taken email makes the insert return no row instead of failing, so there is no need to check it first
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id, name, email, age, version
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+
+    @Override
+    public Mono<Customer> updateCustomer(Customer update) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            changes.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            changes.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            changes.put("age", update.getAge());
+        }
+
+        if (changes.isEmpty()) {
+            return Mono.empty();
+        }
+
+        var sql = """
+                UPDATE customer
+                SET %s, version = version + 1
+                WHERE id = :id
+                %s
+                AND (%s)
+                RETURNING id, name, email, age, version
+                """.formatted(
+                changes.keySet().stream().map(column -> column + " = :" + column).collect(Collectors.joining(", ")),
+                update.getVersion() != null ? "AND version = :version" : "",
+                changes.keySet().stream().map(column -> column + " IS DISTINCT FROM :" + column).collect(Collectors.joining(" OR "))
+        );
+
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(sql).bind("id", update.getId());
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            statement = statement.bind(change.getKey(), change.getValue());
+        }
+        if (update.getVersion() != null) {
+            statement = statement.bind("version", update.getVersion());
+        }
+
+        return statement.map(CustomerR2dbcDataAccessService::mapRow).one();
+    }
+
+
+    @Override
+    public Mono<Boolean> deleteCustomerById(Long id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(count -> count > 0);
+    }
+
+
+    private static Customer mapRow(Readable row) {
+        Customer customer = new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class)
+        );
+        customer.setVersion(row.get("version", Long.class));
+        return customer;
+    }
+}
@@ -0,0 +1,26 @@
+package com.janex.customer;
+
+import org.springframework.http.HttpStatus;
+
+// Outcome of one item of a bulk registration, index points to the position of the item in the request
+public record CustomerRegistrationResult(
+        int index,
+        HttpStatus status,
+        Long id,
+        String message
+) {
+
+    public static CustomerRegistrationResult created(int index, Long id) {
+        return new CustomerRegistrationResult(index, HttpStatus.CREATED, id, null);
+    }
+
+
+    public static CustomerRegistrationResult rejected(int index, HttpStatus status, String message) {
+        return new CustomerRegistrationResult(index, status, null, message);
+    }
+
+
+    public CustomerRegistrationResult withIndexOffset(int offset) {
+        return new CustomerRegistrationResult(index + offset, status, id, message);
+    }
+}
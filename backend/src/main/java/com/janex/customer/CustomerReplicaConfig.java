@@ -0,0 +1,58 @@
+package com.janex.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Read replicas, only when customer.replicas.urls lists at least one (streaming replicas of spring.datasource.url).
+// Replaces the DataSource of Spring Boot with one that holds a pool for the primary (spring.datasource.*)
+// and a read only pool per replica with the same credentials and hikari settings.
+@Configuration
+@ConditionalOnExpression("!'${customer.replicas.urls:}'.isBlank()")
+public class CustomerReplicaConfig implements WebMvcConfigurer {
+
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties,
+                                               Environment environment,
+                                               @Value("${customer.replicas.urls}") String[] urls) {
+        HikariDataSource primary = CustomerDataSources.pool(properties, properties.determineUrl(), "customer-primary", environment);
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource replica = CustomerDataSources.pool(properties, urls[i], "customer-replica-" + i, environment);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+
+    @Bean(destroyMethod = "close")
+    public CustomerReplicaRouter customerReplicaRouter(ReplicaRoutingDataSource dataSource,
+                                                       @Value("${customer.replicas.max-lag:1s}") Duration maxLag,
+                                                       @Value("${customer.replicas.poll-interval:100ms}") Duration pollInterval,
+                                                       MeterRegistry meterRegistry) {
+        CustomerReplicaRouter router = new CustomerReplicaRouter(dataSource, maxLag, meterRegistry);
+        router.start(pollInterval);
+        return router;
+    }
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new CustomerConsistencyInterceptor())
+                .addPathPatterns("/api/v1/customers", "/api/v1/customers/**");
+    }
+}
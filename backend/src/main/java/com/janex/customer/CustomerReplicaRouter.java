@@ -0,0 +1,191 @@
+package com.janex.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// Decides which replica a read goes to. A poller samples the WAL position of the primary and how far every replica
+// has replayed. A replica may serve reads while it has replayed everything the primary had written max-lag ago,
+// and, for read-your-writes, everything up to the token of the request (see CustomerConsistency).
+// With no replica fit (or none reachable) reads go to the primary.
+public class CustomerReplicaRouter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerReplicaRouter.class);
+    private static final long UNKNOWN = -1;
+
+
+    private final ReplicaRoutingDataSource dataSource;
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas = new ArrayList<>();
+    private final long maxLagNanos;
+    private final AtomicLongArray replayed;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-replica-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this, {nanoTime, lsn} of the primary, oldest first
+    private final Deque<long[]> primarySamples = new ArrayDeque<>();
+
+
+    public CustomerReplicaRouter(ReplicaRoutingDataSource dataSource, Duration maxLag, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.primary = queryTemplate(dataSource.primary());
+        dataSource.replicas().forEach(replica -> replicas.add(queryTemplate(replica)));
+        this.maxLagNanos = maxLag.toNanos();
+        this.replayed = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            replayed.set(i, UNKNOWN);
+        }
+
+        this.replicaReads = Counter.builder("customer.dao.reads").tag("target", "replica").register(meterRegistry);
+        this.primaryReads = Counter.builder("customer.dao.reads").tag("target", "primary").register(meterRegistry);
+    }
+
+
+    private static JdbcTemplate queryTemplate(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setQueryTimeout(1); // A hanging replica must not stall the poller
+        return jdbcTemplate;
+    }
+
+
+    public void start(Duration pollInterval) {
+        poll();
+        poller.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    void poll() {
+        try {
+            String lsn = primary.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+            recordPrimary(System.nanoTime(), CustomerConsistency.parseLsn(lsn));
+        } catch (DataAccessException e) {
+            LOGGER.warn("Could not read the WAL position of the primary: {}", e.getMessage());
+        }
+
+        for (int i = 0; i < replicas.size(); i++) {
+            try {
+                // null when the server is not replaying WAL, it is no replica then
+                String lsn = replicas.get(i).queryForObject("SELECT pg_last_wal_replay_lsn()::text", String.class);
+                recordReplica(i, lsn == null ? UNKNOWN : CustomerConsistency.parseLsn(lsn));
+            } catch (DataAccessException e) {
+                LOGGER.debug("Could not read the replay position of replica {}: {}", i, e.getMessage());
+                recordReplica(i, UNKNOWN);
+            }
+        }
+    }
+
+
+    synchronized void recordPrimary(long nanoTime, long lsn) {
+        primarySamples.addLast(new long[]{nanoTime, lsn});
+        // One sample at least max-lag old is all lagThreshold needs
+        while (primarySamples.size() > 1) {
+            long[] oldest = primarySamples.pollFirst();
+            if (primarySamples.peekFirst()[0] > nanoTime - maxLagNanos) {
+                primarySamples.addFirst(oldest);
+                break;
+            }
+        }
+    }
+
+
+    void recordReplica(int replica, long lsn) {
+        replayed.set(replica, lsn);
+    }
+
+
+    // Position every replica serving reads has to have replayed, UNKNOWN before the first sample
+    private synchronized long lagThreshold() {
+        long[] oldest = primarySamples.peekFirst();
+        return oldest == null ? UNKNOWN : oldest[1];
+    }
+
+
+    // Replica to read from, or -1 for the primary. Replicas that qualify take turns.
+    int choose(long minLsn) {
+        long threshold = lagThreshold();
+        if (threshold == UNKNOWN) {
+            return -1;
+        }
+        long required = Math.max(threshold, minLsn);
+
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            long lsn = replayed.get(replica);
+            if (lsn != UNKNOWN && Long.compareUnsigned(lsn, required) >= 0) {
+                return replica;
+            }
+        }
+        return -1;
+    }
+
+
+    // Reads are safe to repeat, a replica that can not be reached is taken out until the next poll
+    // and the read goes to the primary instead
+    <T> T read(Supplier<T> action) {
+        return read(action, () -> true);
+    }
+
+
+    // retryable says whether the read can still be repeated on the primary, a stream that already handed out
+    // rows can not
+    <T> T read(Supplier<T> action, BooleanSupplier retryable) {
+        int replica = CustomerConsistency.primaryOnly() ? -1 : choose(CustomerConsistency.minLsn());
+        if (replica < 0) {
+            primaryReads.increment();
+            return action.get();
+        }
+
+        try {
+            T result = dataSource.onReplica(replica, action);
+            replicaReads.increment();
+            return result;
+        } catch (DataAccessResourceFailureException | CannotCreateTransactionException e) {
+            recordReplica(replica, UNKNOWN);
+            if (!retryable.getAsBoolean()) {
+                throw e;
+            }
+            LOGGER.warn("Replica {} failed, reading from the primary: {}", replica, e.getMessage());
+            primaryReads.increment();
+            return action.get();
+        }
+    }
+
+
+    // WAL position right after a committed write, a replica that replayed this far sees the write
+    long primaryLsn() {
+        return CustomerConsistency.parseLsn(primary.queryForObject("SELECT pg_current_wal_lsn()::text", String.class));
+    }
+
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+}
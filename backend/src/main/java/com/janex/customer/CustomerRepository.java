@@ -1,15 +1,83 @@
 package com.janex.customer;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+public interface CustomerRepository extends JpaRepository<Customer, Long>, JpaSpecificationExecutor<Customer> {
 
 
     boolean existsCustomerByEmail(String email);
 
 
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+
     boolean existsCustomerById(Long id);
 
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(@Param("id") Long id);
+
+
+    @Transactional
+    @Query(
+            value = """
+                    DELETE FROM customer
+                    WHERE id IN (:ids)
+                    RETURNING id
+                    """,
+            nativeQuery = true
+    )
+    List<Long> deleteCustomersByIds(@Param("ids") Collection<Long> ids);
+
+
+    // Postgres decides about the email conflict in the same statement that inserts, empty when the email is taken
+    @Transactional
+    @Query(
+            value = """
+                    INSERT INTO customer(id, name, email, age)
+                    VALUES (:id, :name, :email, :age)
+                    ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                    RETURNING id, name, email, age, version
+                    """,
+            nativeQuery = true
+    )
+    Optional<Customer> insertIfEmailAbsent(@Param("id") Long id,
+                                           @Param("name") String name,
+                                           @Param("email") String email,
+                                           @Param("age") Integer age);
+
+
+    // Skips taken emails, also repeated ones within the batch, like CustomerJDBCDataAccessService#insertCustomers
+    @Transactional
+    @Query(
+            value = """
+                    INSERT INTO customer(id, name, email, age)
+                    SELECT id, name, email, age
+                    FROM unnest(CAST(:ids AS bigint[]), CAST(:names AS text[]), CAST(:emails AS text[]), CAST(:ages AS int[]))
+                        AS batch(id, name, email, age)
+                    ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                    RETURNING id, name, email, age, version
+                    """,
+            nativeQuery = true
+    )
+    List<Customer> insertAllIfEmailAbsent(@Param("ids") Long[] ids,
+                                          @Param("names") String[] names,
+                                          @Param("emails") String[] emails,
+                                          @Param("ages") Integer[] ages);
+
 }
@@ -14,11 +14,13 @@ public class CustomerRowMapper implements RowMapper<Customer> {
     // rowNum => row number that we are currently working with
     @Override
     public Customer mapRow(ResultSet resultSet, int rowNum) throws SQLException {
-        return new Customer (
+        Customer customer = new Customer (
             resultSet.getLong("id"),
             resultSet.getString("name"),
             resultSet.getString("email"),
             resultSet.getInt("age")
         );
+        customer.setVersion(resultSet.getLong("version"));
+        return customer;
     }
 }
@@ -1,24 +1,40 @@
 package com.janex.customer;
 
 import com.janex.exception.DuplicateResourceException;
+import com.janex.exception.PreconditionFailedException;
 import com.janex.exception.RequestValidationException;
 import com.janex.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Scope(value = ConfigurableBeanFactory.SCOPE_SINGLETON)
 public class CustomerService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int MAX_BULK_SIZE = 1000;
+
 
     private final CustomerDao customerDao;
 
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
+    public CustomerService(@Qualifier("customerDao") CustomerDao customerDao) {
         this.customerDao = customerDao;
     }
 
@@ -28,64 +44,219 @@ public class CustomerService {
     }
 
 
+    public CustomerPage getCustomersPage(String sort, String direction, String cursor, Integer size) {
+        CustomerPageRequest pageRequest = pageRequest(sort, direction, cursor, size);
+        return toPage(pageRequest, customerDao.selectCustomersPage(pageRequest));
+    }
+
+
+    // Shared with ReactiveCustomerService, asks for one customer more than the page size (see toPage)
+    static CustomerPageRequest pageRequest(String sort, String direction, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1) {
+            throw new RequestValidationException("Page size must be greater than zero!");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        if (cursor != null) {
+            CustomerPageCursor after = CustomerPageCursor.decode(cursor);
+            return new CustomerPageRequest(after.sortField(), after.direction(), after, pageSize + 1);
+        }
+
+        CustomerSortField sortField = sort == null ? CustomerSortField.ID : CustomerSortField.fromParameter(sort);
+        Sort.Direction sortDirection = direction == null
+                ? Sort.Direction.ASC
+                : Sort.Direction.fromOptionalString(direction)
+                        .orElseThrow(() -> new RequestValidationException("Unsupported sort direction [%s]!".formatted(direction)));
+        return new CustomerPageRequest(sortField, sortDirection, null, pageSize + 1);
+    }
+
+
+    static CustomerPage toPage(CustomerPageRequest pageRequest, List<Customer> customers) {
+        // One extra row tells us whether there is a next page without a count query
+        int pageSize = pageRequest.limit() - 1;
+        if (customers.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+
+        List<Customer> page = customers.subList(0, pageSize);
+        CustomerPageCursor next = CustomerPageCursor.after(
+                pageRequest.sortField(),
+                pageRequest.direction(),
+                page.get(pageSize - 1)
+        );
+        return new CustomerPage(List.copyOf(page), next.encode());
+    }
+
+
     public Customer getCustomer(Long id) {
         return customerDao.selectCustomerById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("customer id [%s] not found!".formatted(id)));
     }
 
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        // check if email exists
-        if (customerDao.existsCustomerWithEmail(customerRegistrationRequest.email())) {
-            throw new DuplicateResourceException("Email already taken!");
+    // Results follow the order of the requested ids, repeated ids are answered once
+    public List<CustomerLookupResult> getCustomersByIds(List<Long> customerIds) {
+        if (customerIds.isEmpty()) {
+            throw new RequestValidationException("No customer ids to look up!");
+        }
+        if (customerIds.size() > MAX_BULK_SIZE) {
+            throw new RequestValidationException("Bulk request can not contain more than %s customers!".formatted(MAX_BULK_SIZE));
+        }
+
+        Set<Long> ids = new LinkedHashSet<>(customerIds);
+        Map<Long, Customer> customers = new HashMap<>();
+        for (Customer customer : customerDao.selectCustomersByIds(ids)) {
+            customers.put(customer.getId(), customer);
+        }
+
+        List<CustomerLookupResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Customer customer = customers.get(id);
+            results.add(customer != null ? CustomerLookupResult.found(customer) : CustomerLookupResult.notFound(id));
         }
-        // add
+        return results;
+    }
+
+
+    // Email uniqueness is checked by the insert itself, concurrent registrations of one email can not both win
+    public Customer addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age()
         );
-        customerDao.insertCustomer(customer);
+        return customerDao.insertCustomer(customer)
+                .orElseThrow(() -> new DuplicateResourceException("Email already taken!"));
     }
 
 
-    public void deleteCustomerById(Long customerId) {
-        if (!customerDao.existsCustomerWithId(customerId)) {
-            throw new ResourceNotFoundException("customer id [%s] not found!".formatted(customerId));
+    public List<CustomerRegistrationResult> addCustomers(List<CustomerRegistrationRequest> requests) {
+        if (requests.size() > MAX_BULK_SIZE) {
+            throw new RequestValidationException("Bulk request can not contain more than %s customers!".formatted(MAX_BULK_SIZE));
         }
 
-        customerDao.deleteCustomerById(customerId);
-    }
+        CustomerRegistrationResult[] results = new CustomerRegistrationResult[requests.size()];
+        Map<String, Integer> indexByEmail = new LinkedHashMap<>();
 
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            String validationError = validate(request);
+            if (validationError != null) {
+                results[i] = CustomerRegistrationResult.rejected(i, HttpStatus.BAD_REQUEST, validationError);
+            } else if (indexByEmail.putIfAbsent(request.email(), i) != null) {
+                results[i] = CustomerRegistrationResult.rejected(i, HttpStatus.CONFLICT, "Email already taken!");
+            }
+        }
 
-    public void updateCustomer(Long customerId, CustomerUpdateRequest customerUpdateRequest) {
+        Set<String> existingEmails = customerDao.selectExistingEmails(indexByEmail.keySet());
+        List<Customer> customers = new ArrayList<>();
+        indexByEmail.forEach((email, index) -> {
+            if (existingEmails.contains(email)) {
+                results[index] = CustomerRegistrationResult.rejected(index, HttpStatus.CONFLICT, "Email already taken!");
+            } else {
+                CustomerRegistrationRequest request = requests.get(index);
+                customers.add(new Customer(request.name(), request.email(), request.age()));
+            }
+        });
 
-        Customer customer = getCustomer(customerId);
-        boolean containsChanges = false;
+        for (Customer inserted : customerDao.insertCustomers(customers)) {
+            int index = indexByEmail.get(inserted.getEmail());
+            results[index] = CustomerRegistrationResult.created(index, inserted.getId());
+        }
 
-        if (customerUpdateRequest.email() != null && !customerUpdateRequest.email().equals(customer.getEmail())) {
-            if (customerDao.existsCustomerWithEmail(customerUpdateRequest.email())) {
-                throw new DuplicateResourceException("Email already taken!");
+        // Anything left was taken by a concurrent registration between our check and the insert
+        for (Customer customer : customers) {
+            int index = indexByEmail.get(customer.getEmail());
+            if (results[index] == null) {
+                results[index] = CustomerRegistrationResult.rejected(index, HttpStatus.CONFLICT, "Email already taken!");
             }
+        }
+
+        return List.of(results);
+    }
 
-            customer.setEmail(customerUpdateRequest.email());
-            containsChanges = true;
+
+    private static String validate(CustomerRegistrationRequest request) {
+        if (request == null) {
+            return "Customer is missing!";
+        }
+        if (request.name() == null || request.name().isBlank()) {
+            return "Name is missing!";
+        }
+        if (request.email() == null || request.email().isBlank()) {
+            return "Email is missing!";
+        }
+        if (request.age() == null || request.age() < 0) {
+            return "Age is missing or negative!";
         }
+        return null;
+    }
+
 
-        if (customerUpdateRequest.name() != null && !customerUpdateRequest.name().equals(customer.getName())) {
-            customer.setName(customerUpdateRequest.name());
-            containsChanges = true;
+    public void deleteCustomerById(Long customerId) {
+        if (!customerDao.deleteCustomerById(customerId)) {
+            throw new ResourceNotFoundException("customer id [%s] not found!".formatted(customerId));
         }
+    }
+
 
-        if (customerUpdateRequest.age() != null && !customerUpdateRequest.age().equals(customer.getAge())) {
-            customer.setAge(customerUpdateRequest.age());
-            containsChanges = true;
+    public List<Long> deleteCustomersByIds(List<Long> customerIds) {
+        if (customerIds.isEmpty()) {
+            throw new RequestValidationException("No customer ids to delete!");
+        }
+        if (customerIds.size() > MAX_BULK_SIZE) {
+            throw new RequestValidationException("Bulk request can not contain more than %s customers!".formatted(MAX_BULK_SIZE));
         }
 
-        if (!containsChanges) {
+        return customerDao.deleteCustomersByIds(new LinkedHashSet<>(customerIds));
+    }
+
+
+    // The customer is only read again to explain why nothing was updated
+    public Customer updateCustomer(Long customerId, CustomerUpdateRequest customerUpdateRequest, Long expectedVersion) {
+        Customer update = toUpdate(customerId, customerUpdateRequest, expectedVersion);
+
+        Optional<Customer> updated;
+        try {
+            updated = customerDao.updateCustomer(update);
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateResourceException("Email already taken!");
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException("customer id [%s] was modified concurrently!".formatted(customerId));
+        }
+
+        if (updated.isPresent()) {
+            return updated.get();
+        }
+        throw notUpdated(getCustomer(customerId), expectedVersion);
+    }
+
+
+    static Customer toUpdate(Long customerId, CustomerUpdateRequest customerUpdateRequest, Long expectedVersion) {
+        if (customerUpdateRequest.name() == null
+                && customerUpdateRequest.email() == null
+                && customerUpdateRequest.age() == null) {
             throw new RequestValidationException("Request does not contain any changes!");
         }
 
-        customerDao.updateCustomer(customer);
+        Customer update = new Customer(
+                customerId,
+                customerUpdateRequest.name(),
+                customerUpdateRequest.email(),
+                customerUpdateRequest.age()
+        );
+        update.setVersion(expectedVersion);
+        return update;
+    }
+
+
+    // Why an update of an existing customer changed nothing
+    static RuntimeException notUpdated(Customer customer, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(customer.getVersion())) {
+            return new PreconditionFailedException("customer id [%s] has been modified since version [%s]!"
+                    .formatted(customer.getId(), expectedVersion));
+        }
+        return new RequestValidationException("Request does not contain any changes!");
     }
 }
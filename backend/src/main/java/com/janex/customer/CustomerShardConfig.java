@@ -0,0 +1,63 @@
+package com.janex.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Shard databases of customer.dao=sharded, one pool per url in customer.shards.urls.
+// Spring Boot only migrates spring.datasource, the shards get the same migrations here on startup.
+// The order of the urls decides which customers live where, only ever append to it together with moving customers.
+@Configuration
+@ConditionalOnProperty(name = "customer.dao", havingValue = "sharded")
+public class CustomerShardConfig {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+
+    @Bean("sharded")
+    public CustomerShardedDataAccessService customerShardedDataAccessService(DataSourceProperties properties,
+                                                                             Environment environment,
+                                                                             @Value("${customer.shards.urls}") String[] urls,
+                                                                             CustomerRowMapper customerRowMapper,
+                                                                             CustomerIdAllocator customerIdAllocator) {
+        List<JdbcTemplate> shards = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource pool = CustomerDataSources.pool(properties, urls[i], "customer-shard-" + i, environment);
+            pools.add(pool);
+            migrate(pool);
+            shards.add(new JdbcTemplate(pool));
+        }
+        return new CustomerShardedDataAccessService(shards, customerRowMapper, customerIdAllocator);
+    }
+
+
+    // The same migrations as spring.datasource, then the ones only shards need (own history table)
+    static void migrate(DataSource shard) {
+        Flyway.configure().dataSource(shard).load().migrate();
+        Flyway.configure()
+                .dataSource(shard)
+                .locations("classpath:db/shard")
+                .table("flyway_shard_schema_history")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
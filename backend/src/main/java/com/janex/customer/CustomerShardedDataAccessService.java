@@ -0,0 +1,525 @@
+package com.janex.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Customers spread over several postgres databases (customer.shards.urls) by hash of their id, each shard
+// a plain jdbc dao. Ids still come from the customer_id_seq of spring.datasource, so they are unique across shards.
+// Emails are claimed in CustomerEmailDirectory before a customer is written, which keeps them globally unique.
+// Lookups by id touch one shard, everything else asks all shards at once and merges the answers.
+// Writes to the directory and to a shard are not atomic: a failed write releases its claim, a claim left behind
+// by a crash is ignored by email checks and taken over by the next registration of that email after CLAIM_TIMEOUT.
+// Releases name the claim token, so a claim taken over by a registration in the meantime stays. The token of an
+// email that is deleted or changed is read while the shard transaction still holds the row.
+public class CustomerShardedDataAccessService implements CustomerDao, Closeable {
+
+    static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(1);
+    private static final int FOR_EACH_BATCH_SIZE = 1000;
+
+
+    private final List<CustomerJDBCDataAccessService> shards = new ArrayList<>();
+    private final List<TransactionTemplate> transactions = new ArrayList<>();
+    private final CustomerEmailDirectory directory;
+    private final CustomerIdAllocator customerIdAllocator;
+    // Queries are blocking jdbc calls, the shard pools bound how many run at once
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+
+    public CustomerShardedDataAccessService(List<JdbcTemplate> shards,
+                                            CustomerRowMapper customerRowMapper,
+                                            CustomerIdAllocator customerIdAllocator) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        for (JdbcTemplate shard : shards) {
+            this.shards.add(new CustomerJDBCDataAccessService(shard, customerRowMapper, customerIdAllocator, "C"));
+            this.transactions.add(new TransactionTemplate(new DataSourceTransactionManager(shard.getDataSource())));
+        }
+        this.directory = new CustomerEmailDirectory(shards);
+        this.customerIdAllocator = customerIdAllocator;
+    }
+
+
+    // Ids from the sequence are consecutive, mixing them first keeps blocks of ids from piling up on one shard
+    int shardOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return Math.floorMod(hash ^ (hash >>> 32), shards.size());
+    }
+
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        scatter(allShards(), CustomerDao::selectAllCustomers).values().forEach(customers::addAll);
+        customers.sort(Comparator.comparing(Customer::getId));
+        return customers;
+    }
+
+
+    // Every shard returns its own first `limit` customers after the cursor, the page is the first `limit` of all of them.
+    // The shards sort names and emails with the C collation, byte order of UTF-8, whatever their default is.
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        CustomerSortField sortField = pageRequest.sortField();
+        Comparator<Customer> comparator = sortField.isText()
+                ? Comparator.comparing((Customer customer) -> sortField.valueOf(customer),
+                                CustomerShardedDataAccessService::compareCodePoints)
+                        .thenComparing(Customer::getId)
+                : sortField.comparator();
+        if (!pageRequest.direction().isAscending()) {
+            comparator = comparator.reversed();
+        }
+
+        return scatter(allShards(), shard -> shard.selectCustomersPage(pageRequest)).values()
+                .stream()
+                .flatMap(List::stream)
+                .sorted(comparator)
+                .limit(pageRequest.limit())
+                .toList();
+    }
+
+
+    // Merges the shards by id, reading each one page by page
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        Map<Integer, List<Customer>> firstPages = scatter(allShards(), shard -> shard.selectCustomersPage(idPage(null)));
+
+        PriorityQueue<ShardCursor> cursors = new PriorityQueue<>(Comparator.comparing(ShardCursor::currentId));
+        firstPages.forEach((shard, page) -> {
+            if (!page.isEmpty()) {
+                cursors.add(new ShardCursor(shards.get(shard), page));
+            }
+        });
+
+        while (!cursors.isEmpty()) {
+            ShardCursor cursor = cursors.poll();
+            consumer.accept(cursor.current());
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+    }
+
+
+    private static CustomerPageRequest idPage(Customer last) {
+        CustomerPageCursor after = last == null
+                ? null
+                : new CustomerPageCursor(CustomerSortField.ID, Sort.Direction.ASC, String.valueOf(last.getId()), last.getId());
+        return new CustomerPageRequest(CustomerSortField.ID, Sort.Direction.ASC, after, FOR_EACH_BATCH_SIZE);
+    }
+
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return shards.get(shardOf(id)).selectCustomerById(id);
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = groupIds(ids);
+        List<Customer> customers = new ArrayList<>(ids.size());
+        scatter(idsByShard.keySet(), (shard, index) -> shard.selectCustomersByIds(idsByShard.get(index)))
+                .values()
+                .forEach(customers::addAll);
+        return customers;
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        long id = customer.getId() != null ? customer.getId() : customerIdAllocator.nextId();
+        int shard = shardOf(id);
+        Optional<UUID> token = claim(customer.getEmail(), shard);
+        if (token.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<Customer> inserted;
+        try {
+            inserted = shards.get(shard).insertCustomer(
+                    new Customer(id, customer.getName(), customer.getEmail(), customer.getAge())
+            );
+        } catch (RuntimeException e) {
+            directory.release(customer.getEmail(), token.get());
+            throw e;
+        }
+        if (inserted.isEmpty()) {
+            directory.release(customer.getEmail(), token.get());
+        }
+        return inserted;
+    }
+
+
+    // Claims all emails in one query per directory partition, then inserts every shard's part in one go.
+    // A shard that fails releases its claims, the others keep what they inserted.
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        long[] allocated = customerIdAllocator.nextIds((int) customers.stream().filter(c -> c.getId() == null).count());
+        Map<String, Customer> byEmail = new LinkedHashMap<>();
+        int next = 0;
+        for (Customer customer : customers) {
+            long id = customer.getId() != null ? customer.getId() : allocated[next++];
+            // Repeated emails within the batch, the first one wins
+            byEmail.putIfAbsent(
+                    customer.getEmail(),
+                    new Customer(id, customer.getName(), customer.getEmail(), customer.getAge())
+            );
+        }
+        if (byEmail.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, Integer> shardsByEmail = new HashMap<>();
+        byEmail.forEach((email, customer) -> shardsByEmail.put(email, shardOf(customer.getId())));
+        Map<String, UUID> claimed = directory.claimAll(shardsByEmail);
+        shardsByEmail.forEach((email, shard) -> {
+            if (!claimed.containsKey(email)) {
+                claim(email, shard).ifPresent(token -> claimed.put(email, token));
+            }
+        });
+
+        Map<Integer, List<Customer>> customersByShard = new HashMap<>();
+        for (Customer customer : byEmail.values()) {
+            if (claimed.containsKey(customer.getEmail())) {
+                customersByShard.computeIfAbsent(shardOf(customer.getId()), shard -> new ArrayList<>()).add(customer);
+            }
+        }
+
+        Map<Integer, List<Customer>> insertedByShard = scatter(customersByShard.keySet(), (shard, index) -> {
+            List<Customer> batch = customersByShard.get(index);
+            List<Customer> inserted;
+            try {
+                inserted = shard.insertCustomers(batch);
+            } catch (RuntimeException e) {
+                directory.releaseAll(tokensOf(batch.stream().map(Customer::getEmail).toList(), claimed));
+                throw e;
+            }
+            if (inserted.size() < batch.size()) {
+                Set<String> insertedEmails = new HashSet<>();
+                inserted.forEach(customer -> insertedEmails.add(customer.getEmail()));
+                directory.releaseAll(tokensOf(
+                        batch.stream().map(Customer::getEmail).filter(email -> !insertedEmails.contains(email)).toList(),
+                        claimed
+                ));
+            }
+            return inserted;
+        });
+
+        // Same order as they were passed in, like a single database returns them
+        Map<Long, Customer> insertedById = new HashMap<>();
+        insertedByShard.values().forEach(inserted -> inserted.forEach(customer -> insertedById.put(customer.getId(), customer)));
+        List<Customer> inserted = new ArrayList<>(insertedById.size());
+        for (Customer customer : byEmail.values()) {
+            Customer stored = insertedById.get(customer.getId());
+            if (stored != null) {
+                inserted.add(stored);
+            }
+        }
+        return inserted;
+    }
+
+
+    // The directory says which shard to ask, a claim without a customer behind it does not count
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        Optional<CustomerEmailDirectory.Claim> claim = directory.claimOf(email);
+        return claim.isPresent() && isShard(claim.get().shard())
+                && shards.get(claim.get().shard()).existsCustomerWithEmail(email);
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+
+        Map<Integer, List<String>> emailsByShard = new HashMap<>();
+        directory.claimsOf(emails).forEach((email, claim) -> {
+            if (isShard(claim.shard())) {
+                emailsByShard.computeIfAbsent(claim.shard(), s -> new ArrayList<>()).add(email);
+            }
+        });
+
+        Set<String> existing = new HashSet<>();
+        scatter(emailsByShard.keySet(), (shard, index) -> shard.selectExistingEmails(emailsByShard.get(index)))
+                .values()
+                .forEach(existing::addAll);
+        return existing;
+    }
+
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return shards.get(shardOf(id)).existsCustomerWithId(id);
+    }
+
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        return !deleteOnShard(shardOf(id), List.of(id)).isEmpty();
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = groupIds(ids);
+        Map<Integer, List<Long>> deletedByShard = scatter(
+                idsByShard.keySet(),
+                (shard, index) -> deleteOnShard(index, idsByShard.get(index))
+        );
+
+        List<Long> deleted = new ArrayList<>();
+        deletedByShard.values().forEach(deleted::addAll);
+        return deleted;
+    }
+
+
+    // A new email is claimed for the customer's shard first, the old one is released once the update committed
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        int index = shardOf(update.getId());
+        CustomerJDBCDataAccessService shard = shards.get(index);
+        if (update.getEmail() == null) {
+            return shard.updateCustomer(update);
+        }
+
+        Map<String, UUID> release = new HashMap<>();
+        Optional<Customer> updated;
+        try {
+            updated = transactions.get(index).execute(status -> {
+                Optional<Customer> current = shard.selectCustomerForUpdate(update.getId());
+                if (current.isEmpty()) {
+                    return Optional.empty();
+                }
+                String oldEmail = current.get().getEmail();
+                if (oldEmail.equals(update.getEmail())) {
+                    return shard.updateCustomer(update);
+                }
+
+                UUID token = claim(update.getEmail(), index).orElseThrow(() ->
+                        new DuplicateKeyException("Email [%s] already taken".formatted(update.getEmail())));
+                release.put(update.getEmail(), token);
+                Optional<Customer> result = shard.updateCustomer(update);
+                if (result.isPresent()) {
+                    release.clear();
+                    directory.claimOf(oldEmail)
+                            .filter(claim -> claim.shard() == index)
+                            .ifPresent(claim -> release.put(oldEmail, claim.token()));
+                }
+                return result;
+            });
+        } catch (RuntimeException e) {
+            directory.releaseAll(release);
+            throw e;
+        }
+        directory.releaseAll(release);
+        return updated;
+    }
+
+
+    // Deletes in one shard transaction and looks up the claims of the emails before it commits,
+    // until then a registration still finds the customers and can not take their claims over
+    private List<Long> deleteOnShard(int index, List<Long> ids) {
+        Map<String, UUID> release = new HashMap<>();
+        Map<Long, String> deleted = transactions.get(index).execute(status -> {
+            Map<Long, String> emails = shards.get(index).deleteCustomersReturningEmails(ids);
+            directory.claimsOf(emails.values()).forEach((email, claim) -> {
+                if (claim.shard() == index) {
+                    release.put(email, claim.token());
+                }
+            });
+            return emails;
+        });
+        directory.releaseAll(release);
+        return new ArrayList<>(deleted.keySet());
+    }
+
+
+    // Claims the email for the shard. When someone else holds it, it is only taken over if their customer
+    // never made it to its shard and the claim is old enough that their write can not still be on the way.
+    private Optional<UUID> claim(String email, int shard) {
+        Optional<UUID> token = directory.claim(email, shard);
+        if (token.isPresent()) {
+            return token;
+        }
+
+        Optional<CustomerEmailDirectory.Claim> owner = directory.claimOf(email);
+        if (owner.isEmpty()) {
+            // Released in the meantime
+            return directory.claim(email, shard);
+        }
+        if (isShard(owner.get().shard()) && shards.get(owner.get().shard()).existsCustomerWithEmail(email)) {
+            return Optional.empty();
+        }
+        return directory.takeOver(email, owner.get(), shard, CLAIM_TIMEOUT);
+    }
+
+
+    private static Map<String, UUID> tokensOf(List<String> emails, Map<String, UUID> claimed) {
+        Map<String, UUID> tokens = new HashMap<>();
+        emails.forEach(email -> tokens.put(email, claimed.get(email)));
+        return tokens;
+    }
+
+
+    // UTF-8 bytes sort like code points, String#compareTo would put U+E000 to U+FFFF after supplementary characters
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+
+    // Claims may point at shards beyond the configured ones after the shard list was shortened
+    private boolean isShard(int shard) {
+        return shard >= 0 && shard < shards.size();
+    }
+
+
+    private Map<Integer, List<Long>> groupIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new HashMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        return idsByShard;
+    }
+
+
+    private List<Integer> allShards() {
+        List<Integer> all = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+
+    private <T> Map<Integer, T> scatter(Collection<Integer> indexes, Function<CustomerDao, T> query) {
+        return scatter(indexes, (shard, index) -> query.apply(shard));
+    }
+
+
+    // Runs the query on the given shards in parallel and returns the answers by shard.
+    // A single shard is queried on the calling thread. The first failure is rethrown once all shards are done.
+    private <T> Map<Integer, T> scatter(Collection<Integer> indexes, ShardQuery<T> query) {
+        Map<Integer, T> results = new HashMap<>();
+        if (indexes.size() == 1) {
+            int index = indexes.iterator().next();
+            results.put(index, query.apply(shards.get(index), index));
+            return results;
+        }
+
+        Map<Integer, Future<T>> futures = new HashMap<>();
+        for (int index : indexes) {
+            futures.put(index, executor.submit(() -> query.apply(shards.get(index), index)));
+        }
+
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, Future<T>> future : futures.entrySet()) {
+            try {
+                results.put(future.getKey(), future.getValue().get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException
+                            ? runtimeException
+                            : new IllegalStateException("Query on shard %d failed".formatted(future.getKey()), e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for the shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+
+    @FunctionalInterface
+    private interface ShardQuery<T> {
+
+        T apply(CustomerDao shard, int index);
+    }
+
+
+    // Next customer of one shard in forEachCustomer, fetches the following page once the current one is used up
+    private static final class ShardCursor {
+
+        private final CustomerDao shard;
+        private List<Customer> page;
+        private int position;
+
+
+        private ShardCursor(CustomerDao shard, List<Customer> page) {
+            this.shard = shard;
+            this.page = page;
+        }
+
+
+        private Customer current() {
+            return page.get(position);
+        }
+
+
+        private long currentId() {
+            return current().getId();
+        }
+
+
+        private boolean advance() {
+            position++;
+            if (position < page.size()) {
+                return true;
+            }
+            if (page.size() < FOR_EACH_BATCH_SIZE) {
+                return false;
+            }
+            page = shard.selectCustomersPage(idPage(page.get(page.size() - 1)));
+            position = 0;
+            return !page.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.janex.customer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Binary snapshot of all customers of the list dao.
+// Layout: magic, format version, first log segment to replay on top, highest id handed out, customer count,
+// the customers as encoded by CustomerLog, CRC32 of the customer bytes.
+// The highest id survives deleting that customer, so ids allocated after a restart are never reused.
+// Format 1 has no highest id, the highest stored id stands in for it.
+// Written to a temporary file and renamed over the old snapshot, so a crash leaves either the old or the new one.
+final class CustomerSnapshot {
+
+    private static final long MAGIC = 0x43555354534E4150L; // "CUSTSNAP"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + 3 * Long.BYTES;
+    private static final int COUNT_OFFSET = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+
+    private CustomerSnapshot() {
+    }
+
+
+    // Customers may change while they are written, the log segments from firstSegment on fix that up on recovery
+    static void write(Path path, long firstSegment, long lastId, Iterable<Customer> customers, boolean fsync) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putLong(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(firstSegment)
+                    .putLong(lastId)
+                    .putLong(0); // Count, filled in at the end
+
+            CRC32 crc = new CRC32();
+            long count = 0;
+            for (Customer customer : customers) {
+                byte[] encoded = CustomerLog.encodeCustomer(customer);
+                if (buffer.remaining() < encoded.length) {
+                    flush(channel, buffer);
+                    if (buffer.remaining() < encoded.length) {
+                        writeFully(channel, ByteBuffer.wrap(encoded));
+                        crc.update(encoded);
+                        count++;
+                        continue;
+                    }
+                }
+                buffer.put(encoded);
+                crc.update(encoded);
+                count++;
+            }
+            if (buffer.remaining() < Long.BYTES) {
+                flush(channel, buffer);
+            }
+            buffer.putLong(crc.getValue());
+            flush(channel, buffer);
+
+            writeFully(channel, ByteBuffer.allocate(Long.BYTES).putLong(count).flip(), COUNT_OFFSET);
+            if (fsync) {
+                channel.force(true);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (fsync) {
+            CustomerLog.syncDirectory(path.toAbsolutePath().getParent());
+        }
+    }
+
+
+    // Hands the customers to the consumer, Header.NONE when there is no snapshot
+    static Header read(Path path, Consumer<Customer> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return Header.NONE;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Customer snapshot %s is larger than 2 GB".formatted(path));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // As long as the header of this format or the header and CRC of format 1
+            if (buffer.remaining() < HEADER_SIZE || buffer.getLong() != MAGIC) {
+                throw new IllegalStateException("%s is not a customer snapshot".formatted(path));
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion != 1 && formatVersion != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported customer snapshot format %d".formatted(formatVersion));
+            }
+            long firstSegment = buffer.getLong();
+            long lastId = formatVersion == 1 ? 0 : buffer.getLong();
+            long count = buffer.getLong();
+
+            // Check the whole body before anything is applied
+            int headerSize = buffer.position();
+            if (buffer.remaining() < Long.BYTES) {
+                throw new IllegalStateException("Customer snapshot %s is corrupt".formatted(path));
+            }
+            ByteBuffer body = buffer.slice(headerSize, buffer.limit() - headerSize - Long.BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != buffer.getLong(buffer.limit() - Long.BYTES)) {
+                throw new IllegalStateException("Customer snapshot %s is corrupt".formatted(path));
+            }
+
+            for (long i = 0; i < count; i++) {
+                Customer customer = CustomerLog.decodeCustomer(body);
+                lastId = Math.max(lastId, customer.getId());
+                consumer.accept(customer);
+            }
+            return new Header(firstSegment, lastId);
+        }
+    }
+
+
+    // firstSegment is the first log segment to replay on top, -1 without a snapshot
+    record Header(long firstSegment, long lastId) {
+
+        static final Header NONE = new Header(-1, 0);
+    }
+
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.janex.customer;
+
+import com.janex.exception.RequestValidationException;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+// Columns that customers can be ordered by when paging.
+// Each column is paired with id as a tie-breaker, so (column, id) is always unique and can be used as a keyset.
+public enum CustomerSortField {
+
+    ID("id", Customer::getId, Long::valueOf),
+    NAME("name", Customer::getName, Function.identity()),
+    EMAIL("email", Customer::getEmail, Function.identity()),
+    AGE("age", Customer::getAge, Integer::valueOf);
+
+
+    private final String column;
+    private final Function<Customer, ? extends Comparable<?>> extractor;
+    private final Function<String, ? extends Comparable<?>> parser;
+
+
+    CustomerSortField(String column,
+                      Function<Customer, ? extends Comparable<?>> extractor,
+                      Function<String, ? extends Comparable<?>> parser) {
+        this.column = column;
+        this.extractor = extractor;
+        this.parser = parser;
+    }
+
+
+    // Column name in the customer table, also the property name of the Customer entity
+    public String column() {
+        return column;
+    }
+
+
+    public boolean isText() {
+        return this == NAME || this == EMAIL;
+    }
+
+
+    public String valueOf(Customer customer) {
+        return String.valueOf(extractor.apply(customer));
+    }
+
+
+    public Comparable<?> parseValue(String value) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new RequestValidationException("Invalid cursor!");
+        }
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Comparator<Customer> comparator() {
+        Comparator<Customer> byColumn = Comparator.comparing(customer -> (Comparable) extractor.apply(customer));
+        return byColumn.thenComparing(Customer::getId);
+    }
+
+
+    public static CustomerSortField fromParameter(String parameter) {
+        for (CustomerSortField sortField : values()) {
+            if (sortField.column.equalsIgnoreCase(parameter)) {
+                return sortField;
+            }
+        }
+        throw new RequestValidationException("Unsupported sort field [%s]!".formatted(parameter));
+    }
+}
@@ -0,0 +1,203 @@
+package com.janex.customer;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+
+// Slots of a CustomerColumnStore in the order of one sort field.
+// Slots are kept in sorted blocks of at most BLOCK_SIZE, every block orders before the next one: an insert or
+// remove moves the entries of one block only, and only a split or an emptied block moves the (short) block array.
+// The order must be total, slots only compare equal to themselves (sort fields are paired with the id).
+// Not thread safe, CustomerColumnStore guards it.
+final class CustomerSortIndex {
+
+    static final int BLOCK_SIZE = 1024;
+
+
+    private final IntBinaryOperator order;
+    private int[][] blocks = new int[16][];
+    private int[] blockSizes = new int[16];
+    private int blockCount;
+    private int size;
+
+
+    CustomerSortIndex(IntBinaryOperator order) {
+        this.order = order;
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    void add(int slot) {
+        if (blockCount == 0) {
+            int[] entries = new int[BLOCK_SIZE];
+            entries[0] = slot;
+            insertBlock(0, entries, 1);
+            size++;
+            return;
+        }
+
+        long position = firstWhere(s -> order.applyAsInt(s, slot) > 0);
+        int block = block(position);
+        int index = index(position);
+        if (block == blockCount) {
+            block = blockCount - 1;
+            index = blockSizes[block];
+        }
+
+        if (blockSizes[block] == BLOCK_SIZE && index == BLOCK_SIZE && block == blockCount - 1) {
+            // Appending, as with ascending ids: a fresh block keeps the full one full
+            block++;
+            index = 0;
+            insertBlock(block, new int[BLOCK_SIZE], 0);
+        } else if (blockSizes[block] == BLOCK_SIZE) {
+            int half = BLOCK_SIZE / 2;
+            int[] upper = new int[BLOCK_SIZE];
+            System.arraycopy(blocks[block], half, upper, 0, half);
+            blockSizes[block] = half;
+            insertBlock(block + 1, upper, half);
+            if (index > half) {
+                block++;
+                index -= half;
+            }
+        }
+
+        int[] entries = blocks[block];
+        System.arraycopy(entries, index, entries, index + 1, blockSizes[block] - index);
+        entries[index] = slot;
+        blockSizes[block]++;
+        size++;
+    }
+
+
+    // Has to run while the columns still hold the values the slot was added with
+    void remove(int slot) {
+        long position = firstWhere(s -> order.applyAsInt(s, slot) >= 0);
+        int block = block(position);
+        int index = index(position);
+        if (block == blockCount || blocks[block][index] != slot) {
+            throw new IllegalStateException("Slot " + slot + " is not in the index");
+        }
+
+        int[] entries = blocks[block];
+        System.arraycopy(entries, index + 1, entries, index, blockSizes[block] - index - 1);
+        blockSizes[block]--;
+        size--;
+
+        if (blockSizes[block] == 0) {
+            removeBlock(block);
+        } else if (block + 1 < blockCount && blockSizes[block] + blockSizes[block + 1] <= BLOCK_SIZE / 2) {
+            // Keep blocks at least a quarter full on average, deletes would otherwise leave many almost empty ones
+            System.arraycopy(blocks[block + 1], 0, entries, blockSizes[block], blockSizes[block + 1]);
+            blockSizes[block] += blockSizes[block + 1];
+            removeBlock(block + 1);
+        }
+    }
+
+
+    // Hands slots to visitor until it returns false. split fails for a prefix of the order and passes for the rest:
+    // ascending starts at the first slot that passes, descending at the last one that fails and walks backwards.
+    void walk(boolean ascending, IntPredicate split, IntPredicate visitor) {
+        long position = firstWhere(split);
+        int block = block(position);
+        int index = index(position);
+
+        if (ascending) {
+            for (; block < blockCount; block++, index = 0) {
+                for (; index < blockSizes[block]; index++) {
+                    if (!visitor.test(blocks[block][index])) {
+                        return;
+                    }
+                }
+            }
+        } else {
+            for (index--; block >= 0; ) {
+                if (index < 0) {
+                    if (--block < 0) {
+                        return;
+                    }
+                    index = blockSizes[block] - 1;
+                    continue;
+                }
+                if (!visitor.test(blocks[block][index--])) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    long heapBytes() {
+        return (long) blockCount * (BLOCK_SIZE * Integer.BYTES + 16) + (long) blocks.length * (8 + Integer.BYTES);
+    }
+
+
+    // Position (block in the high 32 bits, index in the low) of the first slot that passes test, which has to fail
+    // for a prefix of the order and pass for the rest. blockCount when no slot passes.
+    private long firstWhere(IntPredicate test) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (test.test(blocks[middle][blockSizes[middle] - 1])) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        if (low == blockCount) {
+            return position(blockCount, 0);
+        }
+
+        int[] entries = blocks[low];
+        int first = 0;
+        int last = blockSizes[low] - 1; // Passes, see above
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (test.test(entries[middle])) {
+                last = middle;
+            } else {
+                first = middle + 1;
+            }
+        }
+        return position(low, first);
+    }
+
+
+    private void insertBlock(int at, int[] entries, int entryCount) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            blockSizes = Arrays.copyOf(blockSizes, blockCount * 2);
+        }
+        System.arraycopy(blocks, at, blocks, at + 1, blockCount - at);
+        System.arraycopy(blockSizes, at, blockSizes, at + 1, blockCount - at);
+        blocks[at] = entries;
+        blockSizes[at] = entryCount;
+        blockCount++;
+    }
+
+
+    private void removeBlock(int at) {
+        System.arraycopy(blocks, at + 1, blocks, at, blockCount - at - 1);
+        System.arraycopy(blockSizes, at + 1, blockSizes, at, blockCount - at - 1);
+        blocks[--blockCount] = null;
+    }
+
+
+    private static long position(int block, int index) {
+        return ((long) block << 32) | index;
+    }
+
+
+    private static int block(long position) {
+        return (int) (position >>> 32);
+    }
+
+
+    private static int index(long position) {
+        return (int) position;
+    }
+}
@@ -0,0 +1,24 @@
+package com.janex.customer;
+
+// Kinds of customer requests that get their own bulkhead, so one kind can not take the threads
+// and connections the others need
+public enum CustomerWorkload {
+
+    POINT_READ("point-read"),
+    WRITE("write"),
+    SCAN("scan"); // Pages, export, streaming bulk registration, import
+
+
+    private final String property;
+
+
+    CustomerWorkload(String property) {
+        this.property = property;
+    }
+
+
+    // Name under customer.bulkhead.* and in the bulkhead metric tag
+    public String property() {
+        return property;
+    }
+}
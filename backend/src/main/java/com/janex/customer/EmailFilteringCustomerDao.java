@@ -0,0 +1,120 @@
+package com.janex.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Keeps CustomerEmailFilter current on writes and lets bulk registration (selectExistingEmails) look up only
+// the emails the filter can not rule out.
+public class EmailFilteringCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final CustomerEmailFilter emailFilter;
+
+
+    public EmailFilteringCustomerDao(CustomerDao delegate, CustomerEmailFilter emailFilter) {
+        this.delegate = delegate;
+        this.emailFilter = emailFilter;
+    }
+
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        return delegate.selectCustomersPage(pageRequest);
+    }
+
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        delegate.forEachCustomer(consumer);
+    }
+
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return delegate.selectCustomerById(id);
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        Optional<Customer> inserted = delegate.insertCustomer(customer);
+        inserted.ifPresent(c -> emailFilter.add(c.getEmail()));
+        return inserted;
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        List<Customer> inserted = delegate.insertCustomers(customers);
+        inserted.forEach(c -> emailFilter.add(c.getEmail()));
+        return inserted;
+    }
+
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        List<String> candidates = emails.stream()
+                .filter(emailFilter::mightExist)
+                .toList();
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> existing = delegate.selectExistingEmails(candidates);
+        for (int i = existing.size(); i < candidates.size(); i++) {
+            emailFilter.recordFalsePositive();
+        }
+        return existing;
+    }
+
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+
+    // Emails that left the table are counted from the change notifications (CustomerChangeListener),
+    // which know whether a delete or update really removed an email
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return delegate.deleteCustomersByIds(ids);
+    }
+
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        Optional<Customer> updated = delegate.updateCustomer(update);
+        if (updated.isPresent() && update.getEmail() != null) {
+            emailFilter.add(updated.get().getEmail());
+        }
+        return updated;
+    }
+}
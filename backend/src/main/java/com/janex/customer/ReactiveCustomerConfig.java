@@ -0,0 +1,61 @@
+package com.janex.customer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+// The R2DBC pool is deliberately not a ConnectionFactory bean (and R2dbcAutoConfiguration is excluded):
+// Spring Boot drops the JDBC DataSource as soon as there is one, and Flyway, the id allocator
+// and the change listener still need JDBC on the reactive stack.
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveCustomerConfig {
+
+    private ConnectionPool connectionPool;
+
+
+    @Bean
+    public DatabaseClient customerDatabaseClient(R2dbcProperties properties,
+                                                 @Value("${customer.change-listener.enabled:false}") boolean notifyChanges) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(properties.getUrl())
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, properties.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.getPassword())
+                .build();
+
+        R2dbcProperties.Pool pool = properties.getPool();
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .postAllocate(connection -> Flux.from(connection
+                        .createStatement("SET customer.notify_changes = '" + notifyChanges + "'")
+                        .execute()).then());
+        if (pool.getMaxAcquireTime() != null) {
+            configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+
+        connectionPool = new ConnectionPool(configuration.build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+
+    @PreDestroy
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.janex.customer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+// Customer endpoints of CustomerController on WebFlux and R2DBC, served instead of it with the reactive profile.
+// Bulk registration, CSV import and export are only available on the servlet stack.
+@RestController
+@RequestMapping("api/v1/customers")
+@Profile("reactive")
+public class ReactiveCustomerController {
+
+
+    private final ReactiveCustomerService customerService;
+
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+
+    // checkNotModified answers If-None-Match with 304, an empty Mono then leaves the response without a body
+    @GetMapping
+    public Mono<ResponseEntity<CustomerPage>> getCustomers(
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "direction", required = false) String direction,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            ServerWebExchange exchange
+    ) {
+        return customerService.getCustomersPage(sort, direction, cursor, size)
+                .flatMap(page -> {
+                    String eTag = CustomerETag.of(page);
+                    if (exchange.checkNotModified(eTag)) {
+                        return Mono.empty();
+                    }
+                    return Mono.just(ResponseEntity.ok()
+                            .eTag(eTag)
+                            .body(page));
+                });
+    }
+
+
+    // Accept: application/x-ndjson streams every customer, one line each.
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> streamCustomers() {
+        return customerService.streamCustomers();
+    }
+
+
+    @GetMapping("{customerId}")
+    public Mono<ResponseEntity<Customer>> getCustomer(@PathVariable("customerId") Long customerId,
+                                                      ServerWebExchange exchange) {
+        return customerService.getCustomer(customerId)
+                .flatMap(customer -> {
+                    String eTag = CustomerETag.of(customer);
+                    if (exchange.checkNotModified(eTag)) {
+                        return Mono.empty();
+                    }
+                    return Mono.just(ResponseEntity.ok()
+                            .eTag(eTag)
+                            .body(customer));
+                });
+    }
+
+
+    @PostMapping
+    public Mono<ResponseEntity<Customer>> registerCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest,
+                                                           ServerWebExchange exchange) {
+        return customerService.addCustomer(customerRegistrationRequest)
+                .map(customer -> {
+                    URI location = UriComponentsBuilder.fromHttpRequest(exchange.getRequest())
+                            .path("/{customerId}")
+                            .buildAndExpand(customer.getId())
+                            .toUri();
+                    return ResponseEntity.created(location)
+                            .eTag(CustomerETag.of(customer))
+                            .body(customer);
+                });
+    }
+
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomerById(@PathVariable("customerId") Long customerId) {
+        return customerService.deleteCustomerById(customerId);
+    }
+
+
+    @PutMapping("{customerId}")
+    public Mono<ResponseEntity<Customer>> updateCustomerById(
+            @PathVariable("customerId") Long customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody CustomerUpdateRequest customerUpdateRequest
+    ) {
+        return customerService.updateCustomer(customerId, customerUpdateRequest, CustomerETag.expectedVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok()
+                        .eTag(CustomerETag.of(updated))
+                        .body(updated));
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.janex.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking counterpart of CustomerDao, used by the reactive profile
+public interface ReactiveCustomerDao {
+
+
+    // Streams all customers ordered by id
+    Flux<Customer> selectAllCustomers();
+
+
+    Flux<Customer> selectCustomersPage(CustomerPageRequest pageRequest);
+
+
+    Mono<Customer> selectCustomerById(Long id);
+
+
+    // Emits the stored customer with its generated id, or completes empty when the email is already taken
+    Mono<Customer> insertCustomer(Customer customer);
+
+
+    // Same contract as CustomerDao.updateCustomer, completes empty when nothing was updated
+    Mono<Customer> updateCustomer(Customer update);
+
+
+    // Emits false when there was no customer with the given id
+    Mono<Boolean> deleteCustomerById(Long id);
+
+}
@@ -0,0 +1,72 @@
+package com.janex.customer;
+
+import com.janex.exception.DuplicateResourceException;
+import com.janex.exception.ResourceNotFoundException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// CustomerService operations for the reactive profile, validation and paging rules are shared with CustomerService
+@Service
+@Profile("reactive")
+public class ReactiveCustomerService {
+
+
+    private final ReactiveCustomerDao customerDao;
+
+
+    public ReactiveCustomerService(ReactiveCustomerDao customerDao) {
+        this.customerDao = customerDao;
+    }
+
+
+    public Flux<Customer> streamCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+
+    // Deferred so a bad cursor or size fails the subscription instead of the call
+    public Mono<CustomerPage> getCustomersPage(String sort, String direction, String cursor, Integer size) {
+        return Mono.defer(() -> {
+            CustomerPageRequest pageRequest = CustomerService.pageRequest(sort, direction, cursor, size);
+            return customerDao.selectCustomersPage(pageRequest)
+                    .collectList()
+                    .map(customers -> CustomerService.toPage(pageRequest, customers));
+        });
+    }
+
+
+    public Mono<Customer> getCustomer(Long id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("customer id [%s] not found!".formatted(id))));
+    }
+
+
+    public Mono<Customer> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age()
+        );
+        return customerDao.insertCustomer(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("Email already taken!")));
+    }
+
+
+    public Mono<Void> deleteCustomerById(Long customerId) {
+        return customerDao.deleteCustomerById(customerId)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("customer id [%s] not found!".formatted(customerId))))
+                .then();
+    }
+
+
+    public Mono<Customer> updateCustomer(Long customerId, CustomerUpdateRequest customerUpdateRequest, Long expectedVersion) {
+        return Mono.defer(() -> customerDao.updateCustomer(CustomerService.toUpdate(customerId, customerUpdateRequest, expectedVersion)))
+                .onErrorMap(DataIntegrityViolationException.class, e -> new DuplicateResourceException("Email already taken!"))
+                .switchIfEmpty(Mono.defer(() -> getCustomer(customerId)
+                        .flatMap(customer -> Mono.error(CustomerService.notUpdated(customer, expectedVersion)))));
+    }
+}
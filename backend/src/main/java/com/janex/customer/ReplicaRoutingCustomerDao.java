@@ -0,0 +1,118 @@
+package com.janex.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Sends reads of the delegate to a replica picked by CustomerReplicaRouter, writes stay on the primary.
+// After a write the current WAL position of the primary becomes the read-your-writes token of the request
+// (only when the request asked for one, see CustomerConsistency).
+public class ReplicaRoutingCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final CustomerReplicaRouter router;
+
+
+    public ReplicaRoutingCustomerDao(CustomerDao delegate, CustomerReplicaRouter router) {
+        this.delegate = delegate;
+        this.router = router;
+    }
+
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return router.read(delegate::selectAllCustomers);
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        return router.read(() -> delegate.selectCustomersPage(pageRequest));
+    }
+
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        AtomicBoolean streaming = new AtomicBoolean();
+        router.read(() -> {
+            delegate.forEachCustomer(customer -> {
+                streaming.set(true);
+                consumer.accept(customer);
+            });
+            return null;
+        }, () -> !streaming.get());
+    }
+
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return router.read(() -> delegate.selectCustomerById(id));
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return router.read(() -> delegate.selectCustomersByIds(ids));
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        return write(() -> delegate.insertCustomer(customer));
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        return write(() -> delegate.insertCustomers(customers));
+    }
+
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return router.read(() -> delegate.existsCustomerWithEmail(email));
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return router.read(() -> delegate.selectExistingEmails(emails));
+    }
+
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return router.read(() -> delegate.existsCustomerWithId(id));
+    }
+
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        return write(() -> delegate.deleteCustomerById(id));
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        return write(() -> delegate.deleteCustomersByIds(ids));
+    }
+
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        return write(() -> delegate.updateCustomer(update));
+    }
+
+
+    private <T> T write(Supplier<T> action) {
+        T result = action.get();
+        if (CustomerConsistency.tracksWrites()) {
+            CustomerConsistency.wrote(router.primaryLsn());
+        }
+        return result;
+    }
+}
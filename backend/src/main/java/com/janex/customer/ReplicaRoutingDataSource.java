@@ -0,0 +1,74 @@
+package com.janex.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Hands out connections of the primary unless the current thread is inside onReplica(...).
+// JdbcTemplate and JPA both ask for a connection on the calling thread, so whatever a dao runs inside
+// onReplica reads from that replica. Inside a transaction the connection is already bound and stays the primary.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final ThreadLocal<Integer> REPLICA = new ThreadLocal<>();
+
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return REPLICA.get();
+    }
+
+
+    <T> T onReplica(int replica, Supplier<T> action) {
+        Integer previous = REPLICA.get();
+        REPLICA.set(replica);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                REPLICA.remove();
+            } else {
+                REPLICA.set(previous);
+            }
+        }
+    }
+
+
+    HikariDataSource primary() {
+        return primary;
+    }
+
+
+    List<HikariDataSource> replicas() {
+        return replicas;
+    }
+
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
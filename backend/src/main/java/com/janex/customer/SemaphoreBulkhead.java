@@ -0,0 +1,63 @@
+package com.janex.customer;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// At most maxConcurrent callers inside, at most maxQueued more waiting up to maxWait for one of them to leave.
+// Anyone beyond that is turned away immediately.
+final class SemaphoreBulkhead {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final AtomicInteger queued = new AtomicInteger();
+
+
+    SemaphoreBulkhead(int maxConcurrent, int maxQueued, Duration maxWait) {
+        if (maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("Bulkhead needs at least one permit and a queue that is not negative");
+        }
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+
+    // Returns false when the caller was turned away, true when it is inside and has to call leave()
+    boolean tryEnter() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+
+    void leave() {
+        permits.release();
+    }
+
+
+    int active() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+
+    int queued() {
+        return queued.get();
+    }
+}
@@ -0,0 +1,142 @@
+package com.janex.customer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Concurrent lookups of the same id share one query to the delegate (see SingleFlight).
+// Writes through this dao make later lookups of the ids they touched start a fresh query.
+// Lookups that need fresh data (see CustomerConsistency) run on their own, the shared query may read a lagging replica.
+// Email checks are not coalesced, registration and update find taken emails in the write itself.
+public class SingleFlightCustomerDao implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final SingleFlight<Long, Optional<Customer>> customersById = new SingleFlight<>();
+
+
+    public SingleFlightCustomerDao(CustomerDao delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        register(meterRegistry, "selectCustomerById", customersById);
+    }
+
+
+    // customer.dao.calls{operation, result=executed|coalesced} counts queries made and lookups that joined one,
+    // customer.dao.calls.coalesced.ratio is the share of lookups that were coalesced since startup
+    private static void register(MeterRegistry meterRegistry, String operation, SingleFlight<?, ?> singleFlight) {
+        FunctionCounter.builder("customer.dao.calls", singleFlight, SingleFlight::executed)
+                .tags("operation", operation, "result", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.dao.calls", singleFlight, SingleFlight::coalesced)
+                .tags("operation", operation, "result", "coalesced")
+                .register(meterRegistry);
+        Gauge.builder("customer.dao.calls.coalesced.ratio", singleFlight, SingleFlightCustomerDao::coalescedRatio)
+                .tags("operation", operation)
+                .register(meterRegistry);
+    }
+
+
+    private static double coalescedRatio(SingleFlight<?, ?> singleFlight) {
+        long coalesced = singleFlight.coalesced();
+        long total = coalesced + singleFlight.executed();
+        return total == 0 ? 0.0 : (double) coalesced / total;
+    }
+
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersPage(CustomerPageRequest pageRequest) {
+        return delegate.selectCustomersPage(pageRequest);
+    }
+
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> consumer) {
+        delegate.forEachCustomer(consumer);
+    }
+
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (CustomerConsistency.requiresFreshReads()) {
+            return delegate.selectCustomerById(id);
+        }
+        return customersById.execute(id, () -> delegate.selectCustomerById(id));
+    }
+
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+
+    @Override
+    public Optional<Customer> insertCustomer(Customer customer) {
+        return delegate.insertCustomer(customer);
+    }
+
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        return delegate.insertCustomers(customers);
+    }
+
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+
+    @Override
+    public boolean deleteCustomerById(Long id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            customersById.forget(id);
+        }
+    }
+
+
+    @Override
+    public List<Long> deleteCustomersByIds(Collection<Long> ids) {
+        try {
+            return delegate.deleteCustomersByIds(ids);
+        } finally {
+            ids.forEach(customersById::forget);
+        }
+    }
+
+
+    @Override
+    public Optional<Customer> updateCustomer(Customer update) {
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            customersById.forget(update.getId());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.janex.customer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append only storage of strings as length prefixed UTF-8 in large byte chunks.
+// A value is addressed by a long ref: chunk index in the high 32 bits, offset in the low.
+// Not thread safe, CustomerColumnStore guards it.
+final class Utf8Arena {
+
+    static final int CHUNK_SIZE = 1 << 20;
+
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private int position = CHUNK_SIZE; // Forces a chunk on the first append
+    private long bytesUsed;
+
+
+    long append(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int size = varIntSize(bytes.length) + bytes.length;
+        if (position + size > CHUNK_SIZE) {
+            chunks.add(new byte[Math.max(CHUNK_SIZE, size)]);
+            position = 0;
+        }
+
+        byte[] chunk = chunks.get(chunks.size() - 1);
+        long ref = ((long) (chunks.size() - 1) << 32) | position;
+        int offset = writeVarInt(chunk, position, bytes.length);
+        System.arraycopy(bytes, 0, chunk, offset, bytes.length);
+        position = offset + bytes.length;
+        bytesUsed += size;
+        return ref;
+    }
+
+
+    String read(long ref) {
+        byte[] chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        int length = readVarInt(chunk, offset);
+        int start = offset + varIntSize(length);
+        return new String(chunk, start, length, StandardCharsets.UTF_8);
+    }
+
+
+    boolean equals(long ref, byte[] utf8) {
+        byte[] chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        int length = readVarInt(chunk, offset);
+        int start = offset + varIntSize(length);
+        return length == utf8.length && Arrays.equals(chunk, start, start + length, utf8, 0, utf8.length);
+    }
+
+
+    // Orders like String#compareTo of the decoded values, without decoding them
+    int compare(long ref, long otherRef) {
+        byte[] otherChunk = chunks.get((int) (otherRef >>> 32));
+        int otherOffset = (int) otherRef;
+        int otherLength = readVarInt(otherChunk, otherOffset);
+        return compare(ref, otherChunk, otherOffset + varIntSize(otherLength), otherLength);
+    }
+
+
+    int compare(long ref, byte[] utf8) {
+        return compare(ref, utf8, 0, utf8.length);
+    }
+
+
+    private int compare(long ref, byte[] other, int otherStart, int otherLength) {
+        byte[] chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        int length = readVarInt(chunk, offset);
+        int start = offset + varIntSize(length);
+
+        int mismatch = Arrays.mismatch(chunk, start, start + length, other, otherStart, otherStart + otherLength);
+        if (mismatch < 0) {
+            return 0;
+        }
+        if (mismatch == length || mismatch == otherLength) {
+            return length - otherLength;
+        }
+        return utf16Rank(chunk[start + mismatch]) - utf16Rank(other[otherStart + mismatch]);
+    }
+
+
+    // UTF-8 bytes sort like code points, Strings like UTF-16 chars: the two only disagree about U+E000 to U+FFFF
+    // (lead bytes 0xEE and 0xEF), which come after the surrogate pairs of U+10000 and up (lead bytes 0xF0 to 0xF4) in UTF-16.
+    // Both values share everything before the first difference, so it is either at a lead byte in both or inside one character.
+    private static int utf16Rank(byte b) {
+        int value = b & 0xFF;
+        return value == 0xEE || value == 0xEF ? value + 0x10 : value;
+    }
+
+
+    // Bytes taken by the value including its length prefix, used to track garbage left behind by updates and deletes
+    int sizeOf(long ref) {
+        byte[] chunk = chunks.get((int) (ref >>> 32));
+        int length = readVarInt(chunk, (int) ref);
+        return varIntSize(length) + length;
+    }
+
+
+    long bytesUsed() {
+        return bytesUsed;
+    }
+
+
+    long bytesAllocated() {
+        return chunks.stream().mapToLong(chunk -> chunk.length).sum();
+    }
+
+
+    private static int writeVarInt(byte[] chunk, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            chunk[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        chunk[offset++] = (byte) value;
+        return offset;
+    }
+
+
+    private static int readVarInt(byte[] chunk, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = chunk[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
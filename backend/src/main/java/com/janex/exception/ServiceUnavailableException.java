@@ -0,0 +1,20 @@
+package com.janex.exception;
+
+import java.time.Duration;
+
+// Request was shed to protect the service, the client should come back after retryAfter
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -2,8 +2,11 @@ package com.janex.rest.handler;
 
 import com.janex.exception.ApiException;
 import com.janex.exception.DuplicateResourceException;
+import com.janex.exception.PreconditionFailedException;
 import com.janex.exception.RequestValidationException;
 import com.janex.exception.ResourceNotFoundException;
+import com.janex.exception.ServiceUnavailableException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -54,4 +57,35 @@ public class ApiExceptionHandler {
 
         return new ResponseEntity<>(apiException, notFound);
     }
+
+
+    @ExceptionHandler(value = {PreconditionFailedException.class})
+    public ResponseEntity<ApiException> handleApiPreconditionFailedException(PreconditionFailedException e) {
+        HttpStatus preconditionFailed = HttpStatus.PRECONDITION_FAILED;
+
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                preconditionFailed,
+                ZonedDateTime.now()
+        );
+
+        return new ResponseEntity<>(apiException, preconditionFailed);
+    }
+
+
+    @ExceptionHandler(value = {ServiceUnavailableException.class})
+    public ResponseEntity<ApiException> handleApiServiceUnavailableException(ServiceUnavailableException e) {
+        HttpStatus serviceUnavailable = HttpStatus.SERVICE_UNAVAILABLE;
+
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                serviceUnavailable,
+                ZonedDateTime.now()
+        );
+
+        // Retry-After is in whole seconds, never tell a client to come back right away
+        return ResponseEntity.status(serviceUnavailable)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(apiException);
+    }
 }
@@ -0,0 +1,3 @@
+CREATE INDEX customer_name_id_idx ON customer (name, id);
+CREATE INDEX customer_email_id_idx ON customer (email, id);
+CREATE INDEX customer_age_id_idx ON customer (age, id);
@@ -0,0 +1,104 @@
+-- Tells every application node which customers changed, so cached copies can be dropped.
+-- Statement level triggers send one message per 100 changed rows instead of one per row,
+-- statements that change a lot of rows (CSV import) send a single RESET instead.
+-- A transaction that sent a NOTIFY takes the cluster wide notification queue lock while it commits, so
+-- sessions with customer.notify_changes = false skip them (see customer.change-listener.enabled).
+-- Unset means on, so writes straight in the database still notify.
+CREATE FUNCTION send_customer_change(payload TEXT) RETURNS VOID AS $$
+BEGIN
+    -- NOTIFY payloads are limited to 8000 bytes, very long emails could get past that
+    IF octet_length(payload) > 7900 THEN
+        payload := json_build_object('op', 'RESET')::text;
+    END IF;
+    PERFORM pg_notify('customer_changes', payload);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION notify_customer_changes() RETURNS TRIGGER AS $$
+DECLARE
+    changed_rows BIGINT;
+    payload TEXT;
+BEGIN
+    IF current_setting('customer.notify_changes', true) = 'false' THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM send_customer_change(json_build_object('op', 'RESET')::text);
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        SELECT count(*) INTO changed_rows FROM old_rows;
+    ELSE
+        SELECT count(*) INTO changed_rows FROM new_rows;
+    END IF;
+
+    IF changed_rows = 0 THEN
+        RETURN NULL;
+    END IF;
+
+    IF changed_rows > 10000 THEN
+        PERFORM send_customer_change(json_build_object('op', 'RESET')::text);
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'INSERT' THEN
+        FOR payload IN
+            SELECT json_build_object('op', TG_OP, 'ids', json_agg(id), 'emails', json_agg(email), 'stale', 0)::text
+            FROM (SELECT id, email, (row_number() OVER () - 1) / 100 AS chunk FROM new_rows) c
+            GROUP BY chunk
+        LOOP
+            PERFORM send_customer_change(payload);
+        END LOOP;
+    ELSIF TG_OP = 'UPDATE' THEN
+        FOR payload IN
+            SELECT json_build_object(
+                    'op', TG_OP,
+                    'ids', json_agg(id),
+                    'emails', coalesce(json_agg(email) FILTER (WHERE email_changed), '[]'::json),
+                    'stale', count(*) FILTER (WHERE email_changed)
+                )::text
+            FROM (
+                SELECT n.id, n.email, o.email IS DISTINCT FROM n.email AS email_changed,
+                       (row_number() OVER () - 1) / 100 AS chunk
+                FROM new_rows n
+                JOIN old_rows o ON o.id = n.id
+            ) c
+            GROUP BY chunk
+        LOOP
+            PERFORM send_customer_change(payload);
+        END LOOP;
+    ELSE
+        FOR payload IN
+            SELECT json_build_object('op', TG_OP, 'ids', json_agg(id), 'emails', '[]'::json, 'stale', count(*))::text
+            FROM (SELECT id, (row_number() OVER () - 1) / 100 AS chunk FROM old_rows) c
+            GROUP BY chunk
+        LOOP
+            PERFORM send_customer_change(payload);
+        END LOOP;
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Transition tables can only be declared for triggers with a single event
+CREATE TRIGGER customer_inserted
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_updated
+    AFTER UPDATE ON customer
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_deleted
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_truncated
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
@@ -0,0 +1,9 @@
+-- Global email lookup of the sharded dao (customer.dao=sharded): which shard holds the customer with an email.
+-- Split across the shard databases by hash of the email, unused when all customers live in one database.
+CREATE TABLE customer_email_shard (
+     email TEXT PRIMARY KEY,
+     shard INT NOT NULL,
+     claimed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+     -- New with every claim and take over, a release only removes the claim it made or looked up
+     token UUID NOT NULL DEFAULT gen_random_uuid()
+);
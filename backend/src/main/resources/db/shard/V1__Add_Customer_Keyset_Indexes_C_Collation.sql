@@ -0,0 +1,3 @@
+-- Shards page by name and email in C collation, so the merged pages agree with each other on every database.
+CREATE INDEX customer_name_c_id_idx ON customer (name COLLATE "C", id);
+CREATE INDEX customer_email_c_id_idx ON customer (email COLLATE "C", id);
@@ -55,6 +55,15 @@ public abstract class AbstractTestcontainers {
                 "spring.datasource.password",
                 postgreSQLContainer::getPassword
         );
+        // Same database for the reactive profile
+        registry.add(
+                "spring.r2dbc.url",
+                () -> "r2dbc:postgresql://%s:%d/%s".formatted(
+                        postgreSQLContainer.getHost(),
+                        postgreSQLContainer.getFirstMappedPort(),
+                        postgreSQLContainer.getDatabaseName()
+                )
+        );
     }
 
 
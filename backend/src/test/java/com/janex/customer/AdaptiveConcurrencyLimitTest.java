@@ -0,0 +1,115 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long HEALTHY_RTT = TimeUnit.MILLISECONDS.toNanos(5);
+
+
+    @Test
+    void rejectsPastTheLimit() {
+        // Given
+        AdaptiveConcurrencyLimit adaptiveConcurrencyLimit = new AdaptiveConcurrencyLimit(2, 1, 10); // Under test
+
+        // When
+        boolean first = adaptiveConcurrencyLimit.tryAcquire();
+        boolean second = adaptiveConcurrencyLimit.tryAcquire();
+        boolean third = adaptiveConcurrencyLimit.tryAcquire();
+
+        //Then
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isFalse();
+        assertThat(adaptiveConcurrencyLimit.inFlight()).isEqualTo(2);
+    }
+
+
+    @Test
+    void growsWhileSaturatedAndLatencyStaysFlat() {
+        // Given
+        AdaptiveConcurrencyLimit adaptiveConcurrencyLimit = new AdaptiveConcurrencyLimit(10, 2, 100); // Under test
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            runSaturated(adaptiveConcurrencyLimit, HEALTHY_RTT);
+        }
+
+        //Then
+        assertThat(adaptiveConcurrencyLimit.limit()).isEqualTo(100);
+    }
+
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        // Given
+        AdaptiveConcurrencyLimit adaptiveConcurrencyLimit = new AdaptiveConcurrencyLimit(10, 2, 100); // Under test
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            adaptiveConcurrencyLimit.tryAcquire();
+            adaptiveConcurrencyLimit.release(HEALTHY_RTT, false);
+        }
+
+        //Then
+        assertThat(adaptiveConcurrencyLimit.limit()).isEqualTo(10);
+    }
+
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        // Given
+        AdaptiveConcurrencyLimit adaptiveConcurrencyLimit = new AdaptiveConcurrencyLimit(50, 2, 100); // Under test
+        for (int i = 0; i < 100; i++) {
+            runSaturated(adaptiveConcurrencyLimit, HEALTHY_RTT);
+        }
+        int healthyLimit = adaptiveConcurrencyLimit.limit();
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            runSaturated(adaptiveConcurrencyLimit, 10 * HEALTHY_RTT);
+        }
+
+        //Then
+        assertThat(adaptiveConcurrencyLimit.limit()).isLessThan(healthyLimit / 2).isGreaterThanOrEqualTo(2);
+    }
+
+
+    @Test
+    void backsOffOnDroppedRequests() {
+        // Given
+        AdaptiveConcurrencyLimit adaptiveConcurrencyLimit = new AdaptiveConcurrencyLimit(20, 2, 100); // Under test
+
+        // When
+        adaptiveConcurrencyLimit.tryAcquire();
+        adaptiveConcurrencyLimit.release(HEALTHY_RTT, true);
+
+        //Then
+        assertThat(adaptiveConcurrencyLimit.limit()).isEqualTo(18);
+        assertThat(adaptiveConcurrencyLimit.inFlight()).isZero();
+    }
+
+
+    @Test
+    void rejectsInconsistentLimits() {
+        assertThatThrownBy(() -> new AdaptiveConcurrencyLimit(1, 2, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+
+    // Fills every permit, then completes them all with the given round trip time
+    private static void runSaturated(AdaptiveConcurrencyLimit limit, long rttNanos) {
+        int acquired = 0;
+        while (limit.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limit.release(rttNanos, false);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class BloomFilterTest {
+
+    @Test
+    void hasNoFalseNegatives() {
+        // Given
+        BloomFilter bloomFilter = BloomFilter.create(10_000, 0.01);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put("customer" + i + "@gmail.com");
+        }
+
+        //Then
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(bloomFilter.mightContain("customer" + i + "@gmail.com")).isTrue();
+        }
+        // A new value whose bits were all set already is not counted
+        assertThat(bloomFilter.insertions()).isBetween(9_800L, 10_000L);
+    }
+
+
+    @Test
+    void falsePositiveRateStaysNearConfiguredProbability() {
+        // Given
+        BloomFilter bloomFilter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put("customer" + i + "@gmail.com");
+        }
+
+        // When
+        int falsePositives = 0;
+        int checks = 100_000;
+        for (int i = 0; i < checks; i++) {
+            if (bloomFilter.mightContain(UUID.randomUUID() + "@gmail.com")) {
+                falsePositives++;
+            }
+        }
+
+        //Then
+        // 1% expected, the bound leaves room for randomness
+        assertThat((double) falsePositives / checks).isLessThan(0.02);
+        assertThat(bloomFilter.expectedFalsePositiveProbability()).isCloseTo(0.01, offset(0.002));
+    }
+
+
+    @Test
+    void emptyFilterContainsNothing() {
+        // Given
+        BloomFilter bloomFilter = BloomFilter.create(100, 0.01);
+
+        // When
+        boolean actual = bloomFilter.mightContain("alex@gmail.com");
+
+        //Then
+        assertThat(actual).isFalse();
+    }
+}
@@ -0,0 +1,175 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    private CachingCustomerDao cachingCustomerDao; // Under test
+    private Cache<Long, Customer> cache;
+
+    @Mock
+    private CustomerDao delegate;
+
+
+    @BeforeEach
+    void setUp() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(100)
+                .recordStats()
+                .build();
+        cachingCustomerDao = new CachingCustomerDao(delegate, cache);
+    }
+
+
+    @Test
+    void selectCustomerByIdLoadsOnlyOnce() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+
+        // When
+        cachingCustomerDao.selectCustomerById(1L);
+        Optional<Customer> actual = cachingCustomerDao.selectCustomerById(1L);
+
+        //Then
+        assertThat(actual).hasValue(customer);
+        verify(delegate, times(1)).selectCustomerById(1L);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+
+    @Test
+    void selectCustomersByIdsLoadsOnlyUncachedIds() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 19);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomersByIds(any())).thenReturn(List.of(jamila));
+        cachingCustomerDao.selectCustomerById(1L);
+
+        // When
+        List<Customer> actual = cachingCustomerDao.selectCustomersByIds(List.of(1L, 2L, 3L));
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(alex, jamila);
+        verify(delegate).selectCustomersByIds(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(2L, 3L))));
+    }
+
+
+    @Test
+    void selectCustomersByIdsDoesNotCacheWhatAConcurrentWriteInvalidated() {
+        // Given
+        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 19);
+        Customer renamed = new Customer(2L, "Jamila A", "jamila@gmail.com", 19);
+        when(delegate.selectCustomersByIds(any())).thenAnswer(invocation -> {
+            // The update commits and invalidates while the batch is loaded
+            cachingCustomerDao.updateCustomer(renamed);
+            return List.of(jamila);
+        });
+        when(delegate.selectCustomerById(2L)).thenReturn(Optional.of(renamed));
+
+        // When
+        cachingCustomerDao.selectCustomersByIds(List.of(2L));
+        Optional<Customer> actual = cachingCustomerDao.selectCustomerById(2L);
+
+        //Then
+        assertThat(actual).hasValue(renamed);
+    }
+
+
+    @Test
+    void missingCustomerIsNotCached() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.empty());
+
+        // When
+        cachingCustomerDao.selectCustomerById(1L);
+        Optional<Customer> actual = cachingCustomerDao.selectCustomerById(1L);
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(delegate, times(2)).selectCustomerById(1L);
+    }
+
+
+    @Test
+    void updateCustomerInvalidatesEntry() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer updated = new Customer(1L, "Alexandro", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer)).thenReturn(Optional.of(updated));
+        when(delegate.updateCustomer(any())).thenReturn(Optional.of(updated));
+
+        cachingCustomerDao.selectCustomerById(1L);
+
+        // When
+        Customer update = new Customer();
+        update.setId(1L);
+        update.setName("Alexandro");
+        cachingCustomerDao.updateCustomer(update);
+
+        //Then
+        assertThat(cachingCustomerDao.selectCustomerById(1L)).hasValue(updated);
+    }
+
+
+    @Test
+    void deleteCustomerByIdInvalidatesEntry() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer)).thenReturn(Optional.empty());
+        when(delegate.deleteCustomerById(1L)).thenReturn(true);
+
+        cachingCustomerDao.selectCustomerById(1L);
+
+        // When
+        cachingCustomerDao.deleteCustomerById(1L);
+
+        //Then
+        assertThat(cachingCustomerDao.selectCustomerById(1L)).isEmpty();
+    }
+
+
+    @Test
+    void deleteCustomersByIdsInvalidatesEntries() {
+        // Given
+        cache.put(1L, new Customer(1L, "Alex", "alex@gmail.com", 21));
+        cache.put(2L, new Customer(2L, "Jamila", "jamila@gmail.com", 19));
+        when(delegate.deleteCustomersByIds(List.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+
+        // When
+        cachingCustomerDao.deleteCustomersByIds(List.of(1L, 2L));
+
+        //Then
+        assertThat(cache.asMap()).isEmpty();
+    }
+
+
+    @Test
+    void insertCustomerInvalidatesEntry() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        cache.put(1L, new Customer(1L, "Stale", "stale@gmail.com", 99));
+        when(delegate.insertCustomer(customer)).thenReturn(Optional.of(customer));
+
+        // When
+        cachingCustomerDao.insertCustomer(customer);
+
+        //Then
+        assertThat(cache.getIfPresent(1L)).isNull();
+    }
+}
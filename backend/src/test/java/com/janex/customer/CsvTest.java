@@ -0,0 +1,46 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvTest {
+
+    @Test
+    void canEscapeValues() {
+        assertThat(Csv.escape("Alex")).isEqualTo("Alex");
+        assertThat(Csv.escape("Smith, Alex")).isEqualTo("\"Smith, Alex\"");
+        assertThat(Csv.escape("Alex \"The Great\"")).isEqualTo("\"Alex \"\"The Great\"\"\"");
+    }
+
+
+    @Test
+    void canReadRecords() throws IOException {
+        // Given
+        Csv.RecordReader reader = new Csv.RecordReader(new StringReader(
+                "Alex,alex@gmail.com,21\r\n\"Smith, \"\"Jamila\"\"\nJr.\",jamila@gmail.com,19"
+        ));
+
+        // When
+        // Then
+        assertThat(reader.read()).containsExactly("Alex", "alex@gmail.com", "21");
+        assertThat(reader.read()).containsExactly("Smith, \"Jamila\"\nJr.", "jamila@gmail.com", "19");
+        assertThat(reader.read()).isNull();
+    }
+
+
+    @Test
+    void willThrowWhenQuotedValueIsNotTerminated() {
+        // Given
+        Csv.RecordReader reader = new Csv.RecordReader(new StringReader("\"Alex,alex@gmail.com,21\n"));
+
+        // When
+        // Then
+        assertThatThrownBy(reader::read).isInstanceOf(IOException.class);
+    }
+}
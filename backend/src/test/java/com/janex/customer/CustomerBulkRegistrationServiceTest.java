@@ -0,0 +1,107 @@
+package com.janex.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBulkRegistrationServiceTest {
+
+    private CustomerBulkRegistrationService customerBulkRegistrationService; // Under test
+
+    @Mock
+    private CustomerService customerService;
+
+    @Captor
+    private ArgumentCaptor<List<CustomerRegistrationRequest>> chunkArgumentCaptor;
+
+
+    @BeforeEach
+    void setUp() {
+        customerBulkRegistrationService = new CustomerBulkRegistrationService(customerService, new ObjectMapper());
+
+        // Every valid customer gets created with id = 100 + position in its chunk
+        when(customerService.addCustomers(anyList())).thenAnswer(invocation -> {
+            List<CustomerRegistrationRequest> requests = invocation.getArgument(0);
+            return IntStream.range(0, requests.size())
+                    .mapToObj(i -> requests.get(i) == null
+                            ? CustomerRegistrationResult.rejected(i, HttpStatus.BAD_REQUEST, "Customer is missing!")
+                            : CustomerRegistrationResult.created(i, 100L + i))
+                    .toList();
+        });
+    }
+
+
+    @Test
+    void writesResultLineForEveryCustomerLine() throws IOException {
+        // Given
+        String ndjson = """
+                {"name":"Alex","email":"alex@gmail.com","age":25}
+
+                {"name":"Jamila","email":
+                {"name":"Pedro","email":"pedro@gmail.com","age":30}
+                """;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        customerBulkRegistrationService.registerCustomers(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)),
+                outputStream
+        );
+
+        //Then
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                """
+                {"index":0,"status":"CREATED","id":100,"message":null}
+                {"index":1,"status":"BAD_REQUEST","id":null,"message":"Malformed customer!"}
+                {"index":2,"status":"CREATED","id":102,"message":null}
+                """
+        );
+    }
+
+
+    @Test
+    void registersLargeStreamsInChunks() throws IOException {
+        // Given
+        StringBuilder ndjson = new StringBuilder();
+        int total = CustomerService.MAX_BULK_SIZE + 1;
+        for (int i = 0; i < total; i++) {
+            ndjson.append("{\"name\":\"Alex\",\"email\":\"alex").append(i).append("@gmail.com\",\"age\":25}\n");
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        customerBulkRegistrationService.registerCustomers(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)),
+                outputStream
+        );
+
+        //Then
+        verify(customerService, times(2)).addCustomers(chunkArgumentCaptor.capture());
+
+
+        assertThat(outputStream.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(total)
+                .last()
+                .isEqualTo("{\"index\":%s,\"status\":\"CREATED\",\"id\":100,\"message\":null}".formatted(total - 1));
+    }
+}
@@ -0,0 +1,112 @@
+package com.janex.customer;
+
+import com.janex.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerBulkheadInterceptorTest {
+
+    private CustomerBulkheadInterceptor customerBulkheadInterceptor; // Under test
+    private final Map<CustomerWorkload, SemaphoreBulkhead> bulkheads = new EnumMap<>(CustomerWorkload.class);
+    private final Map<CustomerWorkload, Counter> rejected = new EnumMap<>(CustomerWorkload.class);
+
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        for (CustomerWorkload workload : CustomerWorkload.values()) {
+            bulkheads.put(workload, new SemaphoreBulkhead(1, 0, Duration.ZERO));
+            rejected.put(workload, meterRegistry.counter("rejected", "workload", workload.property()));
+        }
+        customerBulkheadInterceptor = new CustomerBulkheadInterceptor(bulkheads, rejected, Duration.ofSeconds(1));
+    }
+
+
+    @Test
+    void fullScanBulkheadDoesNotBlockPointReads() throws Exception {
+        // Given
+        HandlerMethod scan = handler("scan");
+        HandlerMethod pointRead = handler("pointRead");
+        customerBulkheadInterceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), scan);
+
+        // When
+        boolean pointReadPassed = customerBulkheadInterceptor.preHandle(
+                new MockHttpServletRequest(), new MockHttpServletResponse(), pointRead
+        );
+
+        //Then
+        assertThat(pointReadPassed).isTrue();
+        assertThatThrownBy(() -> customerBulkheadInterceptor.preHandle(
+                new MockHttpServletRequest(), new MockHttpServletResponse(), scan
+        )).isInstanceOf(ServiceUnavailableException.class).hasMessageContaining("scan");
+        assertThat(rejected.get(CustomerWorkload.SCAN).count()).isEqualTo(1);
+        assertThat(rejected.get(CustomerWorkload.POINT_READ).count()).isZero();
+    }
+
+
+    @Test
+    void completedRequestLeavesItsBulkhead() throws Exception {
+        // Given
+        HandlerMethod write = handler("write");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        customerBulkheadInterceptor.preHandle(request, new MockHttpServletResponse(), write);
+
+        // When
+        customerBulkheadInterceptor.afterCompletion(request, new MockHttpServletResponse(), write, null);
+
+        //Then
+        assertThat(bulkheads.get(CustomerWorkload.WRITE).active()).isZero();
+    }
+
+
+    @Test
+    void methodsWithoutBulkheadPassFreely() throws Exception {
+        // When
+        boolean passed = customerBulkheadInterceptor.preHandle(
+                new MockHttpServletRequest(), new MockHttpServletResponse(), handler("unlimited")
+        );
+
+        //Then
+        assertThat(passed).isTrue();
+        assertThat(bulkheads.values()).allSatisfy(bulkhead -> assertThat(bulkhead.active()).isZero());
+    }
+
+
+    private static HandlerMethod handler(String method) throws NoSuchMethodException {
+        return new HandlerMethod(new Handlers(), method);
+    }
+
+
+    static class Handlers {
+
+        @Bulkhead(CustomerWorkload.SCAN)
+        public void scan() {
+        }
+
+
+        @Bulkhead(CustomerWorkload.POINT_READ)
+        public void pointRead() {
+        }
+
+
+        @Bulkhead(CustomerWorkload.WRITE)
+        public void write() {
+        }
+
+
+        public void unlimited() {
+        }
+    }
+}
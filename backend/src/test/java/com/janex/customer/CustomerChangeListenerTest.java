@@ -0,0 +1,278 @@
+package com.janex.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.janex.AbstractTestcontainers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerChangeListenerTest extends AbstractTestcontainers {
+
+    private CustomerChangeListener customerChangeListener; // Under test
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Cache<Long, Customer> cache = Caffeine.newBuilder().build();
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private Connection listening;
+
+    @Mock
+    private CustomerEmailFilter customerEmailFilter;
+
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setUp() throws SQLException {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("customerCache", cache);
+        customerChangeListener = new CustomerChangeListener(
+                new DataSourceProperties(),
+                (ObjectProvider) beanFactory.getBeanProvider(Cache.class),
+                customerEmailFilter,
+                objectMapper,
+                false
+        );
+
+        listening = DriverManager.getConnection(
+                postgreSQLContainer.getJdbcUrl(),
+                postgreSQLContainer.getUsername(),
+                postgreSQLContainer.getPassword()
+        );
+        try (Statement statement = listening.createStatement()) {
+            statement.execute("LISTEN " + CustomerChangeListener.CHANNEL);
+        }
+    }
+
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        listening.close();
+    }
+
+
+    @Test
+    void insertNotifiesNewIdsAndEmails() throws Exception {
+        // Given
+        String email = "listener-" + UUID.randomUUID() + "@example.com";
+
+        // When
+        Long id = insert(email);
+
+        //Then
+        List<CustomerChangeListener.CustomerChange> changes = receive();
+        assertThat(changes).containsExactly(
+                new CustomerChangeListener.CustomerChange("INSERT", List.of(id), List.of(email), 0)
+        );
+    }
+
+
+    @Test
+    void updateNotifiesIdsAndOnlyChangedEmails() throws Exception {
+        // Given
+        String email = "listener-" + UUID.randomUUID() + "@example.com";
+        Long id = insert(email);
+        receive();
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET age = age + 1 WHERE id = ?", id);
+        jdbcTemplate.update("UPDATE customer SET email = ? WHERE id = ?", "new-" + email, id);
+
+        //Then
+        assertThat(receive()).containsExactly(
+                new CustomerChangeListener.CustomerChange("UPDATE", List.of(id), List.of(), 0),
+                new CustomerChangeListener.CustomerChange("UPDATE", List.of(id), List.of("new-" + email), 1)
+        );
+    }
+
+
+    @Test
+    void deleteNotifiesIdsAsStale() throws Exception {
+        // Given
+        Long id = insert("listener-" + UUID.randomUUID() + "@example.com");
+        receive();
+
+        // When
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", id);
+
+        //Then
+        assertThat(receive()).containsExactly(
+                new CustomerChangeListener.CustomerChange("DELETE", List.of(id), List.of(), 1)
+        );
+    }
+
+
+    @Test
+    void notificationsAreOnlySentOnCommit() throws Exception {
+        // Given
+        Connection writing = DriverManager.getConnection(
+                postgreSQLContainer.getJdbcUrl(),
+                postgreSQLContainer.getUsername(),
+                postgreSQLContainer.getPassword()
+        );
+        writing.setAutoCommit(false);
+
+        // When
+        try (writing; Statement statement = writing.createStatement()) {
+            statement.executeUpdate("""
+                    INSERT INTO customer(id, name, email, age)
+                    VALUES (nextval('customer_id_seq'), 'Alex', 'rolled-back-%s@example.com', 21)
+                    """.formatted(UUID.randomUUID()));
+            writing.rollback();
+        }
+
+        //Then
+        assertThat(receive()).isEmpty();
+    }
+
+
+    @Test
+    void sessionsCanSwitchNotificationsOff() throws Exception {
+        // Given
+        Connection writing = DriverManager.getConnection(
+                postgreSQLContainer.getJdbcUrl(),
+                postgreSQLContainer.getUsername(),
+                postgreSQLContainer.getPassword()
+        );
+
+        // When
+        try (writing; Statement statement = writing.createStatement()) {
+            statement.execute("SET customer.notify_changes = 'false'");
+            statement.executeUpdate("""
+                    INSERT INTO customer(id, name, email, age)
+                    VALUES (nextval('customer_id_seq'), 'Alex', 'silent-%s@example.com', 21)
+                    """.formatted(UUID.randomUUID()));
+        }
+
+        //Then
+        assertThat(receive()).isEmpty();
+    }
+
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void listensOnTheShardsWhenSharded() throws Exception {
+        // Given
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:postgresql://localhost:1/not-the-shard");
+        properties.setUsername(postgreSQLContainer.getUsername());
+        properties.setPassword(postgreSQLContainer.getPassword());
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("customerCache", cache);
+        CustomerChangeListener shardListener = new CustomerChangeListener(
+                properties,
+                (ObjectProvider) beanFactory.getBeanProvider(Cache.class),
+                customerEmailFilter,
+                objectMapper,
+                true,
+                "sharded",
+                new String[]{postgreSQLContainer.getJdbcUrl()}
+        );
+        String email = "shard-" + UUID.randomUUID() + "@example.com";
+
+        // When
+        shardListener.start();
+        try {
+            // Connecting resets the filter, only then are notifications received
+            verify(customerEmailFilter, timeout(5000)).scheduleRebuild();
+            insert(email);
+
+            //Then
+            verify(customerEmailFilter, timeout(5000)).add(email);
+        } finally {
+            shardListener.stop();
+        }
+    }
+
+
+    @Test
+    void applyDropsChangedIdsAndAddsEmails() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        cache.put(1L, customer);
+        cache.put(2L, new Customer(2L, "Jamila", "jamila@gmail.com", 22));
+
+        // When
+        customerChangeListener.apply("""
+                {"op":"UPDATE","ids":[1],"emails":["alex@yahoo.com"],"stale":1}
+                """);
+
+        //Then
+        assertThat(cache.getIfPresent(1L)).isNull();
+        assertThat(cache.getIfPresent(2L)).isNotNull();
+        verify(customerEmailFilter).add("alex@yahoo.com");
+        verify(customerEmailFilter).remove(1);
+    }
+
+
+    @Test
+    void applyResetDropsEverything() {
+        // Given
+        cache.put(1L, new Customer(1L, "Alex", "alex@gmail.com", 21));
+
+        // When
+        customerChangeListener.apply("""
+                {"op":"RESET"}
+                """);
+
+        //Then
+        assertThat(cache.asMap()).isEmpty();
+        verify(customerEmailFilter).scheduleRebuild();
+    }
+
+
+    @Test
+    void applyUnreadablePayloadResets() {
+        // Given
+        cache.put(1L, new Customer(1L, "Alex", "alex@gmail.com", 21));
+
+        // When
+        customerChangeListener.apply("not json");
+
+        //Then
+        assertThat(cache.asMap()).isEmpty();
+        verify(customerEmailFilter).scheduleRebuild();
+    }
+
+
+    private Long insert(String email) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO customer(id, name, email, age)
+                VALUES (nextval('customer_id_seq'), 'Alex', ?, 21)
+                RETURNING id
+                """, Long.class, email);
+    }
+
+
+    private List<CustomerChangeListener.CustomerChange> receive() throws Exception {
+        List<CustomerChangeListener.CustomerChange> changes = new ArrayList<>();
+        PGNotification[] notifications = listening.unwrap(PGConnection.class).getNotifications(500);
+        if (notifications != null) {
+            for (PGNotification notification : notifications) {
+                changes.add(objectMapper.readValue(notification.getParameter(), CustomerChangeListener.CustomerChange.class));
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,263 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerColumnarDataAccessServiceTest {
+
+    private CustomerColumnarDataAccessService customerColumnarDataAccessService; // Under test
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Mock
+    private CustomerIdAllocator customerIdAllocator;
+
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(customerIdAllocator.nextId()).thenAnswer(invocation -> sequence.incrementAndGet());
+        lenient().when(customerIdAllocator.nextIds(anyInt())).thenAnswer(invocation -> LongStream
+                .range(0, invocation.<Integer>getArgument(0))
+                .map(i -> sequence.incrementAndGet())
+                .toArray());
+        customerColumnarDataAccessService = new CustomerColumnarDataAccessService(customerIdAllocator);
+    }
+
+
+    @Test
+    void insertAndSelectCustomerById() {
+        // Given
+        Customer inserted = customerColumnarDataAccessService.insertCustomer(
+                new Customer("Jamila Ünal", "jamila@gmail.com", 19)
+        ).orElseThrow();
+
+        // When
+        Optional<Customer> actual = customerColumnarDataAccessService.selectCustomerById(inserted.getId());
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Jamila Ünal");
+            assertThat(c.getEmail()).isEqualTo("jamila@gmail.com");
+            assertThat(c.getAge()).isEqualTo(19);
+            assertThat(c.getVersion()).isZero();
+        });
+        assertThat(customerColumnarDataAccessService.existsCustomerWithEmail("jamila@gmail.com")).isTrue();
+        assertThat(customerColumnarDataAccessService.insertCustomer(new Customer("Other", "jamila@gmail.com", 30)))
+                .isEmpty();
+    }
+
+
+    @Test
+    void updateCustomerMovesEmailIndex() {
+        // Given
+        Customer alex = customerColumnarDataAccessService.insertCustomer(
+                new Customer("Alex", "alex@gmail.com", 21)
+        ).orElseThrow();
+        customerColumnarDataAccessService.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+
+        // When
+        Optional<Customer> actual = customerColumnarDataAccessService.updateCustomer(
+                new Customer(alex.getId(), "Alex K", "alex@yahoo.com", null)
+        );
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Alex K");
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getVersion()).isEqualTo(1L);
+        });
+        assertThat(customerColumnarDataAccessService.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(customerColumnarDataAccessService.existsCustomerWithEmail("alex@yahoo.com")).isTrue();
+        assertThatThrownBy(() -> customerColumnarDataAccessService.updateCustomer(
+                new Customer(alex.getId(), null, "jamila@gmail.com", null)
+        )).isInstanceOf(DuplicateKeyException.class);
+    }
+
+
+    @Test
+    void updateCustomerWithStaleVersionUpdatesNothing() {
+        // Given
+        Customer alex = customerColumnarDataAccessService.insertCustomer(
+                new Customer("Alex", "alex@gmail.com", 21)
+        ).orElseThrow();
+        Customer update = new Customer(alex.getId(), null, null, 22);
+        update.setVersion(5L);
+
+        // When
+        Optional<Customer> actual = customerColumnarDataAccessService.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+
+    @Test
+    void selectCustomersPageFollowsCursor() {
+        // Given
+        customerColumnarDataAccessService.insertCustomers(List.of(
+                new Customer("C", "c@gmail.com", 30),
+                new Customer("A", "a@gmail.com", 40),
+                new Customer("B", "b@gmail.com", 20)
+        ));
+        customerColumnarDataAccessService.deleteCustomerById(2L);
+
+        // When
+        List<Customer> byId = customerColumnarDataAccessService.selectCustomersPage(new CustomerPageRequest(
+                CustomerSortField.ID, Sort.Direction.DESC,
+                new CustomerPageCursor(CustomerSortField.ID, Sort.Direction.DESC, "3", 3L), 10
+        ));
+        List<Customer> byAge = customerColumnarDataAccessService.selectCustomersPage(new CustomerPageRequest(
+                CustomerSortField.AGE, Sort.Direction.ASC, null, 1
+        ));
+
+        //Then
+        assertThat(byId).extracting(Customer::getId).containsExactly(1L);
+        assertThat(byAge).extracting(Customer::getName).containsExactly("B");
+    }
+
+
+    @Test
+    void pagesFollowTheSortIndexesForEveryField() {
+        // Given
+        Random random = new Random(7);
+        String[] names = {"Alex", "alex", "Émile", "Zoë", "\uE000 private", "😀 smile", "Jamila", ""};
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            ids.add(customerColumnarDataAccessService.insertCustomer(new Customer(
+                    names[random.nextInt(names.length)] + random.nextInt(20),
+                    "page-" + i + "@example.com",
+                    random.nextInt(50)
+            )).orElseThrow().getId());
+        }
+        for (int i = 0; i < 1000; i++) {
+            Long id = ids.get(random.nextInt(ids.size()));
+            if (random.nextBoolean()) {
+                customerColumnarDataAccessService.updateCustomer(new Customer(
+                        id, names[random.nextInt(names.length)], "moved-" + i + "@example.com", random.nextInt(50)
+                ));
+            } else {
+                customerColumnarDataAccessService.deleteCustomerById(id);
+            }
+        }
+        List<Customer> all = customerColumnarDataAccessService.selectAllCustomers();
+
+        for (CustomerSortField sortField : CustomerSortField.values()) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                // When
+                List<Customer> paged = new ArrayList<>();
+                CustomerPageCursor after = null;
+                List<Customer> page;
+                do {
+                    page = customerColumnarDataAccessService.selectCustomersPage(
+                            new CustomerPageRequest(sortField, direction, after, 97)
+                    );
+                    paged.addAll(page);
+                    if (!page.isEmpty()) {
+                        after = CustomerPageCursor.after(sortField, direction, page.get(page.size() - 1));
+                    }
+                } while (page.size() == 97);
+
+                //Then
+                assertThat(paged).containsExactlyElementsOf(all.stream()
+                        .sorted(direction.isAscending() ? sortField.comparator() : sortField.comparator().reversed())
+                        .toList());
+            }
+        }
+    }
+
+
+    @Test
+    void insertCustomersKeepsGivenIdsAndSkipsTakenOnes() {
+        // Given
+        customerColumnarDataAccessService.insertCustomer(new Customer(100L, "Alex", "alex@gmail.com", 21));
+
+        // When
+        List<Customer> inserted = customerColumnarDataAccessService.insertCustomers(List.of(
+                new Customer(100L, "Taken id", "taken-id@gmail.com", 30),
+                new Customer(200L, "Jamila", "jamila@gmail.com", 19),
+                new Customer(200L, "Repeated id", "repeated-id@gmail.com", 20),
+                new Customer("Pedro", "pedro@gmail.com", 40)
+        ));
+
+        //Then
+        assertThat(inserted).extracting(Customer::getName).containsExactly("Jamila", "Pedro");
+        assertThat(inserted.get(0).getId()).isEqualTo(200L);
+        assertThat(customerColumnarDataAccessService.selectCustomerById(100L))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+        assertThat(customerColumnarDataAccessService.existsCustomerWithEmail("taken-id@gmail.com")).isFalse();
+    }
+
+
+    @Test
+    void matchesMapUnderRandomInsertsUpdatesAndDeletes() {
+        // Given
+        Random random = new Random(42);
+        Map<Long, Customer> expected = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || ids.isEmpty()) {
+                Customer customer = customerColumnarDataAccessService.insertCustomer(
+                        new Customer("Name " + i, "customer-" + i + "@example.com", random.nextInt(100))
+                ).orElseThrow();
+                expected.put(customer.getId(), customer);
+                ids.add(customer.getId());
+            } else if (operation < 8) {
+                Long id = ids.get(random.nextInt(ids.size()));
+                customerColumnarDataAccessService.updateCustomer(
+                        new Customer(id, null, "updated-" + i + "@example.com", null)
+                ).ifPresent(c -> expected.put(id, c));
+            } else {
+                Long id = ids.remove(random.nextInt(ids.size()));
+                assertThat(customerColumnarDataAccessService.deleteCustomerById(id)).isTrue();
+                expected.remove(id);
+            }
+        }
+
+        //Then
+        assertThat(customerColumnarDataAccessService.selectAllCustomers())
+                .containsExactlyInAnyOrderElementsOf(expected.values());
+        for (Customer customer : expected.values()) {
+            assertThat(customerColumnarDataAccessService.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        }
+    }
+
+
+    @Test
+    void storesCustomersInFewBytesEach() {
+        // Given
+        int count = 100_000;
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            customers.add(new Customer("Customer " + i, "customer-" + i + "@example.com", 30));
+        }
+
+        // When
+        customerColumnarDataAccessService.insertCustomers(customers);
+
+        //Then
+        // Columns, indexes and ~50 bytes of UTF-8 per customer, a boxed Customer with its two Strings alone is larger
+        assertThat(customerColumnarDataAccessService.heapBytes() / count).isLessThan(160);
+    }
+}
@@ -0,0 +1,64 @@
+package com.janex.customer;
+
+import com.janex.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerConcurrencyLimitInterceptorTest {
+
+    private CustomerConcurrencyLimitInterceptor customerConcurrencyLimitInterceptor; // Under test
+    private AdaptiveConcurrencyLimit limit;
+    private Counter rejected;
+
+
+    @BeforeEach
+    void setUp() {
+        limit = new AdaptiveConcurrencyLimit(1, 1, 10);
+        rejected = new SimpleMeterRegistry().counter("rejected");
+        customerConcurrencyLimitInterceptor = new CustomerConcurrencyLimitInterceptor(limit, Duration.ofSeconds(2), rejected);
+    }
+
+
+    @Test
+    void shedsRequestsPastTheLimit() {
+        // Given
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        customerConcurrencyLimitInterceptor.preHandle(first, new MockHttpServletResponse(), new Object());
+
+        // When
+        //Then
+        assertThatThrownBy(() -> customerConcurrencyLimitInterceptor.preHandle(
+                new MockHttpServletRequest(), new MockHttpServletResponse(), new Object()
+        ))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .satisfies(e -> assertThat(((ServiceUnavailableException) e).getRetryAfter()).hasSeconds(2));
+        assertThat(rejected.count()).isEqualTo(1);
+    }
+
+
+    @Test
+    void completedRequestFreesItsPermit() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        customerConcurrencyLimitInterceptor.preHandle(request, response, new Object());
+
+        // When
+        customerConcurrencyLimitInterceptor.afterCompletion(request, response, new Object(), null);
+
+        //Then
+        assertThat(limit.inFlight()).isZero();
+        assertThat(customerConcurrencyLimitInterceptor.preHandle(
+                new MockHttpServletRequest(), new MockHttpServletResponse(), new Object()
+        )).isTrue();
+    }
+}
@@ -0,0 +1,60 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerConsistencyTest {
+
+
+    @AfterEach
+    void tearDown() {
+        CustomerConsistency.close();
+    }
+
+
+    @Test
+    void parsesAndFormatsPostgresLsns() {
+        // When
+        long lsn = CustomerConsistency.parseLsn("16/B374D848");
+
+        //Then
+        assertThat(lsn).isEqualTo(0x16B374D848L);
+        assertThat(CustomerConsistency.formatLsn(lsn)).isEqualTo("16/B374D848");
+        assertThat(CustomerConsistency.parseLsn("0/0")).isZero();
+        assertThatThrownBy(() -> CustomerConsistency.parseLsn("16B374D848")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CustomerConsistency.parseLsn("16/XYZ")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+
+    @Test
+    void writesRaiseTheTokenOfTheRequest() {
+        // Given
+        List<String> tokens = new ArrayList<>();
+        CustomerConsistency.open(0x100, tokens::add);
+
+        // When
+        CustomerConsistency.wrote(0x200);
+        CustomerConsistency.wrote(0x180); // Read before the other write committed
+
+        //Then
+        assertThat(CustomerConsistency.minLsn()).isEqualTo(0x200);
+        assertThat(tokens).containsExactly("0/200", "0/200");
+    }
+
+
+    @Test
+    void withoutARequestNothingIsTracked() {
+        // When
+        CustomerConsistency.wrote(0x200);
+
+        //Then
+        assertThat(CustomerConsistency.tracksWrites()).isFalse();
+        assertThat(CustomerConsistency.minLsn()).isZero();
+    }
+}
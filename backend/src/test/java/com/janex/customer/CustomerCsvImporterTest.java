@@ -0,0 +1,158 @@
+package com.janex.customer;
+
+import com.janex.AbstractTestcontainers;
+import com.janex.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class CustomerCsvImporterTest extends AbstractTestcontainers {
+
+    private CustomerCsvImporter customerCsvImporter; // Under test
+    private CustomerJDBCDataAccessService customerJDBCDataAccessService;
+
+
+    @BeforeEach
+    void setUp() {
+        customerCsvImporter = new CustomerCsvImporter(getJdbcTemplate(), mock(CustomerEmailFilter.class));
+        customerJDBCDataAccessService = new CustomerJDBCDataAccessService(
+                getJdbcTemplate(),
+                new CustomerRowMapper(),
+                new CustomerIdAllocator(getJdbcTemplate())
+        );
+    }
+
+
+    @Test
+    void canImportCustomers() {
+        // Given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJDBCDataAccessService.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String otherEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        String csv = """
+                name,email,age
+                "Smith, Alex",%1$s,21
+                Jamila,%2$s,19
+                Jamila Again,%2$s,19
+                Pedro,%3$s,30
+                Nobody,,30
+                Old,old@example.com,old
+                """.formatted(email, otherEmail, takenEmail);
+
+        // When
+        CustomerImportReport actual = customerCsvImporter.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
+        );
+
+        //Then
+        assertThat(actual.rowsRead()).isEqualTo(6);
+        assertThat(actual.rowsImported()).isEqualTo(2);
+        assertThat(actual.rowsRejected()).isEqualTo(4);
+        assertThat(actual.rejections()).containsExactly(
+                new CustomerImportReport.Rejection(4, "Duplicate email in file!"),
+                new CustomerImportReport.Rejection(5, "Email already taken!"),
+                new CustomerImportReport.Rejection(6, "Email is missing!"),
+                new CustomerImportReport.Rejection(7, "Age is not a number!")
+        );
+
+        assertThat(customerJDBCDataAccessService.selectExistingEmails(List.of(email, otherEmail)))
+                .containsExactlyInAnyOrder(email, otherEmail);
+        assertThat(customerJDBCDataAccessService.selectAllCustomers())
+                .filteredOn(c -> c.getEmail().equals(email))
+                .singleElement()
+                .satisfies(c -> {
+                    assertThat(c.getName()).isEqualTo("Smith, Alex");
+                    assertThat(c.getAge()).isEqualTo(21);
+                });
+    }
+
+
+    @Test
+    void importsThroughTheDaoWhenCustomersAreNotInSpringDatasource() {
+        // Given
+        CustomerListDataAccessService listDao = new CustomerListDataAccessService(new CustomerIdAllocator(getJdbcTemplate()));
+        listDao.insertCustomer(new Customer("Taken", "taken@example.com", 20));
+        CustomerCsvImporter listImporter = new CustomerCsvImporter(
+                getJdbcTemplate(), mock(CustomerEmailFilter.class), "list", listDao);
+
+        String csv = """
+                name,email,age
+                "Smith, Alex",alex@example.com,21
+                Jamila,jamila@example.com,19
+                Jamila Again,jamila@example.com,19
+                Pedro,taken@example.com,30
+                Old,old@example.com,old
+                """;
+
+        // When
+        CustomerImportReport actual = listImporter.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
+        );
+
+        //Then
+        assertThat(actual.rowsRead()).isEqualTo(5);
+        assertThat(actual.rowsImported()).isEqualTo(2);
+        assertThat(actual.rowsRejected()).isEqualTo(3);
+        assertThat(actual.rejections()).containsExactly(
+                new CustomerImportReport.Rejection(4, "Duplicate email in file!"),
+                new CustomerImportReport.Rejection(5, "Email already taken!"),
+                new CustomerImportReport.Rejection(6, "Age is not a number!")
+        );
+        assertThat(listDao.selectAllCustomers())
+                .extracting(Customer::getName)
+                .containsExactlyInAnyOrder("Taken", "Smith, Alex", "Jamila");
+    }
+
+
+    @Test
+    void recognizesHeaderAfterBlankLines() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String csv = """
+
+                Name, Email, Age
+                Alex,%s,21
+                """.formatted(email);
+
+        // When
+        CustomerImportReport actual = customerCsvImporter.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
+        );
+
+        //Then
+        assertThat(actual.rowsRead()).isEqualTo(1);
+        assertThat(actual.rowsImported()).isEqualTo(1);
+        assertThat(actual.rejections()).isEmpty();
+    }
+
+
+    @Test
+    void willThrowWhenCsvIsMalformed() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String csv = """
+                Alex,%s,21
+                "Jamila,jamila@gmail.com,19
+                """.formatted(email);
+
+        // When
+        assertThatThrownBy(() -> customerCsvImporter.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
+        )).isInstanceOf(RequestValidationException.class);
+
+        //Then
+        // Nothing gets imported when the file can not be read until the end
+        assertThat(customerJDBCDataAccessService.existsCustomerWithEmail(email)).isFalse();
+    }
+}
@@ -0,0 +1,93 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.ResolvableType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+class CustomerDaoConfigTest {
+
+    private CustomerDao customerDao; // Under test
+    private ReplicaRoutingDataSource dataSource;
+    private CustomerReplicaRouter customerReplicaRouter;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+
+    @BeforeEach
+    void setUp() {
+        // Pools only connect on first use, the daos below never ask them for a connection
+        dataSource = new ReplicaRoutingDataSource(new HikariDataSource(), List.of(new HikariDataSource()));
+        customerReplicaRouter = spy(new CustomerReplicaRouter(dataSource, Duration.ofSeconds(1), meterRegistry));
+        doReturn(200L).when(customerReplicaRouter).primaryLsn();
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 100); // Within max-lag, but it will not replay the update below
+
+        CustomerDao primary = new CustomerListDataAccessService(mock(CustomerIdAllocator.class));
+        CustomerDao replica = new CustomerListDataAccessService(mock(CustomerIdAllocator.class));
+        primary.insertCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21));
+        replica.insertCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21));
+        CustomerDao postgres = mock(CustomerDao.class, invocation -> invocation.getMethod().invoke(
+                dataSource.determineCurrentLookupKey() == null ? primary : replica, invocation.getArguments()));
+
+        CustomerDaoConfig customerDaoConfig = new CustomerDaoConfig();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("jdbc", postgres);
+        beanFactory.addBean("customerReplicaRouter", customerReplicaRouter);
+        beanFactory.addBean("customerCache",
+                customerDaoConfig.customerCache(100, Duration.ofMinutes(5), meterRegistry));
+        customerDao = customerDaoConfig.customerDao(
+                "jdbc",
+                true,
+                beanFactory,
+                beanFactory.getBeanProvider(CustomerReplicaRouter.class),
+                mock(CustomerEmailFilter.class),
+                beanFactory.getBeanProvider(ResolvableType.forClass(Cache.class)),
+                meterRegistry
+        );
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        customerReplicaRouter.close();
+        dataSource.close();
+        CustomerConsistency.close();
+    }
+
+
+    @Test
+    void lookupsByIdSeeAWriteTheLaggingReplicaHasNotReplayed() {
+        // Given
+        List<String> tokens = new ArrayList<>();
+        CustomerConsistency.open(0, tokens::add);
+        customerDao.updateCustomer(new Customer(1L, "Alexander", null, null));
+        CustomerConsistency.close();
+
+        // When
+        Optional<Customer> withoutToken = customerDao.selectCustomerById(1L);
+        CustomerConsistency.open(CustomerConsistency.parseLsn(tokens.get(0)), lsn -> { });
+        Optional<Customer> withToken = customerDao.selectCustomerById(1L);
+        CustomerConsistency.close();
+        List<Customer> fromReplica = customerDao.selectAllCustomers();
+
+        //Then
+        assertThat(tokens).containsExactly("0/C8");
+        assertThat(withoutToken).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alexander"));
+        assertThat(withToken).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alexander"));
+        assertThat(fromReplica).extracting(Customer::getName).containsExactly("Alex");
+    }
+}
@@ -0,0 +1,57 @@
+package com.janex.customer;
+
+import com.janex.exception.PreconditionFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerETagTest {
+
+    @Test
+    void customerETagIsQuotedVersion() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        customer.setVersion(3L);
+
+        // When
+        String actual = CustomerETag.of(customer);
+
+        //Then
+        assertThat(actual).isEqualTo("\"3\"");
+    }
+
+
+    @Test
+    void pageETagChangesWithVersion() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        customer.setVersion(0L);
+        String before = CustomerETag.of(new CustomerPage(List.of(customer), null));
+
+        // When
+        customer.setVersion(1L);
+        String after = CustomerETag.of(new CustomerPage(List.of(customer), null));
+
+        //Then
+        assertThat(after).isNotEqualTo(before);
+        assertThat(CustomerETag.of(new CustomerPage(List.of(customer), null))).isEqualTo(after);
+    }
+
+
+    @Test
+    void expectedVersion() {
+        assertThat(CustomerETag.expectedVersion(null)).isNull();
+        assertThat(CustomerETag.expectedVersion("*")).isNull();
+        assertThat(CustomerETag.expectedVersion("\"7\"")).isEqualTo(7L);
+    }
+
+
+    @Test
+    void weakETagNeverMatches() {
+        assertThatThrownBy(() -> CustomerETag.expectedVersion("W/\"7\""))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+}
@@ -0,0 +1,89 @@
+package com.janex.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerEmailFilterTest {
+
+    private CustomerEmailFilter customerEmailFilter; // Under test
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private CustomerDao customerDao;
+
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        customerEmailFilter = new CustomerEmailFilter(customerDao, true, 1000, 0.01, meterRegistry);
+    }
+
+
+    @Test
+    void everyEmailMightExistBeforeFirstBuild() {
+        // When
+        boolean actual = customerEmailFilter.mightExist("alex@gmail.com");
+
+        //Then
+        assertThat(actual).isTrue();
+        assertThat(customerEmailFilter.isReady()).isFalse();
+    }
+
+
+    @Test
+    void rebuildLoadsAllEmails() {
+        // Given
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(new Customer(1L, "Alex", "alex@gmail.com", 21));
+            return null;
+        }).when(customerDao).forEachCustomer(any());
+
+        // When
+        customerEmailFilter.rebuild();
+
+        //Then
+        assertThat(customerEmailFilter.mightExist("alex@gmail.com")).isTrue();
+        assertThat(customerEmailFilter.mightExist("jamila@gmail.com")).isFalse();
+        assertThat(meterRegistry.get("customer.email.filter.rebuilds").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.email.filter.emails").gauge().value()).isEqualTo(1);
+    }
+
+
+    @Test
+    void addedEmailsMightExist() {
+        // Given
+        customerEmailFilter.rebuild();
+
+        // When
+        customerEmailFilter.add("jamila@gmail.com");
+
+        //Then
+        assertThat(customerEmailFilter.mightExist("jamila@gmail.com")).isTrue();
+    }
+
+
+    @Test
+    void disabledFilterNeverRulesOutEmails() {
+        // Given
+        customerEmailFilter = new CustomerEmailFilter(customerDao, false, 1000, 0.01, meterRegistry);
+        customerEmailFilter.rebuild();
+
+        // When
+        boolean actual = customerEmailFilter.mightExist("jamila@gmail.com");
+
+        //Then
+        assertThat(actual).isTrue();
+    }
+}
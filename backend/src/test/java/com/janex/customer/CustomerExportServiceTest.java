@@ -0,0 +1,75 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerExportServiceTest {
+
+    private CustomerExportService customerExportService; // Under test
+
+    @Mock
+    private CustomerDao customerDao;
+
+
+    @BeforeEach
+    void setUp() {
+        customerExportService = new CustomerExportService(customerDao);
+
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(new Customer(1L, "Alex", "alex@gmail.com", 21));
+            consumer.accept(new Customer(2L, "Smith, \"Jamila\"", "jamila@gmail.com", 19));
+            return null;
+        }).when(customerDao).forEachCustomer(any());
+    }
+
+
+    @Test
+    void canExportCustomersAsNdjson() throws IOException {
+        // Given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        customerExportService.exportCustomers(CustomerExportFormat.NDJSON, outputStream);
+
+        //Then
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                """
+                {"id":1,"name":"Alex","email":"alex@gmail.com","age":21}
+                {"id":2,"name":"Smith, \\"Jamila\\"","email":"jamila@gmail.com","age":19}
+                """
+        );
+    }
+
+
+    @Test
+    void canExportCustomersAsCsv() throws IOException {
+        // Given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        customerExportService.exportCustomers(CustomerExportFormat.CSV, outputStream);
+
+        //Then
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                """
+                id,name,email,age
+                1,Alex,alex@gmail.com,21
+                2,"Smith, ""Jamila\"\"",jamila@gmail.com,19
+                """
+        );
+    }
+}
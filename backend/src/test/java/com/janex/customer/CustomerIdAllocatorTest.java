@@ -0,0 +1,80 @@
+package com.janex.customer;
+
+import com.janex.AbstractTestcontainers;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerIdAllocatorTest extends AbstractTestcontainers {
+
+    @Test
+    void nextIdLeasesOneBlockForManyIds() {
+        // Given
+        CustomerIdAllocator customerIdAllocator = new CustomerIdAllocator(getJdbcTemplate(), 10);
+
+        // When
+        long first = customerIdAllocator.nextId();
+        long last = first;
+        for (int i = 1; i < 10; i++) {
+            last = customerIdAllocator.nextId();
+        }
+        Long sequenceValue = getJdbcTemplate().queryForObject("SELECT last_value FROM customer_id_seq", Long.class);
+
+        //Then
+        // Single allocator and no other writers: the block is contiguous and nothing else was taken from the sequence
+        assertThat(last).isEqualTo(first + 9);
+        assertThat(sequenceValue).isEqualTo(last);
+    }
+
+
+    @Test
+    void nextIdsAreUniqueAcrossThreads() throws Exception {
+        // Given
+        CustomerIdAllocator customerIdAllocator = new CustomerIdAllocator(getJdbcTemplate(), 7);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int idsPerThread = 500;
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids.add(customerIdAllocator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //Then
+        assertThat(ids).hasSize(threads * idsPerThread);
+    }
+
+
+    @Test
+    void nextIdsReturnsRequestedCount() {
+        // Given
+        CustomerIdAllocator customerIdAllocator = new CustomerIdAllocator(getJdbcTemplate());
+
+        // When
+        long[] actual = customerIdAllocator.nextIds(250);
+
+        //Then
+        assertThat(actual).hasSize(250).doesNotHaveDuplicates();
+    }
+}
@@ -3,8 +3,10 @@ package com.janex.customer;
 import com.janex.AbstractTestcontainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,7 +26,8 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     void setUp() {
         customerJDBCDataAccessService = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                customerRowMapper
+                customerRowMapper,
+                new CustomerIdAllocator(getJdbcTemplate())
         );
     }
 
@@ -46,6 +49,111 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     }
 
 
+    @Test
+    void selectCustomersPageAfterIdCursor() {
+        // Given
+        String prefix = "page-" + UUID.randomUUID();
+        List<Long> ids = new ArrayList<>();
+        for (String suffix : List.of("a", "b", "c")) {
+            String email = prefix + "-" + suffix + "@example.com";
+            customerJDBCDataAccessService.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+            ids.add(customerJDBCDataAccessService.selectAllCustomers()
+                    .stream()
+                    .filter(c -> c.getEmail().equals(email))
+                    .map(Customer::getId)
+                    .findFirst()
+                    .orElseThrow());
+        }
+
+        CustomerPageCursor cursor = new CustomerPageCursor(
+                CustomerSortField.ID, Sort.Direction.ASC, String.valueOf(ids.get(0)), ids.get(0)
+        );
+
+        // When
+        List<Customer> actual = customerJDBCDataAccessService.selectCustomersPage(
+                new CustomerPageRequest(CustomerSortField.ID, Sort.Direction.ASC, cursor, 2)
+        );
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(ids.get(1), ids.get(2));
+    }
+
+
+    @Test
+    void selectCustomersPageAfterEmailCursorDescending() {
+        // Given
+        String prefix = "page-" + UUID.randomUUID();
+        for (String suffix : List.of("a", "b", "c")) {
+            customerJDBCDataAccessService.insertCustomer(
+                    new Customer(FAKER.name().fullName(), prefix + "-" + suffix + "@example.com", 20)
+            );
+        }
+
+        Customer last = customerJDBCDataAccessService.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(prefix + "-c@example.com"))
+                .findFirst()
+                .orElseThrow();
+
+        CustomerPageCursor cursor = CustomerPageCursor.after(CustomerSortField.EMAIL, Sort.Direction.DESC, last);
+
+        // When
+        List<Customer> actual = customerJDBCDataAccessService.selectCustomersPage(
+                new CustomerPageRequest(CustomerSortField.EMAIL, Sort.Direction.DESC, cursor, 2)
+        );
+
+        //Then
+        assertThat(actual).extracting(Customer::getEmail)
+                .containsExactly(prefix + "-b@example.com", prefix + "-a@example.com");
+    }
+
+
+    @Test
+    void selectCustomersPageWithoutCursorRespectsLimit() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            customerJDBCDataAccessService.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+
+        // When
+        List<Customer> actual = customerJDBCDataAccessService.selectCustomersPage(
+                new CustomerPageRequest(CustomerSortField.AGE, Sort.Direction.ASC, null, 2)
+        );
+
+        //Then
+        assertThat(actual).hasSize(2);
+    }
+
+
+    @Test
+    void forEachCustomer() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        customerJDBCDataAccessService.insertCustomer(customer);
+
+        // When
+        List<Customer> actual = new ArrayList<>();
+        customerJDBCDataAccessService.forEachCustomer(actual::add);
+
+        //Then
+        assertThat(actual)
+                .isSortedAccordingTo(CustomerSortField.ID.comparator())
+                .extracting(Customer::getEmail)
+                .contains(email);
+    }
+
+
     @Test
     void selectCustomerById() {
         // Given
@@ -92,6 +200,47 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     }
 
 
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        Customer inserted = customerJDBCDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+
+        // When
+        List<Customer> actual = customerJDBCDataAccessService.selectCustomersByIds(List.of(inserted.getId(), -1L));
+
+        //Then
+        assertThat(actual).containsExactly(inserted);
+    }
+
+
+    @Test
+    void selectCustomerByIdWithBatchedLookups() {
+        // Given
+        CustomerJDBCDataAccessService batching = new CustomerJDBCDataAccessService(
+                getJdbcTemplate(),
+                customerRowMapper,
+                new CustomerIdAllocator(getJdbcTemplate()),
+                true, 10, 1
+        );
+        Customer inserted = batching.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        )).orElseThrow();
+
+        // When
+        Optional<Customer> actual = batching.selectCustomerById(inserted.getId());
+
+        //Then
+        assertThat(actual).hasValue(inserted);
+        assertThat(batching.selectCustomerById(-1L)).isEmpty();
+    }
+
+
     @Test
     void insertCustomer() {
         // Given
@@ -125,6 +274,78 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     }
 
 
+    @Test
+    void insertCustomerReturnsStoredCustomer() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+
+        // When
+        Optional<Customer> actual = customerJDBCDataAccessService.insertCustomer(customer);
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getId()).isNotNull();
+            assertThat(c.getVersion()).isZero();
+            assertThat(c).usingRecursiveComparison().ignoringFields("id", "version").isEqualTo(customer);
+        });
+        assertThat(customerJDBCDataAccessService.selectCustomerById(actual.get().getId())).isPresent();
+    }
+
+
+    @Test
+    void insertCustomerWithTakenEmailReturnsEmpty() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJDBCDataAccessService.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        // When
+        Optional<Customer> actual = customerJDBCDataAccessService.insertCustomer(
+                new Customer(FAKER.name().fullName(), email, 30)
+        );
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+
+    @Test
+    void insertCustomers() {
+        // Given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJDBCDataAccessService.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+
+        Customer first = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 21);
+        Customer second = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 22);
+        Customer taken = new Customer(FAKER.name().fullName(), takenEmail, 23);
+
+        // When
+        List<Customer> actual = customerJDBCDataAccessService.insertCustomers(List.of(first, second, taken));
+
+        //Then
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .containsExactlyInAnyOrder(first, second);
+        assertThat(actual).allSatisfy(c -> assertThat(c.getId()).isNotNull());
+        assertThat(customerJDBCDataAccessService.selectCustomerById(actual.get(0).getId())).isPresent();
+    }
+
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJDBCDataAccessService.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        // When
+        var actual = customerJDBCDataAccessService.selectExistingEmails(List.of(email, unknownEmail));
+
+        //Then
+        assertThat(actual).containsExactly(email);
+    }
+
+
     @Test
     void existsCustomerWithEmail() {
         // Given
@@ -221,14 +442,48 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 .orElseThrow();
 
         // When
-        customerJDBCDataAccessService.deleteCustomerById(id);
+        boolean deleted = customerJDBCDataAccessService.deleteCustomerById(id);
 
         //Then
+        assertThat(deleted).isTrue();
         Optional<Customer> actual = customerJDBCDataAccessService.selectCustomerById(id);
         assertThat(actual).isNotPresent();
     }
 
 
+    @Test
+    void deleteCustomerByIdReturnsFalseWhenIdNotPresent() {
+        // Given
+        long id = -1;
+
+        // When
+        boolean actual = customerJDBCDataAccessService.deleteCustomerById(id);
+
+        //Then
+        assertThat(actual).isFalse();
+    }
+
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        Long first = customerJDBCDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20
+        )).orElseThrow().getId();
+        Long second = customerJDBCDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20
+        )).orElseThrow().getId();
+
+        // When
+        List<Long> actual = customerJDBCDataAccessService.deleteCustomersByIds(List.of(first, second, -1L));
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(first, second);
+        assertThat(customerJDBCDataAccessService.selectCustomerById(first)).isNotPresent();
+        assertThat(customerJDBCDataAccessService.selectCustomerById(second)).isNotPresent();
+    }
+
+
     @Test
     void updateCustomerAge() {
         // Given
@@ -439,4 +694,67 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
             assertThat(c.getAge()).isEqualTo(customer.getAge());
         });
     }
-}
\ No newline at end of file
+
+
+    @Test
+    void updateCustomerIncrementsVersion() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+
+        customerJDBCDataAccessService.insertCustomer(customer);
+
+        Customer stored = customerJDBCDataAccessService.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(stored.getId());
+        update.setAge(21);
+        update.setVersion(stored.getVersion());
+
+        Optional<Customer> actual = customerJDBCDataAccessService.updateCustomer(update);
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getVersion()).isEqualTo(stored.getVersion() + 1);
+        });
+    }
+
+
+    @Test
+    void updateCustomerWillNotUpdateWhenVersionDoesNotMatch() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+
+        customerJDBCDataAccessService.insertCustomer(customer);
+
+        Customer stored = customerJDBCDataAccessService.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(stored.getId());
+        update.setAge(21);
+        update.setVersion(stored.getVersion() + 1);
+
+        Optional<Customer> actual = customerJDBCDataAccessService.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEmpty();
+        assertThat(customerJDBCDataAccessService.selectCustomerById(stored.getId()))
+                .hasValueSatisfying(c -> {
+                    assertThat(c.getAge()).isEqualTo(20);
+                    assertThat(c.getVersion()).isEqualTo(stored.getVersion());
+                });
+    }
+}
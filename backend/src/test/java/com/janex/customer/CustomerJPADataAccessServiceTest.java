@@ -6,10 +6,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
 
@@ -18,6 +26,9 @@ class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
     @Mock
     private CustomerRepository customerRepository;
 
+    @Mock
+    private CustomerIdAllocator customerIdAllocator;
+
     // We can use annotation @ExtendWith(MockitoExtension.class) instead of this code
     // Check CustomerServiceTest
     private AutoCloseable autoCloseable;
@@ -26,7 +37,7 @@ class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        customerJPADataAccessService = new CustomerJPADataAccessService(customerRepository);
+        customerJPADataAccessService = new CustomerJPADataAccessService(customerRepository, customerIdAllocator);
     }
 
 
@@ -45,6 +56,34 @@ class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
     }
 
 
+    @Test
+    void selectCustomersPage() {
+        // Given
+        CustomerPageRequest pageRequest = new CustomerPageRequest(
+                CustomerSortField.NAME, Sort.Direction.ASC, null, 10
+        );
+
+        // When
+        customerJPADataAccessService.selectCustomersPage(pageRequest);
+
+        //Then
+        verify(customerRepository).findBy(anySpecification(), any());
+    }
+
+
+    @Test
+    void forEachCustomer() {
+        // Given
+        when(customerRepository.findBy(anySpecification(), any())).thenReturn(List.of());
+
+        // When
+        customerJPADataAccessService.forEachCustomer(customer -> {});
+
+        //Then
+        verify(customerRepository).findBy(anySpecification(), any());
+    }
+
+
     @Test
     void selectCustomerById() {
         // Given
@@ -58,20 +97,58 @@ class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
     }
 
 
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L);
+
+        // When
+        customerJPADataAccessService.selectCustomersByIds(ids);
+
+        //Then
+        verify(customerRepository).findAllById(ids);
+    }
+
+
     @Test
     void insertCustomer() {
         // Given
         Customer customer = new Customer();
-        customer.setId(1L);
         customer.setName(FAKER.name().fullName());
         customer.setEmail(FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID());
         customer.setAge(20);
 
+        when(customerIdAllocator.nextId()).thenReturn(7L);
+
         // When
         customerJPADataAccessService.insertCustomer(customer);
 
         //Then
-        verify(customerRepository).save(customer);
+        verify(customerRepository).insertIfEmailAbsent(7L, customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        ));
+
+        when(customerIdAllocator.nextIds(1)).thenReturn(new long[]{7L});
+
+        // When
+        customerJPADataAccessService.insertCustomers(customers);
+
+        //Then
+        verify(customerRepository).insertAllIfEmailAbsent(
+                new Long[]{7L},
+                new String[]{customers.get(0).getName()},
+                new String[]{customers.get(0).getEmail()},
+                new Integer[]{20}
+        );
     }
 
 
@@ -88,6 +165,19 @@ class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
     }
 
 
+    @Test
+    void selectExistingEmails() {
+        // Given
+        List<String> emails = List.of(FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID());
+
+        // When
+        customerJPADataAccessService.selectExistingEmails(emails);
+
+        //Then
+        verify(customerRepository).findExistingEmails(emails);
+    }
+
+
     @Test
     void existsCustomerWithId() {
         // Given
@@ -106,27 +196,78 @@ class CustomerJPADataAccessServiceTest extends AbstractTestcontainers {
         // Given
         Long id = 1L;
 
+        when(customerRepository.deleteCustomerById(id)).thenReturn(1);
+
+        // When
+        boolean actual = customerJPADataAccessService.deleteCustomerById(id);
+
+        //Then
+        assertThat(actual).isTrue();
+        verify(customerRepository).deleteCustomerById(id);
+    }
+
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L);
+
         // When
-        customerJPADataAccessService.deleteCustomerById(id);
+        customerJPADataAccessService.deleteCustomersByIds(ids);
 
         //Then
-        verify(customerRepository).deleteById(id);
+        verify(customerRepository).deleteCustomersByIds(ids);
     }
 
 
     @Test
     void updateCustomer() {
         // Given
-        Customer customer = new Customer();
-        customer.setId(1L);
-        customer.setName(FAKER.name().fullName());
-        customer.setEmail(FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID());
-        customer.setAge(20);
+        Customer stored = new Customer(1L, "Alex", "alex@gmail.com", 20);
+        stored.setVersion(0L);
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(stored));
+        when(customerRepository.saveAndFlush(stored)).thenReturn(stored);
+
+        Customer update = new Customer();
+        update.setId(1L);
+        update.setName(FAKER.name().fullName());
+        update.setVersion(0L);
 
         // When
-        customerJPADataAccessService.updateCustomer(customer);
+        Optional<Customer> actual = customerJPADataAccessService.updateCustomer(update);
 
         //Then
-        verify(customerRepository).save(customer);
+        verify(customerRepository).saveAndFlush(stored);
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo(update.getName());
+            assertThat(c.getEmail()).isEqualTo("alex@gmail.com");
+            assertThat(c.getAge()).isEqualTo(20);
+        });
+    }
+
+
+    @Test
+    void updateCustomerWillNotSaveWhenVersionDoesNotMatch() {
+        // Given
+        Customer stored = new Customer(1L, "Alex", "alex@gmail.com", 20);
+        stored.setVersion(2L);
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(stored));
+
+        Customer update = new Customer();
+        update.setId(1L);
+        update.setAge(30);
+        update.setVersion(1L);
+
+        // When
+        Optional<Customer> actual = customerJPADataAccessService.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(customerRepository, never()).saveAndFlush(any());
+    }
+
+
+    private static Specification<Customer> anySpecification() {
+        return any();
     }
-}
\ No newline at end of file
+}
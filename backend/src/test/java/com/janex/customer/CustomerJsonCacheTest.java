@@ -0,0 +1,61 @@
+package com.janex.customer;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerJsonCacheTest {
+
+    private final CustomerJsonCache customerJsonCache = new CustomerJsonCache(Caffeine.newBuilder().build()); // Under test
+
+
+    @Test
+    void servesTheSameBytesWhileTheVersionStays() {
+        // Given
+        Customer customer = customer(1L, "Alex", 3L);
+        byte[] first = customerJsonCache.json(customer);
+
+        // When
+        byte[] second = customerJsonCache.json(customer(1L, "Alex", 3L));
+
+        //Then
+        assertThat(second).isSameAs(first);
+    }
+
+
+    @Test
+    void encodesAgainOnceTheCustomerChanged() {
+        // Given
+        byte[] old = customerJsonCache.json(customer(1L, "Alex", 3L));
+
+        // When
+        byte[] updated = customerJsonCache.json(customer(1L, "Alex K", 4L));
+        byte[] recreated = customerJsonCache.json(customer(1L, "Someone else", 4L)); // Deleted and inserted again
+
+        //Then
+        assertThat(updated).isNotSameAs(old).isEqualTo(CustomerJsonWriter.toJson(customer(1L, "Alex K", 4L)));
+        assertThat(recreated).isEqualTo(CustomerJsonWriter.toJson(customer(1L, "Someone else", 4L)));
+    }
+
+
+    @Test
+    void doesNotKeepCustomersWithoutVersion() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+
+        // When
+        byte[] first = customerJsonCache.json(customer);
+        byte[] second = customerJsonCache.json(customer);
+
+        //Then
+        assertThat(second).isNotSameAs(first).isEqualTo(first);
+    }
+
+
+    private static Customer customer(Long id, String name, Long version) {
+        Customer customer = new Customer(id, name, "alex@gmail.com", 21);
+        customer.setVersion(version);
+        return customer;
+    }
+}
@@ -0,0 +1,73 @@
+package com.janex.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerJsonWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+    @Test
+    void writesCustomersLikeJackson() throws IOException {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "Alex", "alex@gmail.com", 21),
+                new Customer(2L, "Smith, \"Jamila\" \\ Ünal", "jamila@gmail.com", 19),
+                new Customer(3L, "Tab\tNew\nline\r\b\f\u0000\u001f\u007f", "ctrl@example.com", 0),
+                new Customer(4L, "日本語 😀 é", "ünicode@example.com", 120),
+                new Customer(Long.MAX_VALUE, null, null, null),
+                new Customer(-42L, "", "", -1)
+        );
+
+        for (Customer customer : customers) {
+            customer.setVersion(7L);
+
+            // When
+            byte[] actual = CustomerJsonWriter.toJson(customer);
+
+            //Then
+            // Bytes, as the http converter writes them: Jackson's String output leaves 😀 unescaped, its UTF-8 output doesn't
+            assertThat(new String(actual, StandardCharsets.UTF_8))
+                    .isEqualTo(new String(objectMapper.writeValueAsBytes(customer), StandardCharsets.UTF_8));
+            assertThat(objectMapper.readValue(actual, Customer.class)).isEqualTo(customer);
+        }
+    }
+
+
+    @Test
+    void writesPagesLikeJacksonThroughTheStream() throws IOException {
+        // Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // Several times the buffer, also one customer larger than the whole buffer
+            String name = i == 250 ? "x".repeat(20_000) : "Customer ✓ " + i;
+            customers.add(new Customer((long) i, name, "customer-" + i + "@example.com", i % 100));
+        }
+        CustomerPage page = new CustomerPage(customers, "TkFNRXxBU0N8MTA0fFMz");
+        CustomerPage lastPage = new CustomerPage(List.of(), null);
+
+        // When
+        ByteArrayOutputStream pageOut = new ByteArrayOutputStream();
+        CustomerJsonWriter pageWriter = new CustomerJsonWriter(pageOut);
+        pageWriter.writePage(page, CustomerJsonWriter::toJson);
+        pageWriter.flush();
+
+        ByteArrayOutputStream lastPageOut = new ByteArrayOutputStream();
+        CustomerJsonWriter lastPageWriter = new CustomerJsonWriter(lastPageOut);
+        lastPageWriter.writePage(lastPage, CustomerJsonWriter::toJson);
+        lastPageWriter.flush();
+
+        //Then
+        assertThat(pageOut.toByteArray()).isEqualTo(objectMapper.writeValueAsBytes(page));
+        assertThat(lastPageOut.toByteArray()).isEqualTo(objectMapper.writeValueAsBytes(lastPage));
+    }
+}
@@ -0,0 +1,411 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService customerListDataAccessService; // Under test
+    private final AtomicLong sequence = new AtomicLong(100);
+
+    @Mock
+    private CustomerIdAllocator customerIdAllocator;
+
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(customerIdAllocator.nextId()).thenAnswer(invocation -> sequence.incrementAndGet());
+        lenient().when(customerIdAllocator.nextIds(anyInt())).thenAnswer(invocation -> LongStream
+                .range(0, invocation.<Integer>getArgument(0))
+                .map(i -> sequence.incrementAndGet())
+                .toArray());
+        customerListDataAccessService = new CustomerListDataAccessService(customerIdAllocator);
+        customerListDataAccessService.insertCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21));
+        customerListDataAccessService.insertCustomer(new Customer(2L, "jamila", "jamila@gmail.com", 19));
+    }
+
+
+    @Test
+    void insertCustomerRejectsTakenEmail() {
+        // When
+        Optional<Customer> actual = customerListDataAccessService.insertCustomer(
+                new Customer("Alex", "alex@gmail.com", 30)
+        );
+
+        //Then
+        assertThat(actual).isEmpty();
+        assertThat(customerListDataAccessService.selectAllCustomers()).hasSize(2);
+    }
+
+
+    @Test
+    void insertCustomersSkipsRepeatedEmails() {
+        // When
+        List<Customer> actual = customerListDataAccessService.insertCustomers(List.of(
+                new Customer("Ana", "ana@gmail.com", 30),
+                new Customer("Ana Again", "ana@gmail.com", 31),
+                new Customer("Alex", "alex@gmail.com", 32)
+        ));
+
+        //Then
+        assertThat(actual).extracting(Customer::getName).containsExactly("Ana");
+        assertThat(customerListDataAccessService.existsCustomerWithEmail("ana@gmail.com")).isTrue();
+    }
+
+
+    @Test
+    void insertCustomersKeepsGivenIds() {
+        // When
+        List<Customer> actual = customerListDataAccessService.insertCustomers(List.of(
+                new Customer(50L, "Ana", "ana@gmail.com", 30),
+                new Customer("Bea", "bea@gmail.com", 31)
+        ));
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(50L, 101L);
+        assertThat(customerListDataAccessService.selectCustomerById(50L))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Ana"));
+    }
+
+
+    @Test
+    void updateCustomerReplacesInsteadOfAppending() {
+        // When
+        Optional<Customer> actual = customerListDataAccessService.updateCustomer(
+                new Customer(1L, null, "alex@yahoo.com", null)
+        );
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getEmail()).isEqualTo("alex@yahoo.com");
+            assertThat(c.getVersion()).isEqualTo(1L);
+        });
+        assertThat(customerListDataAccessService.selectAllCustomers()).hasSize(2);
+        assertThat(customerListDataAccessService.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(customerListDataAccessService.existsCustomerWithEmail("alex@yahoo.com")).isTrue();
+    }
+
+
+    @Test
+    void selectCustomersByIdsSkipsMissingIds() {
+        // When
+        List<Customer> actual = customerListDataAccessService.selectCustomersByIds(List.of(2L, 99L, 1L, 2L));
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+
+    @Test
+    void updateCustomerToTakenEmailThrows() {
+        // When
+        //Then
+        assertThatThrownBy(() -> customerListDataAccessService.updateCustomer(
+                new Customer(1L, null, "jamila@gmail.com", null)
+        )).isInstanceOf(DuplicateKeyException.class);
+        assertThat(customerListDataAccessService.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+    }
+
+
+    @Test
+    void deleteCustomerByIdFreesEmail() {
+        // When
+        boolean actual = customerListDataAccessService.deleteCustomerById(1L);
+
+        //Then
+        assertThat(actual).isTrue();
+        assertThat(customerListDataAccessService.existsCustomerWithId(1L)).isFalse();
+        assertThat(customerListDataAccessService.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(customerListDataAccessService.deleteCustomerById(1L)).isFalse();
+    }
+
+
+    @Test
+    void selectCustomersPageByIdDescending() {
+        // Given
+        customerListDataAccessService.insertCustomer(new Customer(3L, "Ana", "ana@gmail.com", 30));
+
+        // When
+        List<Customer> actual = customerListDataAccessService.selectCustomersPage(new CustomerPageRequest(
+                CustomerSortField.ID, Sort.Direction.DESC, new CustomerPageCursor(CustomerSortField.ID, Sort.Direction.DESC, "3", 3L), 10
+        ));
+
+        //Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L, 1L);
+    }
+
+
+    @Test
+    void pagesBySortFieldMatchTheFullSortAfterUpdatesAndDeletes() {
+        // Given
+        for (long id = 3; id <= 40; id++) {
+            customerListDataAccessService.insertCustomer(new Customer(id, "name" + id % 7, "c" + (50 - id) + "@gmail.com", (int) (id % 5)));
+        }
+        customerListDataAccessService.updateCustomer(new Customer(5L, "aaa", null, 99));
+        customerListDataAccessService.updateCustomer(new Customer(6L, null, null, 1));
+        customerListDataAccessService.deleteCustomerById(7L);
+
+        for (CustomerSortField sortField : List.of(CustomerSortField.NAME, CustomerSortField.EMAIL, CustomerSortField.AGE)) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                Comparator<Customer> comparator = direction.isAscending()
+                        ? sortField.comparator()
+                        : sortField.comparator().reversed();
+                List<Customer> expected = customerListDataAccessService.selectAllCustomers().stream()
+                        .sorted(comparator)
+                        .toList();
+
+                // When
+                List<Customer> actual = new ArrayList<>();
+                CustomerPageCursor after = null;
+                List<Customer> page;
+                do {
+                    page = customerListDataAccessService.selectCustomersPage(new CustomerPageRequest(sortField, direction, after, 4));
+                    actual.addAll(page);
+                    after = page.isEmpty() ? null : CustomerPageCursor.after(sortField, direction, page.get(page.size() - 1));
+                } while (page.size() == 4);
+
+                //Then
+                assertThat(actual).extracting(Customer::getId).containsExactlyElementsOf(
+                        expected.stream().map(Customer::getId).toList()
+                );
+            }
+        }
+    }
+
+
+    @Test
+    void concurrentInsertsOfOneEmailHaveOneWinner() throws Exception {
+        // Given
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String email = "customer-" + (i % 100) + "@example.com";
+            tasks.add(() -> customerListDataAccessService.insertCustomer(new Customer("Ana", email, 30)).isPresent());
+        }
+
+        // When
+        long inserted = 0;
+        try {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                inserted += future.get() ? 1 : 0;
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        //Then
+        assertThat(inserted).isEqualTo(100);
+        assertThat(customerListDataAccessService.selectAllCustomers()).hasSize(102);
+    }
+
+
+    @Test
+    void concurrentVersionedUpdatesHaveOneWinnerPerVersion() throws Exception {
+        // Given
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int age = 40 + i;
+            Customer update = new Customer(1L, null, null, age);
+            update.setVersion(0L);
+            tasks.add(() -> customerListDataAccessService.updateCustomer(update).isPresent());
+        }
+
+        // When
+        long updated = 0;
+        try {
+            for (Future<Boolean> future : executor.invokeAll(tasks)) {
+                updated += future.get() ? 1 : 0;
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        //Then
+        assertThat(updated).isEqualTo(1);
+        assertThat(customerListDataAccessService.selectCustomerById(1L))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+    }
+
+
+    @Test
+    void recoversChangesFromLogAfterCrash(@TempDir Path dataDirectory) {
+        // Given
+        CustomerListDataAccessService persisted = persistedIn(dataDirectory);
+        Customer ana = persisted.insertCustomer(new Customer("Ana", "ana@gmail.com", 30)).orElseThrow();
+        Customer bob = persisted.insertCustomer(new Customer("Bob", "bob@gmail.com", 40)).orElseThrow();
+        persisted.updateCustomer(new Customer(ana.getId(), null, "ana@yahoo.com", null));
+        persisted.deleteCustomerById(bob.getId());
+
+        // When
+        // No close(), as if the process had died
+        CustomerListDataAccessService recovered = persistedIn(dataDirectory);
+
+        //Then
+        assertThat(recovered.selectAllCustomers()).containsExactlyElementsOf(persisted.selectAllCustomers());
+        assertThat(recovered.selectCustomerById(ana.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+        assertThat(recovered.existsCustomerWithEmail("ana@gmail.com")).isFalse();
+        assertThat(recovered.existsCustomerWithEmail("bob@gmail.com")).isFalse();
+    }
+
+
+    @Test
+    void recoversSnapshotAndLogWrittenAfterIt(@TempDir Path dataDirectory) throws IOException {
+        // Given
+        CustomerListDataAccessService persisted = persistedIn(dataDirectory);
+        persisted.insertCustomers(List.of(
+                new Customer("Ana", "ana@gmail.com", 30),
+                new Customer("Bob", "bob@gmail.com", 40)
+        ));
+        persisted.snapshot();
+        Customer carl = persisted.insertCustomer(new Customer("Carl", "carl@gmail.com", 50)).orElseThrow();
+        persisted.updateCustomer(new Customer(carl.getId(), "Carl K", null, null));
+
+        // When
+        CustomerListDataAccessService recovered = persistedIn(dataDirectory);
+
+        //Then
+        assertThat(recovered.selectAllCustomers()).containsExactlyElementsOf(persisted.selectAllCustomers());
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .contains("customers.snapshot")
+                    .noneMatch(name -> name.equals("customers-00000000000000000000.wal"));
+        }
+    }
+
+
+    @Test
+    void persistedStoreAllocatesIdsAboveEveryIdItHandedOut(@TempDir Path dataDirectory) {
+        // Given
+        CustomerListDataAccessService persisted = persistedIn(dataDirectory);
+        persisted.insertCustomer(new Customer("Ana", "ana@gmail.com", 30));
+        Customer bob = persisted.insertCustomer(new Customer("Bob", "bob@gmail.com", 40)).orElseThrow();
+        persisted.deleteCustomerById(bob.getId());
+        persisted.snapshot();
+        Customer carl = persisted.insertCustomer(new Customer(10L, "Carl", "carl@gmail.com", 50)).orElseThrow();
+        persisted.deleteCustomerById(carl.getId());
+
+        // When
+        CustomerListDataAccessService recovered = persistedIn(dataDirectory);
+        Customer dan = recovered.insertCustomer(new Customer("Dan", "dan@gmail.com", 60)).orElseThrow();
+        List<Customer> batch = recovered.insertCustomers(List.of(
+                new Customer("Eve", "eve@gmail.com", 70),
+                new Customer("Finn", "finn@gmail.com", 80)
+        ));
+
+        //Then
+        assertThat(bob.getId()).isEqualTo(2L);
+        assertThat(dan.getId()).isEqualTo(11L);
+        assertThat(batch).extracting(Customer::getId).containsExactly(12L, 13L);
+        verifyNoInteractions(customerIdAllocator);
+    }
+
+
+    @Test
+    void snapshotsTakenDuringWritesLoseNothing(@TempDir Path dataDirectory) throws Exception {
+        // Given
+        CustomerListDataAccessService persisted =
+                new CustomerListDataAccessService(customerIdAllocator, dataDirectory, Duration.ZERO, false);
+        int writers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            tasks.add(() -> {
+                for (int i = 0; i < 500; i++) {
+                    Customer customer = persisted.insertCustomer(
+                            new Customer("Ana", "customer-%d-%d@example.com".formatted(writer, i), 30)).orElseThrow();
+                    if (i % 3 == 0) {
+                        persisted.updateCustomer(new Customer(customer.getId(), "Ana " + i, null, null));
+                    }
+                    if (i % 5 == 0) {
+                        persisted.deleteCustomerById(customer.getId());
+                    }
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            for (int i = 0; i < 50; i++) {
+                persisted.snapshot();
+            }
+            return null;
+        });
+
+        // When
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        CustomerListDataAccessService recovered =
+                new CustomerListDataAccessService(customerIdAllocator, dataDirectory, Duration.ZERO, false);
+
+        //Then
+        assertThat(recovered.selectAllCustomers()).containsExactlyElementsOf(persisted.selectAllCustomers());
+    }
+
+
+    @Test
+    void dropsIncompleteRecordAtEndOfLog(@TempDir Path dataDirectory) throws IOException {
+        // Given
+        CustomerListDataAccessService persisted = persistedIn(dataDirectory);
+        persisted.insertCustomer(new Customer("Ana", "ana@gmail.com", 30));
+        Path segment;
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            segment = files.filter(path -> path.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        // Length of a record that never made it to disk completely
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        // When
+        CustomerListDataAccessService recovered = persistedIn(dataDirectory);
+        recovered.insertCustomer(new Customer("Bob", "bob@gmail.com", 40));
+
+        //Then
+        assertThat(persistedIn(dataDirectory).selectAllCustomers())
+                .extracting(Customer::getName)
+                .containsExactly("Ana", "Bob");
+    }
+
+
+    private CustomerListDataAccessService persistedIn(Path dataDirectory) {
+        return new CustomerListDataAccessService(customerIdAllocator, dataDirectory, Duration.ZERO, true);
+    }
+}
@@ -0,0 +1,139 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerLookupBatcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<List<Long>> queries = new CopyOnWriteArrayList<>();
+
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    void lookupWithFreeSlotRunsRightAway() {
+        // Given
+        CustomerLookupBatcher customerLookupBatcher = new CustomerLookupBatcher(loader(null), 10, 1); // Under test
+
+        // When
+        Optional<Customer> found = customerLookupBatcher.load(1L);
+        Optional<Customer> missing = customerLookupBatcher.load(-1L);
+
+        //Then
+        assertThat(found).hasValueSatisfying(c -> assertThat(c.getId()).isEqualTo(1L));
+        assertThat(missing).isEmpty();
+        assertThat(queries).containsExactly(List.of(1L), List.of(-1L));
+    }
+
+
+    @Test
+    void lookupsQueuedBehindABusySlotShareOneQuery() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        CustomerLookupBatcher customerLookupBatcher = new CustomerLookupBatcher(loader(release), 3, 1); // Under test
+        Future<Optional<Customer>> first = executor.submit(() -> customerLookupBatcher.load(1L));
+        awaitQueries(1);
+
+        // When
+        List<Future<Optional<Customer>>> queued = new ArrayList<>();
+        for (long id = 2; id <= 6; id++) {
+            long customerId = id;
+            queued.add(executor.submit(() -> customerLookupBatcher.load(customerId)));
+        }
+        Thread.sleep(100); // Let them all queue up
+        release.countDown();
+
+        //Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isPresent();
+        for (int i = 0; i < queued.size(); i++) {
+            long expectedId = i + 2;
+            assertThat(queued.get(i).get(5, TimeUnit.SECONDS))
+                    .hasValueSatisfying(c -> assertThat(c.getId()).isEqualTo(expectedId));
+        }
+        // One query for the first lookup, the five queued ones in batches of at most three
+        assertThat(queries).hasSize(3);
+        assertThat(queries.subList(1, 3)).allSatisfy(ids -> assertThat(ids).hasSizeLessThanOrEqualTo(3));
+        assertThat(queries.stream().mapToInt(List::size).sum()).isEqualTo(6);
+    }
+
+
+    @Test
+    void failedQueryFailsEveryLookupInItAndFreesTheSlot() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> calls = new CopyOnWriteArrayList<>();
+        CustomerLookupBatcher customerLookupBatcher = new CustomerLookupBatcher(ids -> {
+            calls.add(ids.size());
+            if (calls.size() <= 2) {
+                await(release);
+                throw new IllegalStateException("database down");
+            }
+            return List.of();
+        }, 10, 1); // Under test
+        Future<Optional<Customer>> first = executor.submit(() -> customerLookupBatcher.load(1L));
+        while (calls.isEmpty()) {
+            Thread.sleep(5);
+        }
+        Future<Optional<Customer>> queued = executor.submit(() -> customerLookupBatcher.load(2L));
+        Thread.sleep(100);
+
+        // When
+        release.countDown();
+
+        //Then
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(customerLookupBatcher.load(3L)).isEmpty();
+    }
+
+
+    // Finds every positive id, optionally blocking until released
+    private Function<List<Long>, List<Customer>> loader(CountDownLatch release) {
+        return ids -> {
+            queries.add(ids);
+            if (release != null) {
+                await(release);
+            }
+            return ids.stream()
+                    .filter(id -> id > 0)
+                    .map(id -> new Customer(id, "Customer " + id, "customer-" + id + "@gmail.com", 20))
+                    .toList();
+        };
+    }
+
+
+    private void awaitQueries(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queries.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
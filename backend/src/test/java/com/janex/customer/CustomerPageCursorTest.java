@@ -0,0 +1,67 @@
+package com.janex.customer;
+
+import com.janex.exception.RequestValidationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerPageCursorTest {
+
+    @Test
+    void canEncodeAndDecode() {
+        // Given
+        CustomerPageCursor cursor = new CustomerPageCursor(
+                CustomerSortField.NAME, Sort.Direction.DESC, "Alex | Jamila", 42L
+        );
+
+        // When
+        CustomerPageCursor actual = CustomerPageCursor.decode(cursor.encode());
+
+        //Then
+        assertThat(actual).isEqualTo(cursor);
+    }
+
+
+    @Test
+    void canCreateCursorAfterCustomer() {
+        // Given
+        Customer customer = new Customer(7L, "Alex", "alex@gmail.com", 25);
+
+        // When
+        CustomerPageCursor actual = CustomerPageCursor.after(CustomerSortField.AGE, Sort.Direction.ASC, customer);
+
+        //Then
+        assertThat(actual.lastValue()).isEqualTo("25");
+        assertThat(actual.lastId()).isEqualTo(7L);
+    }
+
+
+    @Test
+    void willThrowWhenCursorValueDoesNotMatchSortField() {
+        // Given
+        String token = Base64.getUrlEncoder().encodeToString(
+                "AGE|ASC|7|twenty".getBytes(StandardCharsets.UTF_8)
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> CustomerPageCursor.decode(token))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Invalid cursor!");
+    }
+
+
+    @Test
+    void willThrowWhenCursorIsNotBase64() {
+        // When
+        // Then
+        assertThatThrownBy(() -> CustomerPageCursor.decode("%%%"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Invalid cursor!");
+    }
+}
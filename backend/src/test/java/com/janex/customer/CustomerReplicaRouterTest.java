@@ -0,0 +1,210 @@
+package com.janex.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CustomerReplicaRouterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+
+    private CustomerReplicaRouter customerReplicaRouter; // Under test
+    private ReplicaRoutingDataSource dataSource;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+
+    @BeforeEach
+    void setUp() {
+        // Pools only connect on first use, nothing here does
+        dataSource = new ReplicaRoutingDataSource(new HikariDataSource(), List.of(new HikariDataSource(), new HikariDataSource()));
+        customerReplicaRouter = new CustomerReplicaRouter(dataSource, Duration.ofSeconds(1), meterRegistry);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        customerReplicaRouter.close();
+        dataSource.close();
+        CustomerConsistency.close();
+    }
+
+
+    @Test
+    void readsFromThePrimaryUntilTheReplicasHaveBeenPolled() {
+        // When
+        int replica = customerReplicaRouter.choose(0);
+
+        //Then
+        assertThat(replica).isEqualTo(-1);
+    }
+
+
+    @Test
+    void skipsReplicasThatLagMoreThanMaxLag() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordPrimary(SECOND, 200);
+        customerReplicaRouter.recordPrimary(2 * SECOND, 300);
+        customerReplicaRouter.recordReplica(0, 150); // Behind what the primary had a second ago
+        customerReplicaRouter.recordReplica(1, 250);
+
+        // When
+        List<Integer> chosen = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            chosen.add(customerReplicaRouter.choose(0));
+        }
+
+        //Then
+        assertThat(chosen).containsOnly(1);
+    }
+
+
+    @Test
+    void takesTurnsAmongReplicasThatAreCaughtUp() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 100);
+        customerReplicaRouter.recordReplica(1, 100);
+
+        // When
+        List<Integer> chosen = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            chosen.add(customerReplicaRouter.choose(0));
+        }
+
+        //Then
+        assertThat(chosen).containsExactly(0, 1, 0, 1);
+    }
+
+
+    @Test
+    void readsFromThePrimaryWhenNoReplicaReplayedTheClientsWrite() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 120);
+        customerReplicaRouter.recordReplica(1, 140);
+
+        // When
+        int afterSecondReplica = customerReplicaRouter.choose(130);
+        int afterBoth = customerReplicaRouter.choose(150);
+
+        //Then
+        assertThat(afterSecondReplica).isEqualTo(1);
+        assertThat(afterBoth).isEqualTo(-1);
+    }
+
+
+    @Test
+    void skipsReplicasThatAreNotReplaying() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, -1);
+        customerReplicaRouter.recordReplica(1, -1);
+
+        // When
+        int replica = customerReplicaRouter.choose(0);
+
+        //Then
+        assertThat(replica).isEqualTo(-1);
+    }
+
+
+    @Test
+    void readRetriesOnThePrimaryWhenTheReplicaIsDown() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 100);
+        List<Object> targets = new ArrayList<>();
+
+        // When
+        String result = customerReplicaRouter.read(() -> {
+            Object target = dataSource.determineCurrentLookupKey();
+            targets.add(target);
+            if (target != null) {
+                throw new CannotGetJdbcConnectionException("Connection refused");
+            }
+            return "primary";
+        });
+
+        //Then
+        assertThat(result).isEqualTo("primary");
+        assertThat(targets).containsExactly(0, null);
+        assertThat(customerReplicaRouter.choose(0)).isEqualTo(-1);
+        assertThat(meterRegistry.get("customer.dao.reads").tag("target", "primary").counter().count()).isEqualTo(1);
+    }
+
+
+    @Test
+    void streamIsNotRepeatedOnThePrimaryOnceRowsWereHandedOut() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 100);
+        customerReplicaRouter.recordReplica(1, 100);
+        CustomerDao replicaThenFailure = mock(CustomerDao.class);
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(new Customer(1L, "Alex", "alex@gmail.com", 21));
+            throw new CannotGetJdbcConnectionException("Connection reset");
+        }).when(replicaThenFailure).forEachCustomer(any());
+        ReplicaRoutingCustomerDao customerDao = new ReplicaRoutingCustomerDao(replicaThenFailure, customerReplicaRouter);
+        List<Customer> streamed = new ArrayList<>();
+
+        // When
+        assertThatThrownBy(() -> customerDao.forEachCustomer(streamed::add))
+                .isInstanceOf(CannotGetJdbcConnectionException.class);
+
+        //Then
+        assertThat(streamed).hasSize(1);
+        verify(replicaThenFailure, times(1)).forEachCustomer(any());
+    }
+
+
+    @Test
+    void readsFromThePrimaryWhenAskedTo() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 100);
+        customerReplicaRouter.recordReplica(1, 100);
+
+        // When
+        Object target = CustomerConsistency.onPrimary(() -> customerReplicaRouter.read(dataSource::determineCurrentLookupKey));
+
+        //Then
+        assertThat(target).isNull();
+        assertThat(CustomerConsistency.primaryOnly()).isFalse();
+    }
+
+
+    @Test
+    void readUsesTheTokenOfTheRequest() {
+        // Given
+        customerReplicaRouter.recordPrimary(0, 100);
+        customerReplicaRouter.recordReplica(0, 100);
+        customerReplicaRouter.recordReplica(1, 100);
+        CustomerConsistency.open(0, lsn -> { });
+        CustomerConsistency.wrote(200);
+
+        // When
+        Object target = customerReplicaRouter.read(dataSource::determineCurrentLookupKey);
+
+        //Then
+        assertThat(target).isNull();
+    }
+}
@@ -6,7 +6,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -15,11 +17,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 @DataJpaTest
 // Do not connect to real database, instead connect to TestContainer via AbstractTestcontainers where we configured it
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Customer ids are assigned by the application, not by Hibernate
+@Import(CustomerIdAllocator.class)
 class CustomerRepositoryTest extends AbstractTestcontainers {
 
     @Autowired
     private CustomerRepository customerRepository; // Under test
 
+    @Autowired
+    private CustomerIdAllocator customerIdAllocator;
+
 
     @BeforeEach
     void setUp() {
@@ -34,6 +41,7 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
 
         Customer customer = new Customer(
+                customerIdAllocator.nextId(),
                 FAKER.name().fullName(),
                 email,
                 20
@@ -68,6 +76,7 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
 
         Customer customer = new Customer(
+                customerIdAllocator.nextId(),
                 FAKER.name().fullName(),
                 email,
                 20
@@ -101,4 +110,79 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         //Then
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+
+    @Test
+    void insertIfEmailAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        var actual = customerRepository.insertIfEmailAbsent(customerIdAllocator.nextId(), FAKER.name().fullName(), email, 20);
+
+        //Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getId()).isNotNull();
+            assertThat(c.getEmail()).isEqualTo(email);
+        });
+    }
+
+
+    @Test
+    void insertIfEmailAbsentReturnsEmptyWhenEmailTaken() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerRepository.save(new Customer(customerIdAllocator.nextId(), FAKER.name().fullName(), email, 20));
+
+        // When
+        var actual = customerRepository.insertIfEmailAbsent(customerIdAllocator.nextId(), FAKER.name().fullName(), email, 30);
+
+        //Then
+        assertThat(actual).isEmpty();
+    }
+
+
+    @Test
+    void insertAllIfEmailAbsentSkipsTakenAndRepeatedEmails() {
+        // Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String free = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerRepository.save(new Customer(customerIdAllocator.nextId(), FAKER.name().fullName(), taken, 20));
+        long[] ids = customerIdAllocator.nextIds(3);
+
+        // When
+        var actual = customerRepository.insertAllIfEmailAbsent(
+                new Long[]{ids[0], ids[1], ids[2]},
+                new String[]{"Taken", "Free", "Repeated"},
+                new String[]{taken, free, free},
+                new Integer[]{30, 31, 32}
+        );
+
+        //Then
+        assertThat(actual).singleElement().satisfies(c -> {
+            assertThat(c.getId()).isEqualTo(ids[1]);
+            assertThat(c.getName()).isEqualTo("Free");
+            assertThat(c.getVersion()).isNotNull();
+        });
+        assertThat(customerRepository.count()).isEqualTo(2);
+    }
+
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        Customer customer = customerRepository.save(new Customer(
+                customerIdAllocator.nextId(),
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        ));
+
+        // When
+        var actual = customerRepository.deleteCustomersByIds(List.of(customer.getId(), -1L));
+
+        //Then
+        assertThat(actual).containsExactly(customer.getId());
+        assertThat(customerRepository.existsCustomerById(customer.getId())).isFalse();
+    }
+}
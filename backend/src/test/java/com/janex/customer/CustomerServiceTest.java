@@ -1,16 +1,25 @@
 package com.janex.customer;
 
 import com.janex.exception.DuplicateResourceException;
+import com.janex.exception.PreconditionFailedException;
 import com.janex.exception.RequestValidationException;
 import com.janex.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -24,6 +33,9 @@ class CustomerServiceTest {
     @Mock
     private CustomerDao customerDao;
 
+    @Captor
+    private ArgumentCaptor<List<Customer>> customersArgumentCaptor;
+
 
     @BeforeEach
     void setUp() {
@@ -41,6 +53,113 @@ class CustomerServiceTest {
     }
 
 
+    @Test
+    void getCustomersPageAsksForOneMoreRowThanPageSize() {
+        // Given
+        when(customerDao.selectCustomersPage(any())).thenReturn(List.of());
+
+        // When
+        CustomerPage actual = customerService.getCustomersPage(null, null, null, 10);
+
+        //Then
+        ArgumentCaptor<CustomerPageRequest> pageRequestArgumentCaptor = ArgumentCaptor.forClass(CustomerPageRequest.class);
+
+        verify(customerDao).selectCustomersPage(pageRequestArgumentCaptor.capture());
+
+        CustomerPageRequest capturedPageRequest = pageRequestArgumentCaptor.getValue();
+
+        assertThat(capturedPageRequest.sortField()).isEqualTo(CustomerSortField.ID);
+        assertThat(capturedPageRequest.direction()).isEqualTo(Sort.Direction.ASC);
+        assertThat(capturedPageRequest.isFirstPage()).isTrue();
+        assertThat(capturedPageRequest.limit()).isEqualTo(11);
+        assertThat(actual.customers()).isEmpty();
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+
+    @Test
+    void getCustomersPageReturnsCursorWhenThereAreMoreCustomers() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 25);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 19);
+        Customer pedro = new Customer(3L, "Pedro", "pedro@gmail.com", 30);
+
+        when(customerDao.selectCustomersPage(any())).thenReturn(List.of(alex, jamila, pedro));
+
+        // When
+        CustomerPage actual = customerService.getCustomersPage("name", "desc", null, 2);
+
+        //Then
+        assertThat(actual.customers()).containsExactly(alex, jamila);
+        assertThat(CustomerPageCursor.decode(actual.nextCursor())).isEqualTo(
+                new CustomerPageCursor(CustomerSortField.NAME, Sort.Direction.DESC, "Jamila", 2L)
+        );
+    }
+
+
+    @Test
+    void getCustomersPageContinuesFromCursor() {
+        // Given
+        CustomerPageCursor cursor = new CustomerPageCursor(CustomerSortField.AGE, Sort.Direction.DESC, "19", 2L);
+
+        when(customerDao.selectCustomersPage(any())).thenReturn(List.of());
+
+        // When
+        // Sort parameters are ignored once the client sends a cursor
+        customerService.getCustomersPage("email", "asc", cursor.encode(), null);
+
+        //Then
+        ArgumentCaptor<CustomerPageRequest> pageRequestArgumentCaptor = ArgumentCaptor.forClass(CustomerPageRequest.class);
+
+        verify(customerDao).selectCustomersPage(pageRequestArgumentCaptor.capture());
+
+        assertThat(pageRequestArgumentCaptor.getValue()).isEqualTo(
+                new CustomerPageRequest(CustomerSortField.AGE, Sort.Direction.DESC, cursor, CustomerService.DEFAULT_PAGE_SIZE + 1)
+        );
+    }
+
+
+    @Test
+    void getCustomersPageCapsPageSize() {
+        // Given
+        when(customerDao.selectCustomersPage(any())).thenReturn(List.of());
+
+        // When
+        customerService.getCustomersPage(null, null, null, 100_000);
+
+        //Then
+        ArgumentCaptor<CustomerPageRequest> pageRequestArgumentCaptor = ArgumentCaptor.forClass(CustomerPageRequest.class);
+
+        verify(customerDao).selectCustomersPage(pageRequestArgumentCaptor.capture());
+
+        assertThat(pageRequestArgumentCaptor.getValue().limit()).isEqualTo(CustomerService.MAX_PAGE_SIZE + 1);
+    }
+
+
+    @Test
+    void willThrowWhenPageSizeIsNotPositive() {
+        // When
+        assertThatThrownBy(() -> customerService.getCustomersPage(null, null, null, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Page size must be greater than zero!");
+
+        //Then
+        verify(customerDao, never()).selectCustomersPage(any());
+    }
+
+
+    @Test
+    void willThrowWhenCursorIsInvalid() {
+        // When
+        assertThatThrownBy(() -> customerService.getCustomersPage(null, null, "not-a-cursor", null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Invalid cursor!");
+
+        //Then
+        verify(customerDao, never()).selectCustomersPage(any());
+    }
+
+
     @Test
     void canGetCustomer() {
         // Given
@@ -82,14 +201,15 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
-
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 25
         );
 
+        Customer stored = new Customer(1L, "Alex", email, 25);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.of(stored));
+
         // When
-        customerService.addCustomer(request);
+        Customer actual = customerService.addCustomer(request);
 
         //Then
         // Use captor only for complex objects, for ID we do not have to use it
@@ -103,6 +223,9 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        assertThat(actual).isEqualTo(stored);
+        // No separate existence check before the insert
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
 
@@ -111,7 +234,7 @@ class CustomerServiceTest {
         // Given
         String email = "alex@gmail.com";
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.empty());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 25
@@ -121,9 +244,80 @@ class CustomerServiceTest {
         assertThatThrownBy(() -> customerService.addCustomer(request))
                 .isInstanceOf(DuplicateResourceException.class)
                         .hasMessage("Email already taken!");
+    }
+
+
+    @Test
+    void addCustomersReportsResultForEveryItem() {
+        // Given
+        List<CustomerRegistrationRequest> requests = Arrays.asList(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 25),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19),
+                new CustomerRegistrationRequest("Alex Again", "alex@gmail.com", 30),
+                new CustomerRegistrationRequest(null, "pedro@gmail.com", 30),
+                null
+        );
+
+        when(customerDao.selectExistingEmails(Set.of("alex@gmail.com", "jamila@gmail.com")))
+                .thenReturn(Set.of("jamila@gmail.com"));
+        when(customerDao.insertCustomers(any()))
+                .thenReturn(List.of(new Customer(10L, "Alex", "alex@gmail.com", 25)));
+
+        // When
+        List<CustomerRegistrationResult> actual = customerService.addCustomers(requests);
+
+        //Then
+        assertThat(actual).containsExactly(
+                CustomerRegistrationResult.created(0, 10L),
+                CustomerRegistrationResult.rejected(1, HttpStatus.CONFLICT, "Email already taken!"),
+                CustomerRegistrationResult.rejected(2, HttpStatus.CONFLICT, "Email already taken!"),
+                CustomerRegistrationResult.rejected(3, HttpStatus.BAD_REQUEST, "Name is missing!"),
+                CustomerRegistrationResult.rejected(4, HttpStatus.BAD_REQUEST, "Customer is missing!")
+        );
+
+        verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+
+        assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com");
+    }
+
+
+    @Test
+    void addCustomersReportsConflictWhenEmailIsTakenConcurrently() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 25)
+        );
+
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of());
+        when(customerDao.insertCustomers(any())).thenReturn(List.of());
+
+        // When
+        List<CustomerRegistrationResult> actual = customerService.addCustomers(requests);
 
         //Then
-        verify(customerDao, never()).insertCustomer(any());
+        assertThat(actual).containsExactly(
+                CustomerRegistrationResult.rejected(0, HttpStatus.CONFLICT, "Email already taken!")
+        );
+    }
+
+
+    @Test
+    void willThrowWhenBulkRequestIsTooLarge() {
+        // Given
+        List<CustomerRegistrationRequest> requests = Collections.nCopies(
+                CustomerService.MAX_BULK_SIZE + 1,
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 25)
+        );
+
+        // When
+        assertThatThrownBy(() -> customerService.addCustomers(requests))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Bulk request can not contain more than %s customers!".formatted(CustomerService.MAX_BULK_SIZE));
+
+        //Then
+        verify(customerDao, never()).insertCustomers(any());
     }
 
 
@@ -132,13 +326,14 @@ class CustomerServiceTest {
         // Given
         Long id = 1L;
 
-        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+        when(customerDao.deleteCustomerById(id)).thenReturn(true);
 
         // When
         customerService.deleteCustomerById(id);
 
         //Then
         verify(customerDao).deleteCustomerById(id);
+        verify(customerDao, never()).existsCustomerWithId(any());
     }
 
 
@@ -147,30 +342,79 @@ class CustomerServiceTest {
         // Given
         Long id = 1L;
 
-        when(customerDao.existsCustomerWithId(id)).thenReturn(false);
+        when(customerDao.deleteCustomerById(id)).thenReturn(false);
 
         // When
         assertThatThrownBy(() -> customerService.deleteCustomerById(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer id [%s] not found!".formatted(id));
+    }
+
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L, 2L, 3L);
+
+        when(customerDao.deleteCustomersByIds(any())).thenReturn(List.of(1L, 3L));
+
+        // When
+        List<Long> actual = customerService.deleteCustomersByIds(ids);
 
         //Then
-        verify(customerDao, never()).deleteCustomerById(id);
+        assertThat(actual).containsExactly(1L, 3L);
+        verify(customerDao).deleteCustomersByIds(Set.of(1L, 2L, 3L));
     }
 
 
     @Test
-    void canUpdateAllCustomerProperties() {
+    void getCustomersByIdsReportsMissingIds() {
         // Given
-        Long id = 1L;
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(3L, "Jamila", "jamila@gmail.com", 19);
+        when(customerDao.selectCustomersByIds(any())).thenReturn(List.of(jamila, alex));
 
-        Customer customer = new Customer();
-        customer.setId(id);
-        customer.setName("Alex");
-        customer.setEmail("alex@gmail.com");
-        customer.setAge(25);
+        // When
+        List<CustomerLookupResult> actual = customerService.getCustomersByIds(List.of(3L, 2L, 1L, 3L));
+
+        //Then
+        assertThat(actual).containsExactly(
+                CustomerLookupResult.found(jamila),
+                CustomerLookupResult.notFound(2L),
+                CustomerLookupResult.found(alex)
+        );
+        assertThat(actual.get(1).status()).isEqualTo(HttpStatus.NOT_FOUND);
+        verify(customerDao).selectCustomersByIds(Set.of(1L, 2L, 3L));
+    }
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+    @Test
+    void willThrowWhenTooManyIdsToGet() {
+        // When
+        assertThatThrownBy(() -> customerService.getCustomersByIds(Collections.nCopies(CustomerService.MAX_BULK_SIZE + 1, 1L)))
+                .isInstanceOf(RequestValidationException.class);
+
+        //Then
+        verify(customerDao, never()).selectCustomersByIds(any());
+    }
+
+
+    @Test
+    void willThrowWhenNoIdsToDelete() {
+        // When
+        assertThatThrownBy(() -> customerService.deleteCustomersByIds(List.of()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("No customer ids to delete!");
+
+        //Then
+        verify(customerDao, never()).deleteCustomersByIds(any());
+    }
+
+
+    @Test
+    void canUpdateAllCustomerProperties() {
+        // Given
+        Long id = 1L;
 
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 "Alexandro",
@@ -178,10 +422,12 @@ class CustomerServiceTest {
                 20
         );
 
-        when(customerDao.existsCustomerWithEmail(request.email())).thenReturn(false);
+        Customer updated = new Customer(id, "Alexandro", "alexandro@gmail.com", 20);
+        updated.setVersion(1L);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(updated));
 
         // When
-        customerService.updateCustomer(id, request);
+        Customer actual = customerService.updateCustomer(id, request, null);
 
         //Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
@@ -194,6 +440,10 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        assertThat(capturedCustomer.getVersion()).isNull();
+        assertThat(actual).isEqualTo(updated);
+        // A successful update does not need to read the customer first
+        verify(customerDao, never()).selectCustomerById(any());
     }
 
 
@@ -202,22 +452,18 @@ class CustomerServiceTest {
         // Given
         Long id = 1L;
 
-        Customer customer = new Customer();
-        customer.setId(id);
-        customer.setName("Alex");
-        customer.setEmail("alex@gmail.com");
-        customer.setAge(25);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 "Alexandro",
                 null,
                 null
         );
 
+        Customer updated = new Customer(id, "Alexandro", "alexandro@gmail.com", 20);
+        updated.setVersion(1L);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(updated));
+
         // When
-        customerService.updateCustomer(id, request);
+        Customer actual = customerService.updateCustomer(id, request, null);
 
         //Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
@@ -228,8 +474,12 @@ class CustomerServiceTest {
 
         assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getVersion()).isNull();
+        assertThat(actual).isEqualTo(updated);
+        // A successful update does not need to read the customer first
+        verify(customerDao, never()).selectCustomerById(any());
     }
 
 
@@ -238,24 +488,18 @@ class CustomerServiceTest {
         // Given
         Long id = 1L;
 
-        Customer customer = new Customer();
-        customer.setId(id);
-        customer.setName("Alex");
-        customer.setEmail("alex@gmail.com");
-        customer.setAge(25);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 null,
                 "alexandro@gmail.com",
                 null
         );
 
-        when(customerDao.existsCustomerWithEmail(request.email())).thenReturn(false);
+        Customer updated = new Customer(id, "Alexandro", "alexandro@gmail.com", 20);
+        updated.setVersion(1L);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(updated));
 
         // When
-        customerService.updateCustomer(id, request);
+        Customer actual = customerService.updateCustomer(id, request, null);
 
         //Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
@@ -265,9 +509,13 @@ class CustomerServiceTest {
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getName()).isNull();
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getAge()).isNull();
+        assertThat(capturedCustomer.getVersion()).isNull();
+        assertThat(actual).isEqualTo(updated);
+        // A successful update does not need to read the customer first
+        verify(customerDao, never()).selectCustomerById(any());
     }
 
 
@@ -276,22 +524,18 @@ class CustomerServiceTest {
         // Given
         Long id = 1L;
 
-        Customer customer = new Customer();
-        customer.setId(id);
-        customer.setName("Alex");
-        customer.setEmail("alex@gmail.com");
-        customer.setAge(25);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 null,
                 null,
                 20
         );
 
+        Customer updated = new Customer(id, "Alexandro", "alexandro@gmail.com", 20);
+        updated.setVersion(1L);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(updated));
+
         // When
-        customerService.updateCustomer(id, request);
+        Customer actual = customerService.updateCustomer(id, request, null);
 
         //Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
@@ -301,24 +545,48 @@ class CustomerServiceTest {
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        assertThat(capturedCustomer.getVersion()).isNull();
+        assertThat(actual).isEqualTo(updated);
+        // A successful update does not need to read the customer first
+        verify(customerDao, never()).selectCustomerById(any());
     }
 
 
     @Test
-    void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
+    void canUpdateCustomerWithExpectedVersion() {
         // Given
         Long id = 1L;
 
-        Customer customer = new Customer();
-        customer.setId(id);
-        customer.setName("Alex");
-        customer.setEmail("alex@gmail.com");
-        customer.setAge(25);
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                "Alexandro",
+                null,
+                null
+        );
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        Customer updated = new Customer(id, "Alexandro", "alex@gmail.com", 25);
+        updated.setVersion(4L);
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(updated));
+
+        // When
+        Customer actual = customerService.updateCustomer(id, request, 3L);
+
+        //Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+
+        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+
+        assertThat(customerArgumentCaptor.getValue().getVersion()).isEqualTo(3L);
+        assertThat(actual.getVersion()).isEqualTo(4L);
+    }
+
+
+    @Test
+    void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
+        // Given
+        Long id = 1L;
 
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 null,
@@ -326,12 +594,26 @@ class CustomerServiceTest {
                 null
         );
 
-        when(customerDao.existsCustomerWithEmail(request.email())).thenReturn(true);
+        when(customerDao.updateCustomer(any())).thenThrow(new DuplicateKeyException("customer_email_unique"));
 
         // When
-        assertThatThrownBy(() -> customerService.updateCustomer(id, request))
+        assertThatThrownBy(() -> customerService.updateCustomer(id, request, null))
                 .isInstanceOf(DuplicateResourceException.class)
                         .hasMessage("Email already taken!");
+    }
+
+
+    @Test
+    void willThrowWhenCustomerUpdateIsEmpty() {
+        // Given
+        Long id = 1L;
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, null, null);
+
+        // When
+        assertThatThrownBy(() -> customerService.updateCustomer(id, request, null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("Request does not contain any changes!");
 
         //Then
         verify(customerDao, never()).updateCustomer(any());
@@ -348,7 +630,9 @@ class CustomerServiceTest {
         customer.setName("Alex");
         customer.setEmail("alex@gmail.com");
         customer.setAge(25);
+        customer.setVersion(3L);
 
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
         when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
         CustomerUpdateRequest request = new CustomerUpdateRequest(
@@ -358,12 +642,46 @@ class CustomerServiceTest {
         );
 
         // When
-        assertThatThrownBy(() -> customerService.updateCustomer(id, request))
+        assertThatThrownBy(() -> customerService.updateCustomer(id, request, 3L))
                 .isInstanceOf(RequestValidationException.class)
                 .hasMessage("Request does not contain any changes!");
+    }
 
-        //Then
-        verify(customerDao, never()).updateCustomer(any());
+
+    @Test
+    void willThrowWhenCustomerVersionDoesNotMatch() {
+        // Given
+        Long id = 1L;
+
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", 25);
+        customer.setVersion(4L);
+
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Alexandro", null, null);
+
+        // When
+        assertThatThrownBy(() -> customerService.updateCustomer(id, request, 3L))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer id [%s] has been modified since version [3]!".formatted(id));
+    }
+
+
+    @Test
+    void willThrowWhenUpdatingCustomerThatDoesNotExist() {
+        // Given
+        Long id = 1L;
+
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Alexandro", null, null);
+
+        // When
+        assertThatThrownBy(() -> customerService.updateCustomer(id, request, null))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer id [%s] not found!".formatted(id));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+package com.janex.customer;
+
+import com.janex.AbstractTestcontainers;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Two shard databases next to the test database, which only hands out the ids
+class CustomerShardedDataAccessServiceTest extends AbstractTestcontainers {
+
+    private static final List<String> SHARD_DATABASES = List.of(
+            "shard_0_" + UUID.randomUUID().toString().replace("-", ""),
+            "shard_1_" + UUID.randomUUID().toString().replace("-", "")
+    );
+    private static final List<HikariDataSource> SHARD_POOLS = new ArrayList<>();
+    // Far above the sequence, so customers placed on a shard explicitly never meet allocated ids
+    private static final AtomicLong EXPLICIT_IDS = new AtomicLong(1L << 40);
+
+
+    private CustomerShardedDataAccessService customerShardedDataAccessService; // Under test
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+
+
+    @BeforeAll
+    static void createShards() {
+        for (String database : SHARD_DATABASES) {
+            // A linguistic default collation, unlike C it sorts "alice" before "Bob"
+            getJdbcTemplate().execute("CREATE DATABASE " + database
+                    + " TEMPLATE template0 ENCODING 'UTF8' LOCALE_PROVIDER icu ICU_LOCALE 'en-US'");
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(postgreSQLContainer.getJdbcUrl().replace("/" + postgreSQLContainer.getDatabaseName(), "/" + database))
+                    .username(postgreSQLContainer.getUsername())
+                    .password(postgreSQLContainer.getPassword())
+                    .build();
+            CustomerShardConfig.migrate(pool);
+            SHARD_POOLS.add(pool);
+        }
+    }
+
+
+    @AfterAll
+    static void dropShards() {
+        SHARD_POOLS.forEach(HikariDataSource::close);
+        for (String database : SHARD_DATABASES) {
+            getJdbcTemplate().execute("DROP DATABASE " + database + " WITH (FORCE)");
+        }
+    }
+
+
+    @BeforeEach
+    void setUp() {
+        SHARD_POOLS.forEach(pool -> shards.add(new JdbcTemplate(pool)));
+        customerShardedDataAccessService = new CustomerShardedDataAccessService(
+                shards,
+                new CustomerRowMapper(),
+                new CustomerIdAllocator(getJdbcTemplate())
+        );
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        customerShardedDataAccessService.close();
+    }
+
+
+    @Test
+    void spreadsCustomersOverTheShards() {
+        // Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            customers.add(new Customer("Spread " + i, uniqueEmail(), 20 + i % 50));
+        }
+
+        // When
+        List<Customer> inserted = customerShardedDataAccessService.insertCustomers(customers);
+
+        //Then
+        assertThat(inserted).extracting(Customer::getEmail)
+                .containsExactlyElementsOf(customers.stream().map(Customer::getEmail).toList());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            assertThat(countOn(shard, inserted)).isPositive();
+        }
+        Customer any = inserted.get(42);
+        assertThat(customerShardedDataAccessService.selectCustomerById(any.getId())).contains(any);
+        assertThat(customerShardedDataAccessService.existsCustomerWithId(any.getId())).isTrue();
+        assertThat(customerShardedDataAccessService.selectCustomersByIds(inserted.stream().map(Customer::getId).toList()))
+                .containsExactlyInAnyOrderElementsOf(inserted);
+        assertThat(customerShardedDataAccessService.selectAllCustomers())
+                .containsAll(inserted)
+                .isSortedAccordingTo(Comparator.comparing(Customer::getId));
+    }
+
+
+    @Test
+    void keepsEmailsUniqueAcrossShards() {
+        // Given
+        String email = uniqueEmail();
+        long firstId = idOnShard(0);
+        long secondId = idOnShard(1);
+        customerShardedDataAccessService.insertCustomer(new Customer(firstId, "First", email, 30)).orElseThrow();
+
+        // When
+        Optional<Customer> second = customerShardedDataAccessService.insertCustomer(new Customer(secondId, "Second", email, 31));
+        List<Customer> bulk = customerShardedDataAccessService.insertCustomers(List.of(
+                new Customer("Taken", email, 32),
+                new Customer("Free", "free-" + email, 33),
+                new Customer("Repeated", "free-" + email, 34)
+        ));
+
+        //Then
+        assertThat(second).isEmpty();
+        assertThat(customerShardedDataAccessService.existsCustomerWithId(secondId)).isFalse();
+        assertThat(bulk).extracting(Customer::getName).containsExactly("Free");
+        assertThat(customerShardedDataAccessService.existsCustomerWithEmail(email)).isTrue();
+        assertThat(customerShardedDataAccessService.selectExistingEmails(List.of(email, "free-" + email, uniqueEmail())))
+                .containsExactlyInAnyOrder(email, "free-" + email);
+    }
+
+
+    @Test
+    void updateMovesTheEmailClaim() {
+        // Given
+        Customer alex = customerShardedDataAccessService.insertCustomer(new Customer(idOnShard(0), "Alex", uniqueEmail(), 21)).orElseThrow();
+        Customer jamila = customerShardedDataAccessService.insertCustomer(new Customer(idOnShard(1), "Jamila", uniqueEmail(), 19)).orElseThrow();
+        String newEmail = uniqueEmail();
+
+        // When
+        Optional<Customer> updated = customerShardedDataAccessService.updateCustomer(new Customer(alex.getId(), null, newEmail, null));
+
+        //Then
+        assertThat(updated).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(newEmail));
+        assertThatThrownBy(() -> customerShardedDataAccessService.updateCustomer(new Customer(jamila.getId(), null, newEmail, null)))
+                .isInstanceOf(DuplicateKeyException.class);
+        // The old email is free again, also for a customer on the other shard
+        assertThat(customerShardedDataAccessService.existsCustomerWithEmail(alex.getEmail())).isFalse();
+        assertThat(customerShardedDataAccessService.updateCustomer(new Customer(jamila.getId(), null, alex.getEmail(), null)))
+                .isPresent();
+    }
+
+
+    @Test
+    void deleteReleasesTheEmail() {
+        // Given
+        String email = uniqueEmail();
+        Customer customer = customerShardedDataAccessService.insertCustomer(new Customer(idOnShard(0), "Deleted", email, 40)).orElseThrow();
+        Customer other = customerShardedDataAccessService.insertCustomer(new Customer(idOnShard(1), "Other", uniqueEmail(), 41)).orElseThrow();
+
+        // When
+        boolean deleted = customerShardedDataAccessService.deleteCustomerById(customer.getId());
+        List<Long> deletedIds = customerShardedDataAccessService.deleteCustomersByIds(List.of(other.getId(), Long.MAX_VALUE));
+
+        //Then
+        assertThat(deleted).isTrue();
+        assertThat(deletedIds).containsExactly(other.getId());
+        assertThat(customerShardedDataAccessService.insertCustomer(new Customer(idOnShard(1), "Again", email, 42))).isPresent();
+        assertThat(customerShardedDataAccessService.insertCustomer(new Customer("Other again", other.getEmail(), 43))).isPresent();
+    }
+
+
+    @Test
+    void takesOverAClaimLeftBehindByAFailedWrite() {
+        // Given
+        String email = uniqueEmail();
+        long id = idOnShard(0);
+        shardOfEmail(email).update("""
+                INSERT INTO customer_email_shard(email, shard, claimed_at)
+                VALUES (?, 1, now() - interval '1 hour')
+                """, email);
+
+        // When
+        boolean existsBefore = customerShardedDataAccessService.existsCustomerWithEmail(email);
+        Optional<Customer> inserted = customerShardedDataAccessService.insertCustomer(new Customer(id, "Late", email, 50));
+
+        //Then
+        assertThat(existsBefore).isFalse();
+        assertThat(inserted).isPresent();
+        assertThat(customerShardedDataAccessService.existsCustomerWithEmail(email)).isTrue();
+    }
+
+
+    @Test
+    void releaseLeavesAClaimTakenOverInTheMeantime() {
+        // Given
+        CustomerEmailDirectory directory = new CustomerEmailDirectory(shards);
+        String email = uniqueEmail();
+        UUID first = directory.claim(email, 0).orElseThrow();
+        shardOfEmail(email).update("UPDATE customer_email_shard SET claimed_at = now() - interval '1 hour' WHERE email = ?", email);
+        UUID second = directory.takeOver(
+                email,
+                directory.claimOf(email).orElseThrow(),
+                1,
+                CustomerShardedDataAccessService.CLAIM_TIMEOUT
+        ).orElseThrow();
+
+        // When
+        directory.release(email, first);
+        directory.releaseAll(Map.of(email, first));
+
+        //Then
+        assertThat(second).isNotEqualTo(first);
+        assertThat(directory.claimOf(email)).contains(new CustomerEmailDirectory.Claim(1, second));
+    }
+
+
+    @Test
+    void pagesAreMergedAcrossShards() {
+        // Given
+        String prefix = "Page " + UUID.randomUUID() + " ";
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            customers.add(new Customer(prefix + (char) ('a' + (i * 7) % 20), uniqueEmail(), i));
+        }
+        customerShardedDataAccessService.insertCustomers(customers);
+        List<Customer> expected = customerShardedDataAccessService.selectAllCustomers().stream()
+                .sorted(CustomerSortField.NAME.comparator().reversed())
+                .limit(6)
+                .toList();
+
+        // When
+        List<Customer> first = customerShardedDataAccessService.selectCustomersPage(
+                new CustomerPageRequest(CustomerSortField.NAME, Sort.Direction.DESC, null, 3)
+        );
+        Customer last = first.get(first.size() - 1);
+        List<Customer> second = customerShardedDataAccessService.selectCustomersPage(new CustomerPageRequest(
+                CustomerSortField.NAME, Sort.Direction.DESC,
+                new CustomerPageCursor(CustomerSortField.NAME, Sort.Direction.DESC, last.getName(), last.getId()), 3
+        ));
+
+        //Then
+        List<Customer> both = new ArrayList<>(first);
+        both.addAll(second);
+        assertThat(both).containsExactlyElementsOf(expected);
+    }
+
+
+    @Test
+    void pagesByNameFollowTheCodePointsWhateverTheShardCollation() {
+        // Given
+        String prefix = "Collate " + UUID.randomUUID() + " ";
+        List<String> expected = List.of(
+                "ALICE", "Bob", "Zoe", "alice", "bob", "oscar", "zed",
+                "Ängel", "Çelik", "Émile", "Ölaf", "émile", "Ａnna", "😀"
+        );
+        List<String> scrambled = new ArrayList<>(expected);
+        Collections.shuffle(scrambled, new Random(42));
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < scrambled.size(); i++) {
+            customers.add(new Customer(idOnShard(i % 2), prefix + scrambled.get(i), uniqueEmail(), 30));
+        }
+        customerShardedDataAccessService.insertCustomers(customers);
+
+        // When
+        List<String> names = new ArrayList<>();
+        CustomerPageCursor after = new CustomerPageCursor(CustomerSortField.NAME, Sort.Direction.ASC, prefix, 0L);
+        while (true) {
+            List<Customer> page = customerShardedDataAccessService.selectCustomersPage(
+                    new CustomerPageRequest(CustomerSortField.NAME, Sort.Direction.ASC, after, 3)
+            );
+            List<Customer> ours = page.stream().filter(customer -> customer.getName().startsWith(prefix)).toList();
+            ours.forEach(customer -> names.add(customer.getName().substring(prefix.length())));
+            if (ours.size() < 3) {
+                break;
+            }
+            Customer last = page.get(page.size() - 1);
+            after = new CustomerPageCursor(CustomerSortField.NAME, Sort.Direction.ASC, last.getName(), last.getId());
+        }
+
+        //Then
+        assertThat(names).containsExactlyElementsOf(expected);
+    }
+
+
+    @Test
+    void forEachCustomerMergesTheShardsById() {
+        // Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            customers.add(new Customer("Each " + i, uniqueEmail(), 30));
+        }
+        List<Customer> inserted = customerShardedDataAccessService.insertCustomers(customers);
+
+        // When
+        List<Customer> visited = new ArrayList<>();
+        customerShardedDataAccessService.forEachCustomer(visited::add);
+
+        //Then
+        assertThat(visited)
+                .containsAll(inserted)
+                .isSortedAccordingTo(Comparator.comparing(Customer::getId))
+                .hasSize(customerShardedDataAccessService.selectAllCustomers().size());
+    }
+
+
+    private long idOnShard(int shard) {
+        long id = EXPLICIT_IDS.incrementAndGet();
+        while (customerShardedDataAccessService.shardOf(id) != shard) {
+            id = EXPLICIT_IDS.incrementAndGet();
+        }
+        return id;
+    }
+
+
+    private long countOn(int shard, List<Customer> customers) {
+        return shards.get(shard).queryForObject(
+                "SELECT count(*) FROM customer WHERE id = ANY(?)",
+                Long.class,
+                (Object) customers.stream().map(Customer::getId).toArray(Long[]::new)
+        );
+    }
+
+
+    private JdbcTemplate shardOfEmail(String email) {
+        return shards.get(new CustomerEmailDirectory(shards).partitionOf(email));
+    }
+
+
+    private static String uniqueEmail() {
+        return UUID.randomUUID() + "@sharded.example.com";
+    }
+}
@@ -0,0 +1,92 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailFilteringCustomerDaoTest {
+
+    private EmailFilteringCustomerDao emailFilteringCustomerDao; // Under test
+
+    @Mock
+    private CustomerDao delegate;
+
+    @Mock
+    private CustomerEmailFilter emailFilter;
+
+
+    @BeforeEach
+    void setUp() {
+        emailFilteringCustomerDao = new EmailFilteringCustomerDao(delegate, emailFilter);
+    }
+
+
+    @Test
+    void selectExistingEmailsOnlyQueriesPossibleHits() {
+        // Given
+        when(emailFilter.mightExist("alex@gmail.com")).thenReturn(true);
+        when(emailFilter.mightExist("jamila@gmail.com")).thenReturn(false);
+        when(delegate.selectExistingEmails(List.of("alex@gmail.com"))).thenReturn(Set.of("alex@gmail.com"));
+
+        // When
+        Set<String> actual = emailFilteringCustomerDao.selectExistingEmails(List.of("alex@gmail.com", "jamila@gmail.com"));
+
+        //Then
+        assertThat(actual).containsExactly("alex@gmail.com");
+        verify(emailFilter, never()).recordFalsePositive();
+    }
+
+
+    @Test
+    void selectExistingEmailsSkipsDatabaseWhenAllEmailsAreNew() {
+        // Given
+        when(emailFilter.mightExist(any())).thenReturn(false);
+
+        // When
+        Set<String> actual = emailFilteringCustomerDao.selectExistingEmails(List.of("alex@gmail.com"));
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(delegate, never()).selectExistingEmails(any());
+    }
+
+
+    @Test
+    void insertCustomerAddsEmailToFilter() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(delegate.insertCustomer(customer)).thenReturn(Optional.of(customer));
+
+        // When
+        emailFilteringCustomerDao.insertCustomer(customer);
+
+        //Then
+        verify(emailFilter).add("alex@gmail.com");
+    }
+
+
+    @Test
+    void updateCustomerAddsNewEmailToFilter() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1L);
+        update.setEmail("alexandro@gmail.com");
+        when(delegate.updateCustomer(update)).thenReturn(Optional.of(new Customer(1L, "Alex", "alexandro@gmail.com", 21)));
+
+        // When
+        emailFilteringCustomerDao.updateCustomer(update);
+
+        //Then
+        verify(emailFilter).add("alexandro@gmail.com");
+    }
+}
@@ -0,0 +1,75 @@
+package com.janex.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemaphoreBulkheadTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    void turnsAwayCallersBeyondTheQueueRightAway() {
+        // Given
+        SemaphoreBulkhead semaphoreBulkhead = new SemaphoreBulkhead(1, 0, Duration.ofSeconds(5)); // Under test
+        semaphoreBulkhead.tryEnter();
+
+        // When
+        long started = System.nanoTime();
+        boolean entered = semaphoreBulkhead.tryEnter();
+
+        //Then
+        assertThat(entered).isFalse();
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(semaphoreBulkhead.active()).isEqualTo(1);
+    }
+
+
+    @Test
+    void queuedCallerGetsInOnceAnotherLeaves() throws Exception {
+        // Given
+        SemaphoreBulkhead semaphoreBulkhead = new SemaphoreBulkhead(1, 1, Duration.ofSeconds(5)); // Under test
+        semaphoreBulkhead.tryEnter();
+        Future<Boolean> queued = executor.submit(semaphoreBulkhead::tryEnter);
+        while (semaphoreBulkhead.queued() == 0) {
+            Thread.sleep(5);
+        }
+
+        // When
+        semaphoreBulkhead.leave();
+
+        //Then
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(semaphoreBulkhead.queued()).isZero();
+        assertThat(semaphoreBulkhead.active()).isEqualTo(1);
+    }
+
+
+    @Test
+    void queuedCallerGivesUpAfterMaxWait() {
+        // Given
+        SemaphoreBulkhead semaphoreBulkhead = new SemaphoreBulkhead(1, 1, Duration.ofMillis(50)); // Under test
+        semaphoreBulkhead.tryEnter();
+
+        // When
+        boolean entered = semaphoreBulkhead.tryEnter();
+
+        //Then
+        assertThat(entered).isFalse();
+        assertThat(semaphoreBulkhead.queued()).isZero();
+    }
+}
@@ -0,0 +1,160 @@
+package com.janex.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SingleFlightCustomerDaoTest {
+
+    private static final int CALLERS = 8;
+
+    private SingleFlightCustomerDao singleFlightCustomerDao; // Under test
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService executor;
+
+    @Mock
+    private CustomerDao delegate;
+
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlightCustomerDao = new SingleFlightCustomerDao(delegate, meterRegistry);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    void concurrentLookupsOfOneIdShareOneQuery() throws Exception {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.selectCustomerById(1L)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(customer);
+        });
+
+        // When
+        List<Future<Optional<Customer>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlightCustomerDao.selectCustomerById(1L)));
+        }
+        awaitCoalesced("selectCustomerById", CALLERS - 1);
+        release.countDown();
+
+        //Then
+        for (Future<Optional<Customer>> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).hasValue(customer);
+        }
+        verify(delegate, times(1)).selectCustomerById(1L);
+        assertThat(counter("selectCustomerById", "executed")).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.dao.calls.coalesced.ratio")
+                .tag("operation", "selectCustomerById")
+                .gauge()
+                .value()).isEqualTo((double) (CALLERS - 1) / CALLERS);
+    }
+
+
+    @Test
+    void waitingCallersGetTheException() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.selectCustomerById(1L)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("database down");
+        });
+
+        // When
+        Future<Optional<Customer>> first = executor.submit(() -> singleFlightCustomerDao.selectCustomerById(1L));
+        Future<Optional<Customer>> second = executor.submit(() -> singleFlightCustomerDao.selectCustomerById(1L));
+        awaitCoalesced("selectCustomerById", 1);
+        release.countDown();
+
+        //Then
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        verify(delegate, times(1)).selectCustomerById(1L);
+    }
+
+
+    @Test
+    void lookupAfterUpdateDoesNotJoinAnOlderQuery() throws Exception {
+        // Given
+        Customer before = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer after = new Customer(1L, "Alex", "alex@gmail.com", 22);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.selectCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(before);
+                })
+                .thenReturn(Optional.of(after));
+        Future<Optional<Customer>> slow = executor.submit(() -> singleFlightCustomerDao.selectCustomerById(1L));
+        verify(delegate, timeout(5000)).selectCustomerById(1L);
+
+        // When
+        singleFlightCustomerDao.updateCustomer(new Customer(1L, null, null, 22));
+        Optional<Customer> actual = singleFlightCustomerDao.selectCustomerById(1L);
+        release.countDown();
+
+        //Then
+        assertThat(actual).hasValue(after);
+        assertThat(slow.get(5, TimeUnit.SECONDS)).hasValue(before);
+        verify(delegate, times(2)).selectCustomerById(1L);
+    }
+
+
+    @Test
+    void sequentialLookupsAreNotCached() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.empty());
+
+        // When
+        singleFlightCustomerDao.selectCustomerById(1L);
+        singleFlightCustomerDao.selectCustomerById(1L);
+
+        //Then
+        verify(delegate, times(2)).selectCustomerById(1L);
+        assertThat(counter("selectCustomerById", "coalesced")).isZero();
+    }
+
+
+    private void awaitCoalesced(String operation, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter(operation, "coalesced") < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+
+    private double counter(String operation, String result) {
+        return meterRegistry.get("customer.dao.calls")
+                .tags("operation", operation, "result", result)
+                .functionCounter()
+                .count();
+    }
+}
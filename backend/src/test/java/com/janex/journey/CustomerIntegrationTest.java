@@ -4,16 +4,22 @@ import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
 import com.janex.AbstractTestcontainers;
 import com.janex.customer.Customer;
+import com.janex.customer.CustomerLookupResult;
+import com.janex.customer.CustomerPage;
 import com.janex.customer.CustomerRegistrationRequest;
+import com.janex.customer.CustomerRegistrationResult;
 import com.janex.customer.CustomerUpdateRequest;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
@@ -44,27 +50,35 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
                 name, email, age
         );
 
-        // send post request to our API
-        webTestClient.post()
+        // send post request to our API, created customer comes back with its id and location
+        Customer created = webTestClient.post()
                 .uri(CUSTOMER_URI)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(request), CustomerRegistrationRequest.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isCreated()
+                .expectHeader()
+                .valueMatches(HttpHeaders.LOCATION, ".*" + CUSTOMER_URI + "/\\d+")
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(created.getId()).isNotNull();
+        assertThat(created.getEmail()).isEqualTo(email);
 
-        // get all customers
+        // get first page of customers, newest first
         List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
+                .uri(CUSTOMER_URI + "?sort=id&direction=desc")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
                 .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {
-                })
+                .expectBody(CustomerPage.class)
                 .returnResult()
-                .getResponseBody();
+                .getResponseBody()
+                .customers();
 
         // make sure that customer is present
         Customer expectedCustomer = new Customer();
@@ -94,6 +108,45 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
                 .expectBody(new ParameterizedTypeReference<Customer>() {
                 })
                 .isEqualTo(expectedCustomer);
+
+        // unchanged customer is not sent again
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .isEmpty();
+    }
+
+
+    @Test
+    void canGetUnchangedCustomersPageWithoutBody() {
+        String eTag = webTestClient.get()
+                .uri(CUSTOMER_URI + "?sort=id&size=5")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(CustomerPage.class)
+                .getResponseHeaders()
+                .getETag();
+
+        assertThat(eTag).isNotNull();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "?sort=id&size=5")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
     }
 
 
@@ -118,19 +171,19 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
                 .body(Mono.just(request), CustomerRegistrationRequest.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isCreated();
 
-        // get all customers
+        // get first page of customers, newest first
         List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
+                .uri(CUSTOMER_URI + "?sort=id&direction=desc")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
                 .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {
-                })
+                .expectBody(CustomerPage.class)
                 .returnResult()
-                .getResponseBody();
+                .getResponseBody()
+                .customers();
 
         Long id = allCustomers.stream()
                 .filter(customer -> customer.getEmail().equals(email))
@@ -153,6 +206,83 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
                 .exchange()
                 .expectStatus()
                 .isNotFound();
+
+        // deleting it again is reported as not found
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+
+    @Test
+    void canDeleteCustomersInBulk() {
+        Faker faker = new Faker();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                    faker.name().fullName(),
+                    faker.name().lastName() + UUID.randomUUID() + "@gmail.com",
+                    RANDOM.nextInt(1, 100)
+            );
+
+            Customer created = webTestClient.post()
+                    .uri(CUSTOMER_URI)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(request), CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isCreated()
+                    .expectBody(Customer.class)
+                    .returnResult()
+                    .getResponseBody();
+            ids.add(created.getId());
+        }
+
+        // get two of them plus one id that does not exist in one request
+        List<CustomerLookupResult> found = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+                        .queryParam("ids", ids.get(1), -1, ids.get(0))
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(new ParameterizedTypeReference<List<CustomerLookupResult>>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(found).extracting(CustomerLookupResult::id).containsExactly(ids.get(1), -1L, ids.get(0));
+        assertThat(found).extracting(CustomerLookupResult::status)
+                .containsExactly(HttpStatus.OK, HttpStatus.NOT_FOUND, HttpStatus.OK);
+        assertThat(found.get(0).customer().getId()).isEqualTo(ids.get(1));
+
+        // delete all of them plus one id that does not exist
+        List<Long> deleted = webTestClient.delete()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+                        .queryParam("ids", ids.get(0), ids.get(1), ids.get(2), -1)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(new ParameterizedTypeReference<List<Long>>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(deleted).containsExactlyInAnyOrderElementsOf(ids);
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", ids.get(0))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
     }
 
 
@@ -177,19 +307,19 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
                 .body(Mono.just(request), CustomerRegistrationRequest.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isCreated();
 
-        // get all customers
+        // get first page of customers, newest first
         List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
+                .uri(CUSTOMER_URI + "?sort=id&direction=desc")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus()
                 .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {
-                })
+                .expectBody(CustomerPage.class)
                 .returnResult()
-                .getResponseBody();
+                .getResponseBody()
+                .customers();
 
         Long id = allCustomers.stream()
                 .filter(customer -> customer.getEmail().equals(email))
@@ -212,10 +342,24 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
                 .uri(CUSTOMER_URI + "/{id}", id)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
                 .body(Mono.just(updateRequest), CustomerUpdateRequest.class)
                 .exchange()
                 .expectStatus()
-                .isOk();
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // the same update against the old version is rejected
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .body(Mono.just(new CustomerUpdateRequest(faker.name().fullName(), null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
 
         // get customer by id
         Customer updatedCustomer = webTestClient.get()
@@ -235,4 +379,85 @@ class CustomerIntegrationTest extends AbstractTestcontainers {
 
         assertThat(updatedCustomer).isEqualTo(expected);
     }
+
+
+    @Test
+    void canExportCustomers() {
+        // create registration request
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+        String name = fakerName.fullName();
+        String email = fakerName.lastName() + UUID.randomUUID() + "@gmail.com";
+        int age = RANDOM.nextInt(1, 100);
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name, email, age
+        );
+
+        // send post request to our API
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        // export all customers as csv
+        String csv = webTestClient.get()
+                .uri(CUSTOMER_URI + "/export?format=csv")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith("text/csv")
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(csv)
+                .startsWith("id,name,email,age\n")
+                .contains("," + email + "," + age + "\n");
+    }
+
+
+    @Test
+    void canRegisterCustomersInBulk() {
+        // create bulk registration request, second customer reuses email of the first one
+        Faker faker = new Faker();
+        String email = faker.name().lastName() + UUID.randomUUID() + "@gmail.com";
+
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest(faker.name().fullName(), email, RANDOM.nextInt(1, 100)),
+                new CustomerRegistrationRequest(faker.name().fullName(), email, RANDOM.nextInt(1, 100))
+        );
+
+        // send post request to our API
+        List<CustomerRegistrationResult> results = webTestClient.post()
+                .uri(CUSTOMER_URI + "/bulk")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requests)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerRegistrationResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).status()).isEqualTo(HttpStatus.CREATED);
+        assertThat(results.get(1).status()).isEqualTo(HttpStatus.CONFLICT);
+
+        // get customer by id
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", results.get(0).id())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .value(customer -> assertThat(customer.getEmail()).isEqualTo(email));
+    }
 }
@@ -0,0 +1,167 @@
+package com.janex.journey;
+
+import com.janex.AbstractTestcontainers;
+import com.janex.customer.Customer;
+import com.janex.customer.CustomerPage;
+import com.janex.customer.CustomerRegistrationRequest;
+import com.janex.customer.CustomerUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveCustomerIntegrationTest extends AbstractTestcontainers {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+
+    @Test
+    void canRegisterGetUpdateAndDeleteACustomer() {
+        // register, created customer comes back with its id and location
+        String email = UUID.randomUUID() + "@gmail.com";
+        Customer created = register(new CustomerRegistrationRequest(FAKER.name().fullName(), email, 30));
+
+        assertThat(created.getId()).isNotNull();
+        assertThat(created.getEmail()).isEqualTo(email);
+
+        // same email again is a conflict
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Other", email, 40)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+
+        // unchanged customer is not sent again
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", created.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // update with the current version
+        Customer updated = webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(null, null, 31)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(updated.getAge()).isEqualTo(31);
+
+        // update with a stale version fails
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(null, null, 32)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        // delete, afterwards it is gone
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", created.getId())
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", created.getId())
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+
+    @Test
+    void canPageAndStreamCustomers() {
+        // Given
+        String prefix = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            register(new CustomerRegistrationRequest("Stream " + i, prefix + "-" + i + "@gmail.com", 20 + i));
+        }
+
+        // When
+        CustomerPage firstPage = webTestClient.get()
+                .uri(CUSTOMER_URI + "?sort=id&direction=desc&size=2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+        CustomerPage secondPage = webTestClient.get()
+                .uri(CUSTOMER_URI + "?size=2&cursor={cursor}", firstPage.nextCursor())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+        List<Customer> streamed = webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //Then
+        assertThat(firstPage.customers()).extracting(Customer::getEmail)
+                .containsExactly(prefix + "-2@gmail.com", prefix + "-1@gmail.com");
+        assertThat(secondPage.customers()).extracting(Customer::getEmail)
+                .startsWith(prefix + "-0@gmail.com");
+        assertThat(streamed).extracting(Customer::getEmail)
+                .contains(prefix + "-0@gmail.com", prefix + "-1@gmail.com", prefix + "-2@gmail.com");
+        assertThat(streamed).extracting(Customer::getId).isSorted();
+    }
+
+
+    private Customer register(CustomerRegistrationRequest request) {
+        return webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .valueMatches(HttpHeaders.LOCATION, ".*" + CUSTOMER_URI + "/\\d+")
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
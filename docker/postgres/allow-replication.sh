@@ -0,0 +1,3 @@
+#!/bin/sh
+# Lets db-replica (docker-compose.yml) stream WAL from this server, only runs when the db volume is created
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"